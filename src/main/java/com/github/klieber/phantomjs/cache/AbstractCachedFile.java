@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.cache;
+
+import com.github.klieber.phantomjs.util.FileMover;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Stores the validators of a cached file in a small properties file next to it, so every cache
+ * location shares the same revalidation support.
+ */
+public abstract class AbstractCachedFile implements CachedFile {
+
+  private static final String VALIDATORS = ".validators";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private static final String ETAG = "etag";
+  private static final String LAST_MODIFIED = "lastModified";
+  private static final String LENGTH = "length";
+
+  @Override
+  public CacheValidators getValidators() {
+    File file = getValidatorFile();
+    if (!file.isFile()) {
+      return null;
+    }
+    Properties properties = new Properties();
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      properties.load(in);
+      return new CacheValidators(
+          properties.getProperty(ETAG),
+          properties.getProperty(LAST_MODIFIED),
+          Long.parseLong(properties.getProperty(LENGTH)));
+    } catch (IOException e) {
+      return null;
+    } catch (RuntimeException e) {
+      // damaged validators just mean the file cannot be revalidated cheaply
+      return null;
+    } finally {
+      IOUtil.close(in);
+    }
+  }
+
+  @Override
+  public void setValidators(CacheValidators validators) throws IOException {
+    File file = getValidatorFile();
+    if (validators == null) {
+      file.delete();
+      return;
+    }
+    Properties properties = new Properties();
+    if (validators.getETag() != null) {
+      properties.setProperty(ETAG, validators.getETag());
+    }
+    if (validators.getLastModified() != null) {
+      properties.setProperty(LAST_MODIFIED, validators.getLastModified());
+    }
+    properties.setProperty(LENGTH, String.valueOf(validators.getLength()));
+
+    // a unique temp file so concurrent builds never write into each other's copy
+    File temp = File.createTempFile(file.getName(), TEMP_SUFFIX, file.getAbsoluteFile().getParentFile());
+    try {
+      OutputStream out = new FileOutputStream(temp);
+      try {
+        properties.store(out, null);
+      } finally {
+        out.close();
+      }
+      FileMover.move(temp, file);
+    } finally {
+      temp.delete();
+    }
+  }
+
+  @Override
+  public void touch() {
+    AccessTimes.touch(getFile());
+  }
+
+  private File getValidatorFile() {
+    return new File(getFile().getPath() + VALIDATORS);
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.cache;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Records when cached files were last used so that the least recently used ones can be
+ * pruned. The time is kept as the modification time of an empty file next to the cached file,
+ * the cached file itself is left untouched because its modification time identifies its
+ * contents.
+ */
+public class AccessTimes {
+
+  public static final String SUFFIX = ".accessed";
+
+  private AccessTimes() {
+    // hide default constructor
+  }
+
+  /**
+   * Records that the file was used just now. Nothing is recorded for a file that does not
+   * exist, and failing to record only makes the file look older than it is.
+   */
+  public static void touch(File file) {
+    if (!file.exists()) {
+      return;
+    }
+    File marker = getMarker(file);
+    try {
+      if (!marker.createNewFile()) {
+        marker.setLastModified(System.currentTimeMillis());
+      }
+    } catch (IOException e) {
+      // the file is pruned a little earlier than it would have been
+    }
+  }
+
+  /**
+   * @return when the file was last used, or when it was written if no use was recorded
+   */
+  public static long getLastAccess(File file) {
+    return Math.max(file.lastModified(), getMarker(file).lastModified());
+  }
+
+  public static File getMarker(File file) {
+    return new File(file.getPath() + SUFFIX);
+  }
+}
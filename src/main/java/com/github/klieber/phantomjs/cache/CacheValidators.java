@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.cache;
+
+/**
+ * The http validators a cached file was downloaded with. They are sent back to the server to
+ * ask whether the file changed, and the length catches a cached file that was damaged locally.
+ */
+public class CacheValidators {
+
+  private final String etag;
+  private final String lastModified;
+  private final long length;
+
+  /**
+   * @param etag the ETag header or null
+   * @param lastModified the Last-Modified header or null
+   * @param length the length of the cached file
+   */
+  public CacheValidators(String etag, String lastModified, long length) {
+    this.etag = etag;
+    this.lastModified = lastModified;
+    this.length = length;
+  }
+
+  public String getETag() {
+    return etag;
+  }
+
+  public String getLastModified() {
+    return lastModified;
+  }
+
+  public long getLength() {
+    return length;
+  }
+}
@@ -29,7 +29,7 @@ import org.eclipse.aether.repository.LocalRepositoryManager;
 
 import java.io.File;
 
-public class CachedArtifact implements CachedFile {
+public class CachedArtifact extends AbstractCachedFile {
 
   private final PhantomJSArchive phantomJSArchive;
   private final ArtifactBuilder artifactBuilder;
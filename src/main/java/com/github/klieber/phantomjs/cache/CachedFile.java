@@ -21,7 +21,20 @@
 package com.github.klieber.phantomjs.cache;
 
 import java.io.File;
+import java.io.IOException;
 
 public interface CachedFile {
   File getFile();
+
+  /**
+   * @return the validators the cached file was downloaded with or null if they are unknown
+   */
+  CacheValidators getValidators();
+
+  void setValidators(CacheValidators validators) throws IOException;
+
+  /**
+   * Records that the cached file was used, so that pruning the cache keeps it longer.
+   */
+  void touch();
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import org.codehaus.plexus.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * The known SHA-256 checksums of phantomjs archives, keyed by archive name.
+ */
+public class ChecksumManifest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChecksumManifest.class);
+
+  private static final String BUNDLED = "/com/github/klieber/phantomjs/checksums.properties";
+
+  private static final String UNABLE_TO_LOAD = "Unable to load the checksum manifest {}";
+
+  private final Properties checksums;
+
+  public ChecksumManifest(Properties checksums) {
+    this.checksums = checksums;
+  }
+
+  /**
+   * @return the manifest bundled with the plugin
+   */
+  public static ChecksumManifest load() {
+    Properties checksums = new Properties();
+    InputStream in = ChecksumManifest.class.getResourceAsStream(BUNDLED);
+    if (in != null) {
+      try {
+        checksums.load(in);
+      } catch (IOException e) {
+        LOGGER.warn(UNABLE_TO_LOAD, BUNDLED, e);
+      } finally {
+        IOUtil.close(in);
+      }
+    }
+    return new ChecksumManifest(checksums);
+  }
+
+  /**
+   * @return the lower case hex SHA-256 of the archive or null if it is not known
+   */
+  public String getChecksum(PhantomJSArchive archive) {
+    String checksum = checksums.getProperty(archive.getArchiveName());
+    return checksum != null ? checksum.trim().toLowerCase() : null;
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import com.github.klieber.phantomjs.util.FileMover;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Records how much of each byte range of a partial download has been written so that an
+ * interrupted download can be resumed later. The checkpoint is stored as a small properties
+ * file next to the partial download, together with the validator (a strong ETag or the
+ * Last-Modified date) of the response it was started from, so ranges of a file that was
+ * republished with the same length are never written over older bytes.
+ */
+public class DownloadCheckpoint {
+
+  private static final String URL = "url";
+  private static final String LENGTH = "length";
+  private static final String VALIDATOR = "validator";
+  private static final String RANGES = "ranges";
+  private static final String RANGE = "range.";
+
+  private final String url;
+  private final long length;
+  private final String validator;
+  private final List<Range> ranges;
+
+  private DownloadCheckpoint(String url, long length, String validator, List<Range> ranges) {
+    this.url = url;
+    this.length = length;
+    this.validator = validator;
+    this.ranges = Collections.unmodifiableList(ranges);
+  }
+
+  public static DownloadCheckpoint create(String url, long length, int count) {
+    return create(url, length, null, count);
+  }
+
+  /**
+   * @param validator the strong ETag or Last-Modified date of the file, or null if the server
+   *                  sent neither
+   */
+  public static DownloadCheckpoint create(String url, long length, String validator, int count) {
+    List<Range> ranges = new ArrayList<Range>();
+    long size = (length + count - 1) / count;
+    for (long start = 0; start < length; start += size) {
+      long end = Math.min(start + size, length) - 1;
+      ranges.add(new Range(start, end, start));
+    }
+    return new DownloadCheckpoint(url, length, validator, ranges);
+  }
+
+  /**
+   * Loads a previously saved checkpoint.
+   *
+   * @return the checkpoint or null if it does not exist or cannot be read
+   */
+  public static DownloadCheckpoint load(File file) {
+    if (!file.isFile()) {
+      return null;
+    }
+    Properties properties = new Properties();
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      properties.load(in);
+
+      int count = Integer.parseInt(properties.getProperty(RANGES));
+      List<Range> ranges = new ArrayList<Range>(count);
+      for (int i = 0; i < count; i++) {
+        String[] values = properties.getProperty(RANGE + i).split(",");
+        ranges.add(new Range(Long.parseLong(values[0]), Long.parseLong(values[1]), Long.parseLong(values[2])));
+      }
+      return new DownloadCheckpoint(
+          properties.getProperty(URL),
+          Long.parseLong(properties.getProperty(LENGTH)),
+          properties.getProperty(VALIDATOR),
+          ranges);
+    } catch (IOException e) {
+      return null;
+    } catch (RuntimeException e) {
+      // a damaged checkpoint just means the download starts over
+      return null;
+    } finally {
+      IOUtil.close(in);
+    }
+  }
+
+  /**
+   * @return a copy holding the positions reached so far, unaffected by later writes
+   */
+  public DownloadCheckpoint snapshot() {
+    List<Range> copies = new ArrayList<Range>(ranges.size());
+    for (Range range : ranges) {
+      copies.add(new Range(range.getStart(), range.getEnd(), range.getPosition()));
+    }
+    return new DownloadCheckpoint(url, length, validator, copies);
+  }
+
+  public synchronized void save(File file) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty(URL, url);
+    properties.setProperty(LENGTH, String.valueOf(length));
+    if (validator != null) {
+      properties.setProperty(VALIDATOR, validator);
+    }
+    properties.setProperty(RANGES, String.valueOf(ranges.size()));
+    for (int i = 0; i < ranges.size(); i++) {
+      Range range = ranges.get(i);
+      properties.setProperty(RANGE + i, range.getStart() + "," + range.getEnd() + "," + range.getPosition());
+    }
+
+    // write a new copy and swap it in so a crash never leaves a truncated checkpoint
+    File temp = new File(file.getPath() + ".tmp");
+    OutputStream out = new FileOutputStream(temp);
+    try {
+      properties.store(out, null);
+    } finally {
+      out.close();
+    }
+    FileMover.move(temp, file);
+  }
+
+  public boolean matches(String url, long length, String validator) {
+    return this.url.equals(url)
+        && this.length == length
+        && (this.validator == null ? validator == null : this.validator.equals(validator));
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  public String getValidator() {
+    return validator;
+  }
+
+  public List<Range> getRanges() {
+    return ranges;
+  }
+
+  public long getRemaining() {
+    long remaining = 0;
+    for (Range range : ranges) {
+      remaining += range.getRemaining();
+    }
+    return remaining;
+  }
+
+  /**
+   * An inclusive byte range and the position up to which it has been written.
+   */
+  public static class Range {
+
+    private final long start;
+    private final long end;
+    private volatile long position;
+
+    private Range(long start, long end, long position) {
+      this.start = start;
+      this.end = end;
+      this.position = position;
+    }
+
+    public long getStart() {
+      return start;
+    }
+
+    public long getEnd() {
+      return end;
+    }
+
+    public long getPosition() {
+      return position;
+    }
+
+    public long getRemaining() {
+      return end - position + 1;
+    }
+
+    public boolean isComplete() {
+      return position > end;
+    }
+
+    void advance(long count) {
+      // each range is only ever written by a single thread
+      position += count;
+    }
+  }
+}
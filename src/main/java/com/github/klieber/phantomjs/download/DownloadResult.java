@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+
+import java.io.File;
+
+/**
+ * The outcome of downloading one archive as part of a batch. Either the file or the exception
+ * is set so a single failure does not hide the archives that were downloaded.
+ */
+public class DownloadResult {
+
+  private final PhantomJSArchive archive;
+  private final File file;
+  private final DownloadException exception;
+
+  private DownloadResult(PhantomJSArchive archive, File file, DownloadException exception) {
+    this.archive = archive;
+    this.file = file;
+    this.exception = exception;
+  }
+
+  public static DownloadResult success(PhantomJSArchive archive, File file) {
+    return new DownloadResult(archive, file, null);
+  }
+
+  public static DownloadResult failure(PhantomJSArchive archive, DownloadException exception) {
+    return new DownloadResult(archive, null, exception);
+  }
+
+  public PhantomJSArchive getArchive() {
+    return archive;
+  }
+
+  /**
+   * @return the downloaded file
+   * @throws DownloadException if this archive could not be downloaded
+   */
+  public File getFile() throws DownloadException {
+    if (exception != null) {
+      throw exception;
+    }
+    return file;
+  }
+
+  public DownloadException getException() {
+    return exception;
+  }
+
+  public boolean isSuccessful() {
+    return exception == null;
+  }
+}
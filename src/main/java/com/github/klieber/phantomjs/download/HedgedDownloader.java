@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.util.DaemonThreadFactory;
+import com.github.klieber.phantomjs.util.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Races the eligible download sources against each other. The sources are tried best first
+ * according to their {@link MirrorStatistics}, falling back to the order they were given; when
+ * the current source has not started sending the archive within the hedge delay the next
+ * source is started as well. The first source to finish wins and the others are cancelled. A
+ * source that fails hands over to the next one immediately. How each source performed is
+ * recorded for the next build.
+ */
+public class HedgedDownloader implements Downloader {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HedgedDownloader.class);
+
+  private static final String NO_RULES_MATCH = "No matching Downloader found.";
+  private static final String HEDGING = "No response after {} ms, also trying the next download source";
+  private static final String SOURCE_FAILED = "Download source failed, trying the next one: {}";
+  private static final String INTERRUPTED = "Interrupted while downloading phantomjs";
+  private static final String STILL_RUNNING = "A cancelled download source is still blocked on the network, it will not publish the archive";
+
+  // a source blocked on a socket read only notices that it was cancelled once the read returns
+  private static final long CANCEL_TIMEOUT = 2000;
+
+  public static final long DEFAULT_HEDGE_DELAY = 2000;
+
+  private final Map<WebDownloader, Predicate<String>> rules;
+  private final long hedgeDelay;
+  private final MirrorStatistics statistics;
+
+  /**
+   * @param rules the sources in order of preference, each with the versions it can provide
+   * @param hedgeDelay milliseconds to wait for a source to respond before starting the next one
+   * @param statistics the past performance of the sources
+   */
+  public HedgedDownloader(Map<WebDownloader, Predicate<String>> rules, long hedgeDelay, MirrorStatistics statistics) {
+    this.rules = rules;
+    this.hedgeDelay = hedgeDelay;
+    this.statistics = statistics;
+  }
+
+  @Override
+  public File download(PhantomJSArchive archive) throws DownloadException {
+    List<WebDownloader> sources = new ArrayList<WebDownloader>();
+    for (Map.Entry<WebDownloader, Predicate<String>> entry : rules.entrySet()) {
+      if (entry.getValue().apply(archive.getVersion())) {
+        sources.add(entry.getKey());
+      }
+    }
+    if (sources.isEmpty()) {
+      throw new DownloadException(NO_RULES_MATCH);
+    }
+    // a stable sort keeps the configured order for sources without statistics
+    Collections.sort(sources, new Comparator<WebDownloader>() {
+      @Override
+      public int compare(WebDownloader downloader1, WebDownloader downloader2) {
+        return statistics.compare(downloader1.getBaseUrl(), downloader2.getBaseUrl());
+      }
+    });
+
+    try {
+      if (sources.size() == 1) {
+        return new Attempt(sources.get(0), archive).call();
+      }
+      ExecutorService executor = Executors.newFixedThreadPool(sources.size(), new DaemonThreadFactory("phantomjs-hedge"));
+      try {
+        return race(archive, sources, new ExecutorCompletionService<File>(executor));
+      } finally {
+        // cancels the sources that lost the race and waits for them while the caller still
+        // holds its lock, so none of them touches the cached archive after this returns
+        executor.shutdownNow();
+        awaitCancelled(executor);
+      }
+    } finally {
+      statistics.save();
+    }
+  }
+
+  private File race(PhantomJSArchive archive,
+                    List<WebDownloader> sources,
+                    CompletionService<File> completionService) throws DownloadException {
+    Map<Future<File>, Attempt> running = new HashMap<Future<File>, Attempt>();
+    int next = 0;
+    DownloadException exception = null;
+    try {
+      while (true) {
+        if (running.isEmpty()) {
+          if (next == sources.size()) {
+            throw exception;
+          }
+          start(new Attempt(sources.get(next++), archive), completionService, running);
+        }
+
+        Future<File> done;
+        if (next < sources.size() && !isAnyStarted(running.values())) {
+          done = completionService.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+          if (done == null) {
+            LOGGER.info(HEDGING, hedgeDelay);
+            start(new Attempt(sources.get(next++), archive), completionService, running);
+            continue;
+          }
+        } else {
+          done = completionService.take();
+        }
+
+        running.remove(done);
+        try {
+          return done.get();
+        } catch (ExecutionException e) {
+          exception = toDownloadException(e.getCause());
+          LOGGER.debug(SOURCE_FAILED, exception.getMessage());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DownloadException(INTERRUPTED, e);
+    }
+  }
+
+  private void awaitCancelled(ExecutorService executor) {
+    try {
+      if (!executor.awaitTermination(CANCEL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+        LOGGER.debug(STILL_RUNNING);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void start(Attempt attempt, CompletionService<File> completionService, Map<Future<File>, Attempt> running) {
+    running.put(completionService.submit(attempt), attempt);
+  }
+
+  private boolean isAnyStarted(Iterable<Attempt> attempts) {
+    for (Attempt attempt : attempts) {
+      if (attempt.isStarted()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private DownloadException toDownloadException(Throwable cause) {
+    if (cause instanceof DownloadException) {
+      return (DownloadException) cause;
+    }
+    return new DownloadException(cause.getMessage(), cause);
+  }
+
+  private class Attempt implements Callable<File>, TransferListener {
+
+    private final WebDownloader downloader;
+    private final PhantomJSArchive archive;
+    private volatile boolean started;
+
+    private Attempt(WebDownloader downloader, PhantomJSArchive archive) {
+      this.downloader = downloader;
+      this.archive = archive;
+    }
+
+    @Override
+    public File call() throws DownloadException {
+      downloader.setTransferListener(this);
+      try {
+        return downloader.download(archive);
+      } catch (DownloadException e) {
+        if (!Thread.currentThread().isInterrupted()) {
+          // a source that lost the race was cancelled, that says nothing about its health
+          statistics.recordFailure(downloader.getBaseUrl());
+        }
+        throw e;
+      } finally {
+        downloader.setTransferListener(null);
+      }
+    }
+
+    @Override
+    public void transferStarted(URL url) {
+      started = true;
+    }
+
+    @Override
+    public void transferCompleted(URL url, TransferStatistics transferStatistics) {
+      statistics.recordSuccess(downloader.getBaseUrl(), transferStatistics);
+    }
+
+    public boolean isStarted() {
+      return started;
+    }
+  }
+}
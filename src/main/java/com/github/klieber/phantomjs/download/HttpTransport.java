@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import org.codehaus.plexus.util.Base64;
+import org.codehaus.plexus.util.IOUtil;
+import org.eclipse.aether.ConfigurationProperties;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+import org.eclipse.aether.repository.AuthenticationContext;
+import org.eclipse.aether.repository.Proxy;
+import org.eclipse.aether.repository.ProxySelector;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Opens the connections used by the downloaders, applying the timeouts, user agent and proxy
+ * configured for the maven session. One transport is shared by every download in a build.
+ * Idle connections are kept alive by the jvm and reused by later downloads to the same host,
+ * which is why responses are released by reading them to the end rather than disconnected.</p>
+ * <p>Proxy credentials are sent with every plain http request. The CONNECT request that tunnels
+ * an https download never carries request headers and is only authenticated by the jvm wide
+ * default {@link java.net.Authenticator}. That one is shared with every other plugin in the
+ * build, so it is left alone: whatever maven or another plugin installed answers the challenge,
+ * and a warning is logged that the credentials from the settings are not used for the tunnel.
+ * Since JDK 8u111 the jvm also refuses Basic authentication for such tunnels unless it is
+ * removed from the {@code jdk.http.auth.tunneling.disabledSchemes} system property, for example
+ * with {@code -Djdk.http.auth.tunneling.disabledSchemes=} in MAVEN_OPTS.</p>
+ */
+public class HttpTransport {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HttpTransport.class);
+
+  private static final String TUNNEL_CREDENTIALS = "Downloading {} through proxy {}:{}, the proxy credentials from the maven settings cannot be sent when tunneling https and are left to the default authenticator of the jvm";
+
+  private static final String SESSION_KEY = HttpTransport.class.getName();
+
+  private static final String USER_AGENT = "User-Agent";
+  private static final String PROXY_AUTHORIZATION = "Proxy-Authorization";
+
+  private static final ProxySettings NO_PROXY = new ProxySettings(java.net.Proxy.NO_PROXY, null);
+
+  public static final HttpTransport DEFAULT = new HttpTransport(
+      null,
+      ConfigurationProperties.DEFAULT_CONNECT_TIMEOUT,
+      ConfigurationProperties.DEFAULT_REQUEST_TIMEOUT,
+      ConfigurationProperties.DEFAULT_USER_AGENT);
+
+  private final RepositorySystemSession session;
+  private final int connectTimeout;
+  private final int readTimeout;
+  private final String userAgent;
+  private final ConcurrentMap<String, ProxySettings> proxies;
+
+  public HttpTransport(int connectTimeout, int readTimeout) {
+    this(null, connectTimeout, readTimeout, ConfigurationProperties.DEFAULT_USER_AGENT);
+  }
+
+  private HttpTransport(RepositorySystemSession session, int connectTimeout, int readTimeout, String userAgent) {
+    this.session = session;
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+    this.userAgent = userAgent;
+    this.proxies = new ConcurrentHashMap<String, ProxySettings>();
+  }
+
+  /**
+   * Returns the transport of the given session, creating it for the first download of the build.
+   */
+  public static HttpTransport forSession(RepositorySystemSession session) {
+    SessionData data = session.getData();
+    HttpTransport transport = (HttpTransport) data.get(SESSION_KEY);
+    if (transport == null) {
+      transport = new HttpTransport(
+          session,
+          ConfigUtils.getInteger(session, ConfigurationProperties.DEFAULT_CONNECT_TIMEOUT, ConfigurationProperties.CONNECT_TIMEOUT),
+          ConfigUtils.getInteger(session, ConfigurationProperties.DEFAULT_REQUEST_TIMEOUT, ConfigurationProperties.REQUEST_TIMEOUT),
+          ConfigUtils.getString(session, ConfigurationProperties.DEFAULT_USER_AGENT, ConfigurationProperties.USER_AGENT));
+      // another execution may have won the race, in which case its transport is used
+      data.set(SESSION_KEY, null, transport);
+      transport = (HttpTransport) data.get(SESSION_KEY);
+    }
+    return transport;
+  }
+
+  public int getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public int getReadTimeout() {
+    return readTimeout;
+  }
+
+  public URLConnection openConnection(URL url) throws IOException {
+    ProxySettings proxy = getProxy(url);
+    URLConnection connection = proxy == NO_PROXY ? url.openConnection() : url.openConnection(proxy.getProxy());
+    connection.setConnectTimeout(connectTimeout);
+    connection.setReadTimeout(readTimeout);
+    if (connection instanceof HttpURLConnection) {
+      connection.setRequestProperty(USER_AGENT, userAgent);
+      if (proxy.getAuthorization() != null) {
+        connection.setRequestProperty(PROXY_AUTHORIZATION, proxy.getAuthorization());
+      }
+    }
+    return connection;
+  }
+
+  /**
+   * Finishes a response that has little or no body, leaving the connection open for reuse.
+   */
+  public static void release(URLConnection connection) {
+    InputStream in = null;
+    try {
+      in = connection.getInputStream();
+    } catch (IOException e) {
+      if (connection instanceof HttpURLConnection) {
+        in = ((HttpURLConnection) connection).getErrorStream();
+      }
+    }
+    if (in != null) {
+      try {
+        byte[] buffer = new byte[1024];
+        while (in.read(buffer) != -1) {
+          // discard
+        }
+      } catch (IOException e) {
+        // the connection cannot be reused, nothing else to do
+      } finally {
+        IOUtil.close(in);
+      }
+    }
+  }
+
+  private ProxySettings getProxy(URL url) throws IOException {
+    if (session == null || session.getProxySelector() == null || !url.getProtocol().startsWith("http")) {
+      return NO_PROXY;
+    }
+    String key = url.getProtocol() + "://" + url.getAuthority();
+    ProxySettings proxy = proxies.get(key);
+    if (proxy == null) {
+      proxy = selectProxy(session.getProxySelector(), url);
+      proxies.putIfAbsent(key, proxy);
+    }
+    return proxy;
+  }
+
+  private ProxySettings selectProxy(ProxySelector proxySelector, URL url) throws IOException {
+    RemoteRepository repository = new RemoteRepository.Builder("phantomjs", "default", url.toString()).build();
+    Proxy proxy = proxySelector.getProxy(repository);
+    if (proxy == null) {
+      return NO_PROXY;
+    }
+    java.net.Proxy httpProxy = new java.net.Proxy(
+        java.net.Proxy.Type.HTTP, InetSocketAddress.createUnresolved(proxy.getHost(), proxy.getPort()));
+
+    String authorization = null;
+    AuthenticationContext context = AuthenticationContext.forProxy(
+        session, new RemoteRepository.Builder(repository).setProxy(proxy).build());
+    if (context != null) {
+      try {
+        String username = context.get(AuthenticationContext.USERNAME);
+        String password = context.get(AuthenticationContext.PASSWORD);
+        if (username != null) {
+          authorization = "Basic " + encode(username + ":" + (password == null ? "" : password));
+          if ("https".equals(url.getProtocol())) {
+            LOGGER.warn(TUNNEL_CREDENTIALS, url, proxy.getHost(), proxy.getPort());
+          }
+        }
+      } finally {
+        context.close();
+      }
+    }
+    return new ProxySettings(httpProxy, authorization);
+  }
+
+  private String encode(String credentials) throws UnsupportedEncodingException {
+    return new String(Base64.encodeBase64(credentials.getBytes("UTF-8")), "US-ASCII");
+  }
+
+  private static class ProxySettings {
+
+    private final java.net.Proxy proxy;
+    private final String authorization;
+
+    private ProxySettings(java.net.Proxy proxy, String authorization) {
+      this.proxy = proxy;
+      this.authorization = authorization;
+    }
+
+    public java.net.Proxy getProxy() {
+      return proxy;
+    }
+
+    public String getAuthorization() {
+      return authorization;
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.cache.CachedFile;
+import com.github.klieber.phantomjs.lock.LockManager;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Holds the lock of the cached archive while downloading it, so that builds running at the
+ * same time download each archive once and the others reuse it. Every use of the archive is
+ * recorded so that pruning the cache removes the least recently used archives first.
+ */
+public class LockingDownloader implements Downloader {
+
+  private static final String UNABLE_TO_LOCK = "Unable to lock ";
+
+  private final Downloader downloader;
+  private final CachedFile cachedFile;
+  private final LockManager lockManager;
+
+  public LockingDownloader(Downloader downloader, CachedFile cachedFile, LockManager lockManager) {
+    this.downloader = downloader;
+    this.cachedFile = cachedFile;
+    this.lockManager = lockManager;
+  }
+
+  @Override
+  public File download(PhantomJSArchive archive) throws DownloadException {
+    LockManager.Lock lock = lock();
+    try {
+      File file = downloader.download(archive);
+      cachedFile.touch();
+      return file;
+    } finally {
+      lock.release();
+    }
+  }
+
+  protected CachedFile getCachedFile() {
+    return cachedFile;
+  }
+
+  protected LockManager.Lock lock() throws DownloadException {
+    File target = cachedFile.getFile();
+    try {
+      return lockManager.lock(target);
+    } catch (IOException e) {
+      throw new DownloadException(UNABLE_TO_LOCK + target, e);
+    }
+  }
+}
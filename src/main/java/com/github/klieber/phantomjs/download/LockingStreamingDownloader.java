@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.cache.CachedFile;
+import com.github.klieber.phantomjs.lock.LockManager;
+
+import java.io.OutputStream;
+
+/**
+ * A {@link LockingDownloader} for streaming downloads. The lock is held while the archive is
+ * streamed into the cache, a build waiting for it then streams the cached copy instead. When
+ * the archive is not kept nothing is shared through the cache, concurrent builds are then kept
+ * apart by the lock the installer holds on the extracted binary.
+ */
+public class LockingStreamingDownloader extends LockingDownloader implements StreamingDownloader {
+
+  private final StreamingDownloader downloader;
+
+  public LockingStreamingDownloader(StreamingDownloader downloader, CachedFile cachedFile, LockManager lockManager) {
+    super(downloader, cachedFile, lockManager);
+    this.downloader = downloader;
+  }
+
+  @Override
+  public void download(PhantomJSArchive archive, OutputStream out, boolean keepArchive) throws DownloadException {
+    if (!keepArchive) {
+      // nothing is written to the cache
+      downloader.download(archive, out, false);
+      getCachedFile().touch();
+      return;
+    }
+    LockManager.Lock lock = lock();
+    try {
+      downloader.download(archive, out, true);
+      getCachedFile().touch();
+    } finally {
+      lock.release();
+    }
+  }
+}
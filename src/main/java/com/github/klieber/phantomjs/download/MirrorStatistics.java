@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import com.github.klieber.phantomjs.lock.LockManager;
+import com.github.klieber.phantomjs.util.FileMover;
+import org.codehaus.plexus.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Keeps a running score of how each download mirror performed so that later builds try the
+ * fastest healthy mirror first. Time to first byte, throughput and reliability are tracked as
+ * moving averages, which lets the ranking follow a mirror that gets faster or slower over time.
+ * The scores are kept in a small properties file, usually in the local repository. Builds
+ * running at the same time share that file, so saving merges the samples recorded by this
+ * build into the file as it is now, under the file's lock.
+ */
+public class MirrorStatistics implements Comparator<String> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MirrorStatistics.class);
+
+  private static final String UNABLE_TO_SAVE = "Unable to save mirror statistics to {}";
+
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private static final String LATENCY = ".latency";
+  private static final String THROUGHPUT = ".throughput";
+  private static final String RELIABILITY = ".reliability";
+
+  // how much a new sample counts towards the moving averages
+  private static final double WEIGHT = 0.3;
+
+  // mirrors that fail more often than they succeed are tried last
+  private static final double HEALTHY = 0.5;
+
+  // roughly the size of a phantomjs archive, used to weigh latency against throughput
+  private static final long REFERENCE_SIZE = 16 * 1024 * 1024;
+
+  private final File file;
+  private final LockManager lockManager;
+  private final Map<String, Mirror> mirrors;
+  // recorded since the last save, replayed onto the file when saving
+  private final List<Sample> samples;
+
+  /**
+   * @param file where the statistics are kept or null to keep them in memory only
+   */
+  public MirrorStatistics(File file) {
+    this(file, new LockManager());
+  }
+
+  public MirrorStatistics(File file, LockManager lockManager) {
+    this.file = file;
+    this.lockManager = lockManager;
+    this.mirrors = new HashMap<String, Mirror>();
+    this.samples = new ArrayList<Sample>();
+    load(mirrors);
+  }
+
+  public synchronized void recordSuccess(String mirror, TransferStatistics statistics) {
+    Sample sample = new Sample(mirror, statistics);
+    sample.applyTo(mirrors);
+    samples.add(sample);
+  }
+
+  public synchronized void recordFailure(String mirror) {
+    Sample sample = new Sample(mirror, null);
+    sample.applyTo(mirrors);
+    samples.add(sample);
+  }
+
+  /**
+   * Orders mirrors from best to worst: healthy mirrors by their expected download time, then
+   * mirrors that have not been measured yet, then unhealthy mirrors.
+   */
+  @Override
+  public synchronized int compare(String mirror1, String mirror2) {
+    Mirror first = mirrors.get(mirror1);
+    Mirror second = mirrors.get(mirror2);
+    int rank = rank(first) - rank(second);
+    if (rank != 0 || first == null) {
+      return rank;
+    }
+    return Double.compare(first.getExpectedTime(), second.getExpectedTime());
+  }
+
+  public synchronized void save() {
+    if (file == null || samples.isEmpty()) {
+      return;
+    }
+    try {
+      LockManager.Lock lock = lockManager.lock(file);
+      try {
+        // another build may have saved since this one loaded the file
+        Map<String, Mirror> merged = new HashMap<String, Mirror>();
+        load(merged);
+        for (Sample sample : samples) {
+          sample.applyTo(merged);
+        }
+        write(merged);
+        mirrors.clear();
+        mirrors.putAll(merged);
+        samples.clear();
+      } finally {
+        lock.release();
+      }
+    } catch (IOException e) {
+      // the statistics only affect the order mirrors are tried in
+      LOGGER.warn(UNABLE_TO_SAVE, file, e);
+    }
+  }
+
+  private void write(Map<String, Mirror> statistics) throws IOException {
+    Properties properties = new Properties();
+    for (Map.Entry<String, Mirror> entry : statistics.entrySet()) {
+      Mirror mirror = entry.getValue();
+      properties.setProperty(entry.getKey() + LATENCY, String.valueOf(mirror.latency));
+      properties.setProperty(entry.getKey() + THROUGHPUT, String.valueOf(mirror.throughput));
+      properties.setProperty(entry.getKey() + RELIABILITY, String.valueOf(mirror.reliability));
+    }
+    File directory = file.getAbsoluteFile().getParentFile();
+    if (!directory.exists() && !directory.mkdirs() && !directory.exists()) {
+      throw new IOException("Unable to create directory " + directory);
+    }
+    File temp = File.createTempFile(file.getName(), TEMP_SUFFIX, directory);
+    try {
+      OutputStream out = new FileOutputStream(temp);
+      try {
+        properties.store(out, null);
+      } finally {
+        out.close();
+      }
+      FileMover.move(temp, file);
+    } finally {
+      temp.delete();
+    }
+  }
+
+  private void load(Map<String, Mirror> target) {
+    if (file == null || !file.isFile()) {
+      return;
+    }
+    Properties properties = new Properties();
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      properties.load(in);
+      for (String key : properties.stringPropertyNames()) {
+        if (key.endsWith(RELIABILITY)) {
+          String mirror = key.substring(0, key.length() - RELIABILITY.length());
+          target.put(mirror, new Mirror(
+              Double.parseDouble(properties.getProperty(mirror + LATENCY)),
+              Double.parseDouble(properties.getProperty(mirror + THROUGHPUT)),
+              Double.parseDouble(properties.getProperty(key))));
+        }
+      }
+    } catch (IOException e) {
+      target.clear();
+    } catch (RuntimeException e) {
+      // damaged statistics just mean the configured order is used
+      target.clear();
+    } finally {
+      IOUtil.close(in);
+    }
+  }
+
+  private int rank(Mirror mirror) {
+    if (mirror == null) {
+      return 1;
+    }
+    return mirror.reliability >= HEALTHY ? 0 : 2;
+  }
+
+  private static double average(double current, double sample) {
+    return current + WEIGHT * (sample - current);
+  }
+
+  /**
+   * A single download recorded for a mirror, null statistics being a failure.
+   */
+  private static class Sample {
+
+    private final String mirror;
+    private final TransferStatistics statistics;
+
+    private Sample(String mirror, TransferStatistics statistics) {
+      this.mirror = mirror;
+      this.statistics = statistics;
+    }
+
+    private void applyTo(Map<String, Mirror> mirrors) {
+      Mirror current = mirrors.get(mirror);
+      if (statistics == null) {
+        if (current == null) {
+          mirrors.put(mirror, new Mirror(0, 0, 0));
+        } else {
+          mirrors.put(mirror, new Mirror(current.latency, current.throughput, average(current.reliability, 0)));
+        }
+      } else if (current == null) {
+        mirrors.put(mirror, new Mirror(statistics.getLatency(), statistics.getThroughput(), 1));
+      } else {
+        mirrors.put(mirror, new Mirror(
+            average(current.latency, statistics.getLatency()),
+            average(current.throughput, statistics.getThroughput()),
+            average(current.reliability, 1)));
+      }
+    }
+  }
+
+  private static class Mirror {
+
+    private final double latency;
+    private final double throughput;
+    private final double reliability;
+
+    private Mirror(double latency, double throughput, double reliability) {
+      this.latency = latency;
+      this.throughput = throughput;
+      this.reliability = reliability;
+    }
+
+    private double getExpectedTime() {
+      return latency + (throughput > 0 ? REFERENCE_SIZE * 1000.0 / throughput : Double.MAX_VALUE / 2);
+    }
+  }
+}
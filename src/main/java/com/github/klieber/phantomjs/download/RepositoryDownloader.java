@@ -24,6 +24,7 @@ import com.github.klieber.phantomjs.archive.PhantomJSArchive;
 import com.github.klieber.phantomjs.util.ArtifactBuilder;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.resolution.ArtifactRequest;
 import org.eclipse.aether.resolution.ArtifactResolutionException;
@@ -32,6 +33,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 public class RepositoryDownloader implements Downloader {
@@ -42,6 +44,8 @@ public class RepositoryDownloader implements Downloader {
 
   private final String RESOLVED_ARTIFACT = "Resolved artifact {} from {}";
 
+  private final String UNABLE_TO_RESOLVE_ARTIFACT = "Unable to resolve artifact %s.";
+
   private final ArtifactBuilder artifactBuilder;
   private final RepositorySystem repositorySystem;
   private final List<RemoteRepository> remoteRepositories;
@@ -59,10 +63,19 @@ public class RepositoryDownloader implements Downloader {
 
   @Override
   public File download(PhantomJSArchive archive) throws DownloadException {
-    ArtifactRequest request = new ArtifactRequest();
-    request.setArtifact(artifactBuilder.createArtifact(archive));
-    request.setRepositories(remoteRepositories);
+    return resolve(createRequest(artifactBuilder.createArtifact(archive)));
+  }
+
+  /**
+   * Resolves the artifact holding the already extracted executable of the archive.
+   *
+   * @return the executable
+   */
+  public File downloadBinary(PhantomJSArchive archive) throws DownloadException {
+    return resolve(createRequest(artifactBuilder.createBinaryArtifact(archive)));
+  }
 
+  private File resolve(ArtifactRequest request) throws DownloadException {
     try {
       ArtifactResult result = repositorySystem.resolveArtifact(repositorySystemSession, request);
       LOGGER.info(RESOLVED_ARTIFACT, result.getArtifact().getFile(), result.getRepository());
@@ -71,4 +84,49 @@ public class RepositoryDownloader implements Downloader {
       throw new DownloadException(UNABLE_TO_RESOLVE, e);
     }
   }
+
+  /**
+   * Resolves several archives with a single request so the repository system can transfer them
+   * in parallel. A failure to resolve one archive is reported in its result and does not affect
+   * the others.
+   *
+   * @return one result per archive, in the same order
+   */
+  public List<DownloadResult> downloadAll(List<PhantomJSArchive> archives) {
+    List<ArtifactRequest> requests = new ArrayList<ArtifactRequest>(archives.size());
+    for (PhantomJSArchive archive : archives) {
+      requests.add(createRequest(artifactBuilder.createArtifact(archive)));
+    }
+
+    List<ArtifactResult> results;
+    try {
+      results = repositorySystem.resolveArtifacts(repositorySystemSession, requests);
+    } catch (ArtifactResolutionException e) {
+      // still carries a result for every request, resolved or not
+      results = e.getResults();
+    }
+
+    List<DownloadResult> downloads = new ArrayList<DownloadResult>(archives.size());
+    for (int i = 0; i < archives.size(); i++) {
+      downloads.add(toDownloadResult(archives.get(i), i < results.size() ? results.get(i) : null));
+    }
+    return downloads;
+  }
+
+  private ArtifactRequest createRequest(Artifact artifact) {
+    ArtifactRequest request = new ArtifactRequest();
+    request.setArtifact(artifact);
+    request.setRepositories(remoteRepositories);
+    return request;
+  }
+
+  private DownloadResult toDownloadResult(PhantomJSArchive archive, ArtifactResult result) {
+    if (result != null && result.isResolved()) {
+      LOGGER.info(RESOLVED_ARTIFACT, result.getArtifact().getFile(), result.getRepository());
+      return DownloadResult.success(archive, result.getArtifact().getFile());
+    }
+    Exception cause = result != null && !result.getExceptions().isEmpty() ? result.getExceptions().get(0) : null;
+    String message = String.format(UNABLE_TO_RESOLVE_ARTIFACT, archive.getArchiveName());
+    return DownloadResult.failure(archive, new DownloadException(message, cause));
+  }
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import com.github.klieber.phantomjs.util.DaemonThreadFactory;
+import org.codehaus.plexus.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Downloads the remaining byte ranges of a {@link DownloadCheckpoint} concurrently, writing each
+ * range directly to its position in the target file. Progress is periodically saved to the
+ * checkpoint file so an interrupted transfer can pick up where it left off. Every range request
+ * carries the validator of the checkpoint in If-Range, so a file that changed on the server is
+ * sent whole instead of as a range and the transfer fails rather than mixing two versions.
+ */
+public class SegmentedTransfer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SegmentedTransfer.class);
+
+  private static final String RANGE = "Range";
+  private static final String IF_RANGE = "If-Range";
+  private static final String BYTE_RANGE = "bytes=%d-%d";
+
+  private static final String CHANGED = "%s changed on the server while it was downloaded";
+  private static final String UNEXPECTED_RESPONSE = "Expected partial content for bytes %d-%d but received HTTP %d";
+  private static final String SEGMENT_TRUNCATED = "Segment %d-%d ended at byte %d";
+  private static final String INTERRUPTED = "Segmented download was interrupted";
+  private static final String UNABLE_TO_SAVE = "Unable to save download checkpoint";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  // how many bytes a segment writes between checkpoint updates
+  private static final long CHECKPOINT_INTERVAL = 1024 * 1024;
+
+  private final HttpTransport transport;
+  private final URL url;
+  private final DownloadCheckpoint checkpoint;
+  private final File checkpointFile;
+
+  public SegmentedTransfer(HttpTransport transport, URL url, DownloadCheckpoint checkpoint, File checkpointFile) {
+    this.transport = transport;
+    this.url = url;
+    this.checkpoint = checkpoint;
+    this.checkpointFile = checkpointFile;
+  }
+
+  /**
+   * @return the number of bytes downloaded, not counting ranges completed earlier
+   */
+  public long transferTo(File file) throws IOException {
+    List<DownloadCheckpoint.Range> remaining = new ArrayList<DownloadCheckpoint.Range>();
+    for (DownloadCheckpoint.Range range : checkpoint.getRanges()) {
+      if (!range.isComplete()) {
+        remaining.add(range);
+      }
+    }
+    if (remaining.isEmpty()) {
+      return 0;
+    }
+    long remainingBytes = checkpoint.getRemaining();
+
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    ExecutorService executor = Executors.newFixedThreadPool(remaining.size(), new DaemonThreadFactory("phantomjs-download"));
+    try {
+      if (randomAccessFile.length() != checkpoint.getLength()) {
+        randomAccessFile.setLength(checkpoint.getLength());
+      }
+      FileChannel channel = randomAccessFile.getChannel();
+
+      CompletionService<Void> completionService = new ExecutorCompletionService<Void>(executor);
+      for (DownloadCheckpoint.Range range : remaining) {
+        completionService.submit(new Segment(channel, range));
+      }
+      awaitSegments(completionService, remaining.size());
+      return remainingBytes - checkpoint.getRemaining();
+    } finally {
+      executor.shutdownNow();
+      randomAccessFile.close();
+      try {
+        saveCheckpoint(file);
+      } catch (IOException e) {
+        LOGGER.warn(UNABLE_TO_SAVE, e);
+      }
+    }
+  }
+
+  private void saveCheckpoint(File file) throws IOException {
+    // interrupting a segment mid-write closes the shared channel, so sync through a fresh one
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    try {
+      saveCheckpoint(randomAccessFile.getChannel());
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  private void awaitSegments(CompletionService<Void> completionService, int count) throws IOException {
+    try {
+      for (int i = 0; i < count; i++) {
+        // fail as soon as any segment fails, shutting down the pool interrupts the others
+        completionService.take().get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(INTERRUPTED);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  private synchronized void saveCheckpoint(FileChannel channel) throws IOException {
+    if (checkpoint.getRemaining() > 0) {
+      // the other segments keep writing, so only claim what was written before the sync
+      DownloadCheckpoint written = checkpoint.snapshot();
+      channel.force(false);
+      written.save(checkpointFile);
+    }
+  }
+
+  private class Segment implements Callable<Void> {
+
+    private final FileChannel channel;
+    private final DownloadCheckpoint.Range range;
+
+    private Segment(FileChannel channel, DownloadCheckpoint.Range range) {
+      this.channel = channel;
+      this.range = range;
+    }
+
+    @Override
+    public Void call() throws IOException {
+      long start = range.getPosition();
+      long end = range.getEnd();
+
+      HttpURLConnection connection = (HttpURLConnection) transport.openConnection(url);
+      try {
+        connection.setRequestProperty(RANGE, String.format(BYTE_RANGE, start, end));
+        if (checkpoint.getValidator() != null) {
+          connection.setRequestProperty(IF_RANGE, checkpoint.getValidator());
+        }
+
+        int responseCode = connection.getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_OK && checkpoint.getValidator() != null) {
+          throw new IOException(String.format(CHANGED, url));
+        }
+        if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+          throw new IOException(String.format(UNEXPECTED_RESPONSE, start, end, responseCode));
+        }
+        transfer(connection, start, end);
+      } finally {
+        // a failed or cancelled segment must not hold on to its connection
+        connection.disconnect();
+      }
+      return null;
+    }
+
+    private void transfer(HttpURLConnection connection, long start, long end) throws IOException {
+      ReadableByteChannel in = Channels.newChannel(connection.getInputStream());
+      try {
+        // a direct buffer lets the positional writes go to the file without another copy
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long unsaved = 0;
+        while (!range.isComplete()) {
+          if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException(INTERRUPTED);
+          }
+          buffer.clear();
+          buffer.limit((int) Math.min(buffer.capacity(), range.getRemaining()));
+          int read = in.read(buffer);
+          if (read == -1) {
+            throw new EOFException(String.format(SEGMENT_TRUNCATED, start, end, range.getPosition()));
+          }
+          buffer.flip();
+          while (buffer.hasRemaining()) {
+            range.advance(channel.write(buffer, range.getPosition()));
+          }
+          unsaved += read;
+          if (unsaved >= CHECKPOINT_INTERVAL) {
+            saveCheckpoint(channel);
+            unsaved = 0;
+          }
+        }
+      } finally {
+        IOUtil.close(in);
+      }
+    }
+  }
+}
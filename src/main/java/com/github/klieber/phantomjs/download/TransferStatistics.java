@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import java.util.Locale;
+
+/**
+ * Timings of a single download. The latency is the time until the source answered, which
+ * separates a slow network or mirror from a slow transfer.
+ */
+public class TransferStatistics {
+
+  private static final String SUMMARY = "%.1f KB in %.2f s (%.1f KB/s, first byte after %d ms)";
+
+  private final long bytes;
+  private final long latency;
+  private final long elapsed;
+
+  /**
+   * @param bytes the number of bytes transferred
+   * @param latency milliseconds until the source started sending
+   * @param elapsed milliseconds for the whole download
+   */
+  public TransferStatistics(long bytes, long latency, long elapsed) {
+    this.bytes = bytes;
+    this.latency = latency;
+    this.elapsed = elapsed;
+  }
+
+  public long getBytes() {
+    return bytes;
+  }
+
+  public long getLatency() {
+    return latency;
+  }
+
+  public long getElapsed() {
+    return elapsed;
+  }
+
+  /**
+   * @return the achieved throughput in bytes per second
+   */
+  public long getThroughput() {
+    return elapsed > 0 ? bytes * 1000 / elapsed : bytes * 1000;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ENGLISH, SUMMARY, bytes / 1024.0, elapsed / 1000.0, getThroughput() / 1024.0, latency);
+  }
+}
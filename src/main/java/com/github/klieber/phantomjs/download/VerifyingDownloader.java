@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.util.Checksums;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Checks the SHA-256 of downloaded archives. A cached archive that does not match is removed
+ * and downloaded once more, a fresh download that does not match is removed and rejected.
+ * Downloaders that compute the checksum while transferring remember it, so verifying a new
+ * download does not read the archive again.
+ */
+public class VerifyingDownloader implements Downloader {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VerifyingDownloader.class);
+
+  private static final String VERIFIED = "Verified SHA-256 of {}";
+  private static final String EVICTING = "{} does not match its expected SHA-256, downloading it again";
+  private static final String MISMATCH = "SHA-256 of %s is %s but %s was expected";
+  private static final String UNABLE_TO_VERIFY = "Unable to verify %s";
+
+  private final Downloader downloader;
+  private final String checksum;
+
+  /**
+   * @param checksum the expected lower case hex SHA-256
+   */
+  public VerifyingDownloader(Downloader downloader, String checksum) {
+    this.downloader = downloader;
+    this.checksum = checksum.trim().toLowerCase();
+  }
+
+  @Override
+  public File download(PhantomJSArchive archive) throws DownloadException {
+    File file = downloader.download(archive);
+    if (!matches(file)) {
+      LOGGER.warn(EVICTING, file);
+      evict(file);
+
+      file = downloader.download(archive);
+      String actual = getChecksum(file);
+      if (!checksum.equals(actual)) {
+        evict(file);
+        throw new DownloadException(String.format(MISMATCH, file, actual, checksum));
+      }
+    }
+    LOGGER.debug(VERIFIED, file);
+    return file;
+  }
+
+  private boolean matches(File file) throws DownloadException {
+    return checksum.equals(getChecksum(file));
+  }
+
+  private String getChecksum(File file) throws DownloadException {
+    try {
+      return Checksums.cachedSha256(file);
+    } catch (IOException e) {
+      throw new DownloadException(String.format(UNABLE_TO_VERIFY, file), e);
+    }
+  }
+
+  private void evict(File file) {
+    file.delete();
+    Checksums.forgetSha256(file);
+  }
+}
@@ -21,52 +21,494 @@
 package com.github.klieber.phantomjs.download;
 
 import com.github.klieber.phantomjs.archive.PhantomJSArchive;
-import org.codehaus.plexus.util.FileUtils;
+import com.github.klieber.phantomjs.cache.CacheValidators;
+import com.github.klieber.phantomjs.cache.CachedFile;
+import com.github.klieber.phantomjs.cache.LocalCachedFile;
+import com.github.klieber.phantomjs.util.Checksums;
+import com.github.klieber.phantomjs.util.FileMover;
+import org.codehaus.plexus.util.IOUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 
-public class WebDownloader implements Downloader {
+public class WebDownloader implements StreamingDownloader {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(WebDownloader.class);
 
   private static final String DOWNLOADING = "Downloading phantomjs binary from {}";
+  private static final String STREAMING = "Streaming phantomjs binary from {}";
+  private static final String DOWNLOADING_SEGMENTS = "Downloading {} bytes in {} segments";
+  private static final String RESUMING = "Resuming download at {} of {} bytes";
+  private static final String CHANGED = "{} changed on the server since the download was interrupted, starting over";
+  private static final String DOWNLOADED = "Downloaded {}";
+  private static final String REVALIDATING = "Checking for a newer phantomjs binary at {}";
+  private static final String UP_TO_DATE = "Cached phantomjs binary is up to date";
+  private static final String DAMAGED = "Cached phantomjs binary {} does not match its recorded length, downloading it again";
+  private static final String UNABLE_TO_REVALIDATE = "Unable to check {} for a newer phantomjs binary, using the cached copy: {}";
+  private static final String UNABLE_TO_SAVE_VALIDATORS = "Unable to save cache validators";
   private static final String UNABLE_TO_DOWNLOAD = "Unable to download phantomjs binary from ";
+  private static final String TRUNCATED = "Download ended after %d of %d bytes";
+  private static final String INTERRUPTED = "Download was interrupted";
+  private static final String ALREADY_PUBLISHED = "{} was published by another download source, discarding this copy";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  // the most bytes handed to a single FileChannel.transferFrom call
+  private static final long TRANSFER_SIZE = 1024 * 1024;
+
+  private static final String PART = ".part";
+  private static final String CHECKPOINT = ".checkpoint";
+
+  private static final String RANGE = "Range";
+  private static final String FIRST_BYTE = "bytes=0-0";
+  private static final String CONTENT_RANGE = "Content-Range";
+  private static final String CONTENT_LENGTH = "Content-Length";
+  private static final String ETAG = "ETag";
+  private static final String LAST_MODIFIED = "Last-Modified";
+  private static final String IF_NONE_MATCH = "If-None-Match";
+  private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+  private static final String WEAK_ETAG = "W/";
+
+  public static final int DEFAULT_SEGMENTS = 4;
+
+  // files smaller than this per segment are not worth the extra connections
+  private static final long MINIMUM_SEGMENT_SIZE = 512 * 1024;
 
   private final String baseUrl;
+  private final CachedFile cachedFile;
   private final File target;
+  private final File part;
+  private final File checkpointFile;
+  private final int segments;
+  private final boolean revalidate;
+  private final HttpTransport transport;
+
+  // the sources racing for a target publish one at a time
+  private static final Object PUBLISH_LOCK = new Object();
+
+  private TransferListener transferListener;
+
+  private long targetModified;
+
+  private long startTime;
+  private long firstByteTime;
+  private TransferStatistics statistics;
+  private String etag;
+  private String lastModified;
+  private MessageDigest digest;
 
   public WebDownloader(String baseUrl, File target) {
+    this(baseUrl, target, DEFAULT_SEGMENTS);
+  }
+
+  public WebDownloader(String baseUrl, File target, int segments) {
+    this(baseUrl, new LocalCachedFile(target), segments, false, HttpTransport.DEFAULT);
+  }
+
+  /**
+   * @param revalidate when true a cached archive is checked against the server with a
+   *                   conditional request and replaced if it changed
+   */
+  public WebDownloader(String baseUrl,
+                       CachedFile cachedFile,
+                       int segments,
+                       boolean revalidate,
+                       HttpTransport transport) {
     this.baseUrl = baseUrl;
-    this.target = target;
+    this.cachedFile = cachedFile;
+    this.target = cachedFile.getFile();
+    // each source gets its own partial file so that several sources can race for the same target
+    this.part = new File(target.getPath() + "." + Integer.toHexString(baseUrl.hashCode()) + PART);
+    this.checkpointFile = new File(part.getPath() + CHECKPOINT);
+    this.segments = segments;
+    this.revalidate = revalidate;
+    this.transport = transport;
+  }
+
+  public String getBaseUrl() {
+    return baseUrl;
+  }
+
+  public void setTransferListener(TransferListener transferListener) {
+    this.transferListener = transferListener;
+  }
+
+  /**
+   * @return the statistics of the last completed download or null if nothing was downloaded
+   */
+  public TransferStatistics getStatistics() {
+    return statistics;
   }
 
   @Override
   public File download(PhantomJSArchive archive) throws DownloadException {
+    String url = buildDownloadUrl(archive);
+    if (this.target.exists()) {
+      if (isDamaged()) {
+        LOGGER.warn(DAMAGED, target);
+        target.delete();
+      } else if (revalidate) {
+        revalidate(url);
+      }
+    }
     if (!this.target.exists()) {
-      String url = buildDownloadUrl(archive);
       try {
         URL downloadLocation = new URL(url);
 
         LOGGER.info(DOWNLOADING, url);
-        FileUtils.copyURLToFile(downloadLocation, target);
+        start();
+        long bytes = transfer(downloadLocation);
 
-        if (target.length() <= 0) {
+        if (part.length() <= 0) {
+          part.delete();
           throw new DownloadException(UNABLE_TO_DOWNLOAD+url);
         }
+        publish();
+        complete(downloadLocation, bytes);
       } catch (MalformedURLException e) {
         throw new DownloadException(UNABLE_TO_DOWNLOAD+url, e);
       } catch (IOException e) {
+        if (!checkpointFile.exists()) {
+          // nothing to resume from so the partial file is useless
+          part.delete();
+        }
         throw new DownloadException(UNABLE_TO_DOWNLOAD+url, e);
       }
     }
     return this.target;
   }
 
+  /**
+   * Writes the archive to the given stream while it downloads. The archive is read from the
+   * cache instead when it is already there, and it is only added to the cache when
+   * keepArchive is true.
+   */
+  @Override
+  public void download(PhantomJSArchive archive, OutputStream out, boolean keepArchive) throws DownloadException {
+    String url = buildDownloadUrl(archive);
+    try {
+      if (this.target.exists() && !isDamaged()) {
+        InputStream in = new FileInputStream(this.target);
+        try {
+          IOUtil.copy(in, out);
+        } finally {
+          in.close();
+        }
+        return;
+      }
+
+      URL downloadLocation = new URL(url);
+
+      LOGGER.info(STREAMING, url);
+      start();
+      URLConnection connection = transport.openConnection(downloadLocation);
+      long bytes;
+      if (keepArchive) {
+        createTargetDirectory();
+        // the partial file is rewritten from the start so any older checkpoint no longer applies
+        checkpointFile.delete();
+        OutputStream cache = new FileOutputStream(part);
+        try {
+          bytes = copy(connection, new TeeOutputStream(out, cache));
+        } finally {
+          cache.close();
+        }
+        publish();
+      } else {
+        bytes = copy(connection, out);
+      }
+      complete(downloadLocation, bytes);
+    } catch (MalformedURLException e) {
+      throw new DownloadException(UNABLE_TO_DOWNLOAD+url, e);
+    } catch (IOException e) {
+      part.delete();
+      throw new DownloadException(UNABLE_TO_DOWNLOAD+url, e);
+    }
+  }
+
+  private boolean isDamaged() {
+    CacheValidators validators = cachedFile.getValidators();
+    return validators != null && validators.getLength() != target.length();
+  }
+
+  /**
+   * Asks the server whether the cached archive is still current, replacing it when it is not.
+   * The cached copy is kept when the server cannot be reached.
+   */
+  private void revalidate(String url) throws DownloadException {
+    try {
+      URL downloadLocation = new URL(url);
+      URLConnection connection = transport.openConnection(downloadLocation);
+      if (!(connection instanceof HttpURLConnection)) {
+        return;
+      }
+      HttpURLConnection httpConnection = (HttpURLConnection) connection;
+      CacheValidators validators = cachedFile.getValidators();
+      if (validators != null && validators.getETag() != null) {
+        httpConnection.setRequestProperty(IF_NONE_MATCH, validators.getETag());
+      }
+      if (validators != null && validators.getLastModified() != null) {
+        httpConnection.setRequestProperty(IF_MODIFIED_SINCE, validators.getLastModified());
+      } else {
+        httpConnection.setIfModifiedSince(target.lastModified());
+      }
+
+      LOGGER.info(REVALIDATING, url);
+      start();
+      int responseCode = httpConnection.getResponseCode();
+      if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        LOGGER.info(UP_TO_DATE);
+        HttpTransport.release(httpConnection);
+        return;
+      }
+      if (responseCode != HttpURLConnection.HTTP_OK) {
+        LOGGER.warn(UNABLE_TO_REVALIDATE, url, "HTTP " + responseCode);
+        HttpTransport.release(httpConnection);
+        return;
+      }
+
+      checkpointFile.delete();
+      FileOutputStream out = new FileOutputStream(part);
+      long bytes;
+      try {
+        bytes = copy(httpConnection, out.getChannel());
+      } finally {
+        out.close();
+      }
+      publish();
+      complete(downloadLocation, bytes);
+    } catch (MalformedURLException e) {
+      throw new DownloadException(UNABLE_TO_DOWNLOAD+url, e);
+    } catch (IOException e) {
+      part.delete();
+      LOGGER.warn(UNABLE_TO_REVALIDATE, url, e.getMessage());
+    }
+  }
+
+  private long transfer(URL url) throws IOException {
+    createTargetDirectory();
+
+    URLConnection connection = transport.openConnection(url);
+    if (connection instanceof HttpURLConnection) {
+      // ask for the first byte only, a server that supports ranges tells us the full length
+      connection.setRequestProperty(RANGE, FIRST_BYTE);
+      HttpURLConnection httpConnection = (HttpURLConnection) connection;
+      if (httpConnection.getResponseCode() == HttpURLConnection.HTTP_PARTIAL) {
+        long length = getTotalLength(httpConnection.getHeaderField(CONTENT_RANGE));
+        HttpTransport.release(httpConnection);
+
+        // use the final location in case the request was redirected
+        URL location = httpConnection.getURL();
+        if (length > 0) {
+          DownloadCheckpoint checkpoint = getCheckpoint(url.toString(), length, getRangeValidator(httpConnection));
+          transferStarted(httpConnection);
+          // segments arrive out of order, the checksum is computed from the file when needed
+          digest = null;
+          return new SegmentedTransfer(transport, location, checkpoint, checkpointFile).transferTo(part);
+        }
+        connection = transport.openConnection(location);
+      }
+    }
+    // the server ignored the range request and is sending everything, this cannot be resumed
+    checkpointFile.delete();
+    FileOutputStream out = new FileOutputStream(part);
+    try {
+      return copy(connection, out.getChannel());
+    } finally {
+      out.close();
+    }
+  }
+
+  private DownloadCheckpoint getCheckpoint(String url, long length, String validator) {
+    DownloadCheckpoint checkpoint = DownloadCheckpoint.load(checkpointFile);
+    if (checkpoint != null && part.exists()) {
+      if (checkpoint.matches(url, length, validator)) {
+        LOGGER.info(RESUMING, length - checkpoint.getRemaining(), length);
+        return checkpoint;
+      }
+      // the bytes written so far may belong to another version of the file
+      LOGGER.info(CHANGED, url);
+      part.delete();
+    }
+    int count = length >= MINIMUM_SEGMENT_SIZE * segments ? segments : 1;
+    if (count > 1) {
+      LOGGER.info(DOWNLOADING_SEGMENTS, length, count);
+    }
+    return DownloadCheckpoint.create(url, length, validator, count);
+  }
+
+  /**
+   * @return what If-Range can be given to resume the file, a weak ETag cannot be used for that
+   */
+  private String getRangeValidator(URLConnection connection) {
+    String etag = connection.getHeaderField(ETAG);
+    if (etag != null && !etag.startsWith(WEAK_ETAG)) {
+      return etag;
+    }
+    return connection.getHeaderField(LAST_MODIFIED);
+  }
+
+  private long copy(URLConnection connection, OutputStream out) throws IOException {
+    InputStream in = connection.getInputStream();
+    transferStarted(connection);
+    long count = 0;
+    try {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        checkInterrupted();
+        out.write(buffer, 0, read);
+        digest.update(buffer, 0, read);
+        count += read;
+      }
+    } finally {
+      IOUtil.close(in);
+    }
+    checkLength(connection, count);
+    return count;
+  }
+
+  private long copy(URLConnection connection, FileChannel out) throws IOException {
+    ReadableByteChannel in = new DigestChannel(Channels.newChannel(connection.getInputStream()), digest);
+    transferStarted(connection);
+    long count = 0;
+    try {
+      // let the file channel pull from the connection instead of copying through a heap buffer
+      long read;
+      while ((read = out.transferFrom(in, count, TRANSFER_SIZE)) > 0) {
+        checkInterrupted();
+        count += read;
+      }
+    } finally {
+      IOUtil.close(in);
+    }
+    checkLength(connection, count);
+    return count;
+  }
+
+  private void checkInterrupted() throws InterruptedIOException {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new InterruptedIOException(INTERRUPTED);
+    }
+  }
+
+  private void checkLength(URLConnection connection, long count) throws EOFException {
+    // a connection that is dropped early looks like a normal end of stream
+    long length = getLength(connection.getHeaderField(CONTENT_LENGTH));
+    if (length >= 0 && count != length) {
+      throw new EOFException(String.format(TRUNCATED, count, length));
+    }
+  }
+
+  private void start() {
+    startTime = System.currentTimeMillis();
+    firstByteTime = 0;
+    targetModified = target.lastModified();
+    etag = null;
+    lastModified = null;
+    // the checksum is computed while the archive is transferred instead of reading it again
+    digest = Checksums.newSha256();
+  }
+
+  private void complete(URL url, long bytes) {
+    long now = System.currentTimeMillis();
+    long latency = firstByteTime > 0 ? firstByteTime - startTime : now - startTime;
+    statistics = new TransferStatistics(bytes, latency, now - startTime);
+    LOGGER.info(DOWNLOADED, statistics);
+    if (transferListener != null) {
+      transferListener.transferCompleted(url, statistics);
+    }
+  }
+
+  private void transferStarted(URLConnection connection) {
+    if (firstByteTime == 0) {
+      firstByteTime = System.currentTimeMillis();
+    }
+    etag = connection.getHeaderField(ETAG);
+    lastModified = connection.getHeaderField(LAST_MODIFIED);
+    if (transferListener != null) {
+      transferListener.transferStarted(connection.getURL());
+    }
+  }
+
+  private void publish() throws IOException {
+    synchronized (PUBLISH_LOCK) {
+      if (Thread.currentThread().isInterrupted()) {
+        // a source that lost the race must leave the target and its sidecars alone
+        throw new InterruptedIOException(INTERRUPTED);
+      }
+      if (target.lastModified() != targetModified) {
+        LOGGER.debug(ALREADY_PUBLISHED, target);
+        part.delete();
+        checkpointFile.delete();
+        return;
+      }
+      // a revalidated archive replaces the cached one
+      FileMover.move(part, target);
+      checkpointFile.delete();
+      if (digest != null) {
+        Checksums.rememberSha256(target, Checksums.toHex(digest.digest()));
+      } else {
+        Checksums.forgetSha256(target);
+      }
+      try {
+        cachedFile.setValidators(new CacheValidators(etag, lastModified, target.length()));
+      } catch (IOException e) {
+        LOGGER.warn(UNABLE_TO_SAVE_VALIDATORS, e);
+      }
+    }
+  }
+
+  private void createTargetDirectory() throws IOException {
+    File directory = target.getParentFile();
+    if (directory != null && !directory.exists() && !directory.mkdirs()) {
+      throw new IOException("Unable to create directory " + directory);
+    }
+  }
+
+  private long getLength(String contentLength) {
+    if (contentLength != null) {
+      try {
+        return Long.parseLong(contentLength.trim());
+      } catch (NumberFormatException e) {
+        LOGGER.debug("Invalid Content-Length: {}", contentLength);
+      }
+    }
+    return -1;
+  }
+
+  private long getTotalLength(String contentRange) {
+    // Content-Range: bytes 0-0/12345, the length may be '*' when it is unknown
+    if (contentRange != null) {
+      int index = contentRange.lastIndexOf('/');
+      if (index != -1) {
+        try {
+          return Long.parseLong(contentRange.substring(index + 1).trim());
+        } catch (NumberFormatException e) {
+          LOGGER.debug("Unknown length in Content-Range: {}", contentRange);
+        }
+      }
+    }
+    return -1;
+  }
+
   private String buildDownloadUrl(PhantomJSArchive archive) {
     StringBuilder url = new StringBuilder();
     url.append(baseUrl);
@@ -76,4 +518,64 @@ public class WebDownloader implements Downloader {
     url.append(archive.getArchiveName());
     return url.toString();
   }
+
+  /**
+   * Adds everything read through the channel to a digest.
+   */
+  private static class DigestChannel implements ReadableByteChannel {
+
+    private final ReadableByteChannel channel;
+    private final MessageDigest digest;
+
+    private DigestChannel(ReadableByteChannel channel, MessageDigest digest) {
+      this.channel = channel;
+      this.digest = digest;
+    }
+
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+      int position = buffer.position();
+      int read = channel.read(buffer);
+      if (read > 0) {
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.flip();
+        bytes.position(position);
+        digest.update(bytes);
+      }
+      return read;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  private static class TeeOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final OutputStream copy;
+
+    private TeeOutputStream(OutputStream out, OutputStream copy) {
+      this.out = out;
+      this.copy = copy;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      copy.write(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      out.write(bytes, offset, length);
+      copy.write(bytes, offset, length);
+    }
+  }
 }
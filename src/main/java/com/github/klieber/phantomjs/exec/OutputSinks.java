@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.exec;
+
+import org.slf4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+public class OutputSinks {
+
+  private OutputSinks() {
+    // hide default constructor
+  }
+
+  /**
+   * Writes to the standard output and error of the jvm.
+   */
+  public static OutputSink console() {
+    return new StreamSink(System.out, System.err);
+  }
+
+  /**
+   * Logs each line, standard output at info and standard error at warn level.
+   */
+  public static OutputSink log(Logger logger) {
+    return new StreamSink(new LineLogger(logger, false), new LineLogger(logger, true));
+  }
+
+  /**
+   * Appends both streams to a file. The process writes to the file directly.
+   */
+  public static OutputSink file(final File file) {
+    return new OutputSink() {
+      @Override
+      public ProcessBuilder.Redirect getRedirect() {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.exists()) {
+          directory.mkdirs();
+        }
+        return ProcessBuilder.Redirect.appendTo(file);
+      }
+
+      @Override
+      public OutputStream getOutput() {
+        return null;
+      }
+
+      @Override
+      public OutputStream getError() {
+        return null;
+      }
+    };
+  }
+
+  /**
+   * Writes to the given streams.
+   */
+  public static OutputSink streams(OutputStream output, OutputStream error) {
+    return new StreamSink(output, error);
+  }
+
+  /**
+   * Throws the output away.
+   */
+  public static OutputSink discard() {
+    return new StreamSink(new NullOutputStream(), new NullOutputStream());
+  }
+
+  /**
+   * Writes output that was collected elsewhere to a sink, appending it to the file of a
+   * redirect.
+   */
+  static void write(OutputSink sink, ByteArrayOutputStream output, ByteArrayOutputStream error) throws IOException {
+    ProcessBuilder.Redirect redirect = sink.getRedirect();
+    if (redirect != null) {
+      OutputStream out = new FileOutputStream(redirect.file(), true);
+      try {
+        output.writeTo(out);
+        error.writeTo(out);
+      } finally {
+        out.close();
+      }
+    } else {
+      output.writeTo(sink.getOutput());
+      sink.getOutput().flush();
+      error.writeTo(sink.getError());
+      sink.getError().flush();
+    }
+  }
+
+  private static class StreamSink implements OutputSink {
+
+    private final OutputStream output;
+    private final OutputStream error;
+
+    private StreamSink(OutputStream output, OutputStream error) {
+      this.output = output;
+      this.error = error;
+    }
+
+    @Override
+    public ProcessBuilder.Redirect getRedirect() {
+      return null;
+    }
+
+    @Override
+    public OutputStream getOutput() {
+      return output;
+    }
+
+    @Override
+    public OutputStream getError() {
+      return error;
+    }
+  }
+
+  /**
+   * Splits what is written into lines and logs each one. A partial last line is logged when the
+   * stream is flushed.
+   */
+  static class LineLogger extends OutputStream {
+
+    private final Logger logger;
+    private final boolean error;
+    private final Charset charset;
+
+    private byte[] line;
+    private int length;
+
+    LineLogger(Logger logger, boolean error) {
+      this.logger = logger;
+      this.error = error;
+      this.charset = Charset.defaultCharset();
+      this.line = new byte[256];
+    }
+
+    @Override
+    public synchronized void write(int b) {
+      if (b == '\n') {
+        log();
+      } else {
+        append(b);
+      }
+    }
+
+    @Override
+    public synchronized void write(byte[] buffer, int offset, int count) {
+      int start = offset;
+      int end = offset + count;
+      for (int i = offset; i < end; i++) {
+        if (buffer[i] == '\n') {
+          append(buffer, start, i - start);
+          log();
+          start = i + 1;
+        }
+      }
+      append(buffer, start, end - start);
+    }
+
+    @Override
+    public synchronized void flush() {
+      if (length > 0) {
+        log();
+      }
+    }
+
+    private void append(int b) {
+      ensureCapacity(length + 1);
+      line[length++] = (byte) b;
+    }
+
+    private void append(byte[] buffer, int offset, int count) {
+      ensureCapacity(length + count);
+      System.arraycopy(buffer, offset, line, length, count);
+      length += count;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity > line.length) {
+        line = Arrays.copyOf(line, Math.max(capacity, line.length * 2));
+      }
+    }
+
+    private void log() {
+      int end = length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+      String text = new String(line, 0, end, charset);
+      length = 0;
+      if (error) {
+        logger.warn(text);
+      } else {
+        logger.info(text);
+      }
+    }
+  }
+
+  private static class NullOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) {
+      // discard
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int count) {
+      // discard
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.exec;
+
+import com.github.klieber.phantomjs.util.DaemonThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs several phantomjs scripts at once on a bounded number of processes, or on the workers
+ * of a {@link PhantomJsWorkerPool}. The output of each script is collected while it runs and
+ * written to the sink in one piece when it finishes, so the output of different scripts is
+ * never interleaved.
+ */
+public class ParallelPhantomJsExecutor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ParallelPhantomJsExecutor.class);
+
+  private static final String UNABLE_TO_EXECUTE = "Unable to execute phantomjs script %s";
+  private static final String UNABLE_TO_WRITE_OUTPUT = "Unable to write the output of phantomjs script {}";
+  private static final String FINISHED = "phantomjs script {} exited with code {}";
+
+  private final ScriptExecutor executor;
+  private final int processes;
+
+  public ParallelPhantomJsExecutor(PhantomJsProcessBuilder runner, int processes) {
+    this(new PhantomJsExecutor(runner), processes);
+  }
+
+  public ParallelPhantomJsExecutor(ScriptExecutor executor, int processes) {
+    this.executor = executor;
+    this.processes = processes;
+  }
+
+  /**
+   * Runs every script with a copy of the given options.
+   *
+   * @return the result of each run, in the order the scripts were given
+   */
+  public List<ScriptResult> execute(PhantomJsOptions options, List<String> scripts, OutputSink sink) throws ExecutionException {
+    ExecutorService pool = Executors.newFixedThreadPool(processes, new DaemonThreadFactory("phantomjs-script"));
+    try {
+      List<Future<Integer>> futures = new ArrayList<Future<Integer>>(scripts.size());
+      for (String script : scripts) {
+        futures.add(pool.submit(new Script(options.withScript(script), sink)));
+      }
+
+      List<ScriptResult> results = new ArrayList<ScriptResult>(scripts.size());
+      for (int i = 0; i < scripts.size(); i++) {
+        results.add(new ScriptResult(scripts.get(i), await(scripts.get(i), futures.get(i))));
+      }
+      return results;
+    } finally {
+      // stops the scripts that have not started yet when one could not be run
+      pool.shutdownNow();
+    }
+  }
+
+  private int await(String script, Future<Integer> future) throws ExecutionException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ExecutionException(String.format(UNABLE_TO_EXECUTE, script), e);
+    } catch (java.util.concurrent.ExecutionException e) {
+      if (e.getCause() instanceof ExecutionException) {
+        throw (ExecutionException) e.getCause();
+      }
+      throw new ExecutionException(String.format(UNABLE_TO_EXECUTE, script), e.getCause());
+    }
+  }
+
+  private class Script implements Callable<Integer> {
+
+    private final PhantomJsOptions options;
+    private final OutputSink sink;
+
+    private Script(PhantomJsOptions options, OutputSink sink) {
+      this.options = options;
+      this.sink = sink;
+    }
+
+    @Override
+    public Integer call() throws ExecutionException {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      ByteArrayOutputStream error = new ByteArrayOutputStream();
+      int code = executor.execute(options, OutputSinks.streams(output, error));
+      publish(output, error);
+      LOGGER.info(FINISHED, options.getScript(), code);
+      return code;
+    }
+
+    private void publish(ByteArrayOutputStream output, ByteArrayOutputStream error) {
+      // one script at a time so that their output stays together
+      synchronized (sink) {
+        try {
+          OutputSinks.write(sink, output, error);
+        } catch (IOException e) {
+          LOGGER.warn(UNABLE_TO_WRITE_OUTPUT, options.getScript(), e);
+        }
+      }
+    }
+  }
+}
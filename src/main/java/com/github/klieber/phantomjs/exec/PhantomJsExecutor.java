@@ -20,42 +20,129 @@
  */
 package com.github.klieber.phantomjs.exec;
 
+import com.github.klieber.phantomjs.util.DaemonThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.PrintStream;
-import java.util.Scanner;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class PhantomJsExecutor implements ScriptExecutor {
 
-public class PhantomJsExecutor {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PhantomJsExecutor.class);
 
   private static final String UNABLE_TO_EXECUTE = "Unable to execute phantomjs process";
+  private static final String UNABLE_TO_COPY_OUTPUT = "Unable to copy phantomjs output";
+  private static final String OUTPUT_STILL_OPEN = "phantomjs exited but its output is still open, probably held by a child process";
+
+  private static final int BUFFER_SIZE = 8192;
+
+  // once phantomjs has exited its output only stays open if a child process inherited it
+  private static final long JOIN_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+  // shared by every execution so that copying output never starts threads of its own
+  private static final ExecutorService PUMPS = Executors.newCachedThreadPool(new DaemonThreadFactory("phantomjs-output"));
 
   private PhantomJsProcessBuilder runner;
 
+  private final OutputSink sink;
+
   public PhantomJsExecutor(PhantomJsProcessBuilder runner) {
+    this(runner, OutputSinks.console());
+  }
+
+  public PhantomJsExecutor(PhantomJsProcessBuilder runner, OutputSink sink) {
     this.runner = runner;
+    this.sink = sink;
   }
 
   public int execute(PhantomJsOptions options) throws ExecutionException {
+    return execute(options, this.sink);
+  }
+
+  /**
+   * Runs the script with its output sent to the given sink instead of the sink of this executor.
+   */
+  @Override
+  public int execute(PhantomJsOptions options, OutputSink sink) throws ExecutionException {
+    ProcessBuilder.Redirect redirect = sink.getRedirect();
+    Process process = this.runner.start(options, redirect);
+    Future<Void> output = null;
+    Future<Void> error = null;
+    if (redirect == null) {
+      output = PUMPS.submit(new Pump(process.getInputStream(), sink.getOutput()));
+      error = PUMPS.submit(new Pump(process.getErrorStream(), sink.getError()));
+    }
     try {
-      Process process = this.runner.start(options);
-      inheritIO(process.getInputStream(), System.out);
-      inheritIO(process.getErrorStream(), System.err);
-      return process.waitFor();
+      int code = process.waitFor();
+      // all of the output has been written once this returns
+      join(output, error);
+      return code;
     } catch (InterruptedException e) {
+      process.destroy();
+      cancel(output);
+      cancel(error);
       throw new ExecutionException(UNABLE_TO_EXECUTE, e);
     }
   }
 
+  private void join(Future<Void> output, Future<Void> error) throws InterruptedException {
+    if (output == null) {
+      return;
+    }
+    long deadline = System.currentTimeMillis() + JOIN_TIMEOUT;
+    try {
+      output.get(JOIN_TIMEOUT, TimeUnit.MILLISECONDS);
+      error.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      LOGGER.warn(OUTPUT_STILL_OPEN);
+      cancel(output);
+      cancel(error);
+    } catch (java.util.concurrent.ExecutionException e) {
+      LOGGER.warn(UNABLE_TO_COPY_OUTPUT, e.getCause());
+    }
+  }
+
+  private void cancel(Future<Void> future) {
+    if (future != null) {
+      future.cancel(true);
+    }
+  }
 
-  private static void inheritIO(final InputStream src, final PrintStream dest) {
-    new Thread(
-        new Runnable() {
-          public void run() {
-            Scanner sc = new Scanner(src);
-            while (sc.hasNextLine()) {
-              dest.println(sc.nextLine());
-            }
-          }
+  /**
+   * Copies a stream in bulk, without splitting it into lines.
+   */
+  private static class Pump implements Callable<Void> {
+
+    private final InputStream in;
+    private final OutputStream out;
+
+    private Pump(InputStream in, OutputStream out) {
+      this.in = in;
+      this.out = out;
+    }
+
+    @Override
+    public Void call() throws IOException {
+      try {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ((count = in.read(buffer)) != -1) {
+          out.write(buffer, 0, count);
         }
-    ).start();
+      } finally {
+        in.close();
+        // the sink outlives the process, it is flushed but never closed
+        out.flush();
+      }
+      return null;
+    }
   }
 }
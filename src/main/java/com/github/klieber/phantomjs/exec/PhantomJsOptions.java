@@ -71,4 +71,16 @@ public class PhantomJsOptions {
   public void addArgument(String argument) {
     this.arguments.add(argument);
   }
+
+  /**
+   * @return a copy of these options that runs the given script instead
+   */
+  public PhantomJsOptions withScript(String script) {
+    PhantomJsOptions options = new PhantomJsOptions();
+    options.setConfigFile(this.configFile);
+    options.setCommandLineOptions(this.commandLineOptions);
+    options.addArguments(this.arguments);
+    options.setScript(script);
+    return options;
+  }
 }
@@ -44,6 +44,14 @@ public class PhantomJsProcessBuilder {
   }
 
   public Process start(PhantomJsOptions options) throws ExecutionException {
+    return start(options, null);
+  }
+
+  /**
+   * Starts phantomjs with both of its output streams sent to the redirect, or to pipes when
+   * the redirect is null.
+   */
+  public Process start(PhantomJsOptions options, ProcessBuilder.Redirect redirect) throws ExecutionException {
     Commandline commandline = getCommandLine(options);
 
     String[] shellCommandline = commandline.getShellCommandline();
@@ -52,6 +60,10 @@ public class PhantomJsProcessBuilder {
       LOGGER.debug(PHANTOMJS_COMMAND, Arrays.asList(shellCommandline));
     }
     ProcessBuilder processBuilder = new ProcessBuilder(shellCommandline);
+    if (redirect != null) {
+      processBuilder.redirectErrorStream(true);
+      processBuilder.redirectOutput(redirect);
+    }
     try {
       return processBuilder.start();
     } catch(IOException e) {
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.exec;
+
+import com.github.klieber.phantomjs.util.DaemonThreadFactory;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A long-lived phantomjs process running the controller script, which runs one job at a time
+ * on request over a loopback http port.
+ */
+class PhantomJsWorker {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PhantomJsWorker.class);
+
+  private static final String UNABLE_TO_START = "Unable to start phantomjs worker";
+  private static final String NOT_READY = "phantomjs worker did not become ready within %d seconds";
+  private static final String EXITED = "phantomjs worker exited before it was ready %d times";
+  private static final String RESTARTING = "phantomjs worker on port {} exited before it was ready, starting it on another port";
+  private static final String INVALID_HEADER = "phantomjs worker answered with an invalid %s header: %s";
+  private static final String UNEXPECTED_STATUS = "phantomjs worker answered with status %d";
+  private static final String WORKER_OUTPUT = "phantomjs worker on port {}: {}";
+
+  private static final String LOOPBACK = "127.0.0.1";
+  private static final String READY = "ready";
+  private static final String EXIT_CODE = "X-Exit-Code";
+  private static final String OUTPUT_LENGTH = "X-Output-Length";
+  private static final String UTF_8 = "UTF-8";
+
+  private static final long START_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+  // the free port can be taken by another process before phantomjs binds it
+  private static final int START_ATTEMPTS = 3;
+  private static final int SHUTDOWN_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(1);
+
+  // reads what workers print outside of jobs, for as long as they live
+  private static final ExecutorService READERS = Executors.newCachedThreadPool(new DaemonThreadFactory("phantomjs-worker"));
+
+  private final Process process;
+  private final int port;
+  private final CountDownLatch started;
+
+  private volatile boolean ready;
+  private int jobs;
+
+  private PhantomJsWorker(Process process, int port) {
+    this.process = process;
+    this.port = port;
+    this.started = new CountDownLatch(1);
+  }
+
+  /**
+   * Starts a worker with the command line options and configuration file of the given options
+   * and waits until it accepts jobs.
+   */
+  static PhantomJsWorker start(PhantomJsProcessBuilder runner, PhantomJsOptions options, File controller) throws ExecutionException {
+    for (int attempt = 0; attempt < START_ATTEMPTS; attempt++) {
+      int port;
+      try {
+        port = findFreePort();
+      } catch (IOException e) {
+        throw new ExecutionException(UNABLE_TO_START, e);
+      }
+
+      PhantomJsOptions workerOptions = new PhantomJsOptions();
+      workerOptions.setConfigFile(options.getConfigFile());
+      workerOptions.setCommandLineOptions(options.getCommandLineOptions());
+      workerOptions.setScript(controller.getAbsolutePath());
+      workerOptions.addArgument(String.valueOf(port));
+
+      PhantomJsWorker worker = new PhantomJsWorker(runner.start(workerOptions, ProcessBuilder.Redirect.PIPE), port);
+      READERS.submit(worker.new Reader());
+      if (worker.awaitReady()) {
+        return worker;
+      }
+      LOGGER.debug(RESTARTING, port);
+    }
+    throw new ExecutionException(UNABLE_TO_START, new IOException(String.format(EXITED, START_ATTEMPTS)));
+  }
+
+  /**
+   * @return false if the worker exited without becoming ready, usually because it could not
+   * listen on its port
+   */
+  private boolean awaitReady() throws ExecutionException {
+    boolean finished;
+    try {
+      finished = started.await(START_TIMEOUT, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      process.destroy();
+      Thread.currentThread().interrupt();
+      throw new ExecutionException(UNABLE_TO_START, e);
+    }
+    if (!finished) {
+      process.destroy();
+      throw new ExecutionException(UNABLE_TO_START, new IOException(String.format(NOT_READY, TimeUnit.MILLISECONDS.toSeconds(START_TIMEOUT))));
+    }
+    if (!ready) {
+      process.destroy();
+    }
+    return ready;
+  }
+
+  /**
+   * Runs a script on this worker and waits until it calls phantom.exit.
+   *
+   * @param timeout the most milliseconds to wait for the script, 0 to wait for as long as it runs
+   * @throws IOException when the worker can no longer be reached, usually because it died, does
+   * not answer within the timeout or answers with something other than the result of a job
+   */
+  int run(PhantomJsOptions options, OutputStream output, OutputStream error, int timeout) throws IOException {
+    jobs++;
+    List<String> lines = new ArrayList<String>();
+    lines.add(new File(options.getScript()).getAbsolutePath());
+    lines.addAll(options.getArguments());
+
+    HttpURLConnection connection = post("/run");
+    connection.setReadTimeout(timeout);
+    OutputStream out = connection.getOutputStream();
+    try {
+      out.write(StringUtils.join(lines.iterator(), "\n").getBytes(UTF_8));
+    } finally {
+      out.close();
+    }
+
+    int status = connection.getResponseCode();
+    if (status != HttpURLConnection.HTTP_OK) {
+      throw new IOException(String.format(UNEXPECTED_STATUS, status));
+    }
+    int code = getIntHeader(connection, EXIT_CODE);
+    int outputLength = getIntHeader(connection, OUTPUT_LENGTH);
+    InputStream in = connection.getInputStream();
+    String body;
+    try {
+      body = IOUtil.toString(in, UTF_8);
+    } finally {
+      in.close();
+    }
+    if (outputLength < 0 || outputLength > body.length()) {
+      throw new IOException(String.format(INVALID_HEADER, OUTPUT_LENGTH, outputLength));
+    }
+    // the length counts characters, the output is split before it is encoded again
+    output.write(body.substring(0, outputLength).getBytes(UTF_8));
+    error.write(body.substring(outputLength).getBytes(UTF_8));
+    return code;
+  }
+
+  private static int getIntHeader(HttpURLConnection connection, String name) throws IOException {
+    String value = connection.getHeaderField(name);
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IOException(String.format(INVALID_HEADER, name, value), e);
+    }
+  }
+
+  int getJobs() {
+    return jobs;
+  }
+
+  /**
+   * Asks the worker to exit and makes sure that it does.
+   */
+  void stop() {
+    try {
+      HttpURLConnection connection = post("/shutdown");
+      connection.setConnectTimeout(SHUTDOWN_TIMEOUT);
+      connection.setReadTimeout(SHUTDOWN_TIMEOUT);
+      connection.getOutputStream().close();
+      connection.getResponseCode();
+    } catch (IOException e) {
+      // the worker is already gone or stuck, destroying it is enough
+    } finally {
+      process.destroy();
+    }
+  }
+
+  private HttpURLConnection post(String path) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL("http", LOOPBACK, port, path).openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    connection.setUseCaches(false);
+    connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+    // every worker is short lived, never keep a connection to one around
+    connection.setRequestProperty("Connection", "close");
+    return connection;
+  }
+
+  private static int findFreePort() throws IOException {
+    ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName(LOOPBACK));
+    try {
+      return socket.getLocalPort();
+    } finally {
+      socket.close();
+    }
+  }
+
+  /**
+   * Waits for the controller to report that it is listening and logs anything else it prints.
+   */
+  private class Reader implements Runnable {
+
+    @Override
+    public void run() {
+      try {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8));
+        try {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            if (!ready && READY.equals(line)) {
+              ready = true;
+              started.countDown();
+            } else {
+              LOGGER.debug(WORKER_OUTPUT, port, line);
+            }
+          }
+        } finally {
+          reader.close();
+        }
+      } catch (IOException e) {
+        LOGGER.debug(WORKER_OUTPUT, port, e.getMessage());
+      } finally {
+        // stops waiting for a worker that exited before it was ready
+        started.countDown();
+      }
+    }
+  }
+}
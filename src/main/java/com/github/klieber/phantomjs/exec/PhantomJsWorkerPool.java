@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.exec;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * <p>Runs scripts on a bounded number of long-lived phantomjs workers instead of starting a
+ * process for every script, so that each script only pays for phantomjs starting up once per
+ * worker.</p>
+ * <p>Workers are started when they are first needed, with the command line options and
+ * configuration file the pool was created with, and run a bundled controller script that takes
+ * jobs over a loopback port. Scripts that run on the same worker share its global state, such
+ * as cookies and pages that were left open, so a worker is replaced after a number of jobs and
+ * whenever a job fails to complete or runs past the job timeout. Only output written through
+ * console is captured.</p>
+ */
+public class PhantomJsWorkerPool implements ScriptExecutor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PhantomJsWorkerPool.class);
+
+  private static final String UNABLE_TO_EXECUTE = "Unable to execute phantomjs script %s";
+  private static final String UNABLE_TO_EXTRACT_CONTROLLER = "Unable to extract the phantomjs worker controller";
+  private static final String WORKER_FAILED = "phantomjs worker failed while running {}";
+  private static final String WORKER_FAILED_OUTPUT = "phantomjs worker failed while running %s: %s%n";
+  private static final String RECYCLING = "Recycling phantomjs worker after {} jobs";
+
+  private static final String CONTROLLER = "controller.js";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * The exit code of a script whose worker died or stopped answering.
+   */
+  public static final int WORKER_FAILURE = -1;
+
+  private final PhantomJsProcessBuilder runner;
+  private final PhantomJsOptions options;
+  private final int jobsPerWorker;
+  private final int jobTimeout;
+  private final Semaphore permits;
+  private final BlockingQueue<PhantomJsWorker> idle;
+  private final List<PhantomJsWorker> workers;
+
+  private File controller;
+
+  public PhantomJsWorkerPool(PhantomJsProcessBuilder runner, PhantomJsOptions options, int workers, int jobsPerWorker) {
+    this(runner, options, workers, jobsPerWorker, 0);
+  }
+
+  /**
+   * @param jobTimeout the most milliseconds a script may run before its worker is replaced, 0
+   *                   to let scripts run for as long as they take
+   */
+  public PhantomJsWorkerPool(PhantomJsProcessBuilder runner, PhantomJsOptions options, int workers, int jobsPerWorker, int jobTimeout) {
+    this.runner = runner;
+    this.options = options;
+    this.jobsPerWorker = jobsPerWorker;
+    this.jobTimeout = jobTimeout;
+    this.permits = new Semaphore(workers);
+    this.idle = new LinkedBlockingQueue<PhantomJsWorker>();
+    this.workers = new ArrayList<PhantomJsWorker>();
+  }
+
+  /**
+   * Runs the script of the given options with its arguments on an idle worker, waiting for one
+   * when they are all busy. The command line options and configuration file of the pool apply.
+   */
+  @Override
+  public int execute(PhantomJsOptions options, OutputSink sink) throws ExecutionException {
+    try {
+      permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ExecutionException(String.format(UNABLE_TO_EXECUTE, options.getScript()), e);
+    }
+    try {
+      PhantomJsWorker worker = borrow();
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      ByteArrayOutputStream error = new ByteArrayOutputStream();
+      int code = WORKER_FAILURE;
+      boolean completed = false;
+      try {
+        code = worker.run(options, output, error, jobTimeout);
+        completed = true;
+      } catch (IOException e) {
+        LOGGER.warn(WORKER_FAILED, options.getScript(), e);
+        byte[] message = String.format(WORKER_FAILED_OUTPUT, options.getScript(), e.getMessage()).getBytes(UTF_8);
+        error.write(message, 0, message.length);
+      } finally {
+        // a worker whose job did not complete may still be running it
+        if (completed) {
+          giveBack(worker);
+        } else {
+          retire(worker);
+        }
+      }
+      try {
+        OutputSinks.write(sink, output, error);
+      } catch (IOException e) {
+        throw new ExecutionException(String.format(UNABLE_TO_EXECUTE, options.getScript()), e);
+      }
+      return code;
+    } finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * Stops every worker and removes the extracted controller script.
+   */
+  public synchronized void close() {
+    for (PhantomJsWorker worker : workers) {
+      worker.stop();
+    }
+    workers.clear();
+    idle.clear();
+    if (controller != null) {
+      controller.delete();
+      controller = null;
+    }
+  }
+
+  private PhantomJsWorker borrow() throws ExecutionException {
+    // holding a permit means there is either an idle worker or room for a new one
+    PhantomJsWorker worker = idle.poll();
+    if (worker == null) {
+      worker = PhantomJsWorker.start(runner, options, getController());
+      synchronized (this) {
+        workers.add(worker);
+      }
+    }
+    return worker;
+  }
+
+  private void giveBack(PhantomJsWorker worker) {
+    if (worker.getJobs() >= jobsPerWorker) {
+      LOGGER.debug(RECYCLING, worker.getJobs());
+      retire(worker);
+    } else {
+      idle.add(worker);
+    }
+  }
+
+  private void retire(PhantomJsWorker worker) {
+    synchronized (this) {
+      workers.remove(worker);
+    }
+    worker.stop();
+  }
+
+  private synchronized File getController() throws ExecutionException {
+    if (controller == null) {
+      try {
+        controller = extractController();
+      } catch (IOException e) {
+        throw new ExecutionException(UNABLE_TO_EXTRACT_CONTROLLER, e);
+      }
+    }
+    return controller;
+  }
+
+  private static File extractController() throws IOException {
+    File file = File.createTempFile("phantomjs-controller", ".js");
+    file.deleteOnExit();
+    InputStream in = PhantomJsWorkerPool.class.getResourceAsStream(CONTROLLER);
+    if (in == null) {
+      throw new IOException(CONTROLLER + " is missing from the plugin");
+    }
+    try {
+      OutputStream out = new FileOutputStream(file);
+      try {
+        IOUtil.copy(in, out);
+      } finally {
+        out.close();
+      }
+    } finally {
+      in.close();
+    }
+    return file;
+  }
+}
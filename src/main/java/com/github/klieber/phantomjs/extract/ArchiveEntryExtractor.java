@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.extract;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Extracts only the phantomjs executable from an archive on disk. A zip file is opened through
+ * its central directory so the executable is read directly without touching any other entry.
+ * A tarball is read with a {@link StreamExtractor}, which stops as soon as the executable has
+ * been written instead of decompressing the rest of the archive.
+ */
+public class ArchiveEntryExtractor implements Extractor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveEntryExtractor.class);
+
+  private static final String EXTRACTING = "Extracting {} to {}";
+  private static final String UNABLE_TO_EXTRACT = "Unable to extract phantomjs binary from %s";
+  private static final String ENTRY_NOT_FOUND = "%s was not found in %s";
+
+  private static final String ZIP = "zip";
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final PhantomJSArchive phantomJSArchive;
+
+  public ArchiveEntryExtractor(PhantomJSArchive phantomJSArchive) {
+    this.phantomJSArchive = phantomJSArchive;
+  }
+
+  @Override
+  public void extract(File archive, File extractTo) throws ExtractionException {
+    if (ZIP.equals(phantomJSArchive.getExtension())) {
+      extractZip(archive, extractTo);
+    } else {
+      extractStream(archive, extractTo);
+    }
+  }
+
+  private void extractZip(File archive, File extractTo) throws ExtractionException {
+    String pathToExecutable = phantomJSArchive.getPathToExecutable();
+    ZipFile zipFile = null;
+    try {
+      zipFile = new ZipFile(archive);
+      ZipArchiveEntry entry = zipFile.getEntry(pathToExecutable);
+      if (entry == null) {
+        entry = zipFile.getEntry("./" + pathToExecutable);
+      }
+      if (entry == null || entry.isDirectory()) {
+        throw new ExtractionException(String.format(ENTRY_NOT_FOUND, pathToExecutable, archive));
+      }
+      LOGGER.info(EXTRACTING, entry.getName(), extractTo.getAbsolutePath());
+      InputStream in = zipFile.getInputStream(entry);
+      try {
+        StreamExtractor.write(in, extractTo);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      throw new ExtractionException(String.format(UNABLE_TO_EXTRACT, archive), e);
+    } finally {
+      ZipFile.closeQuietly(zipFile);
+    }
+  }
+
+  private void extractStream(File archive, File extractTo) throws ExtractionException {
+    try {
+      InputStream in = new BufferedInputStream(new FileInputStream(archive), BUFFER_SIZE);
+      try {
+        new StreamExtractor(phantomJSArchive).extract(in, extractTo);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      throw new ExtractionException(String.format(UNABLE_TO_EXTRACT, archive), e);
+    }
+  }
+}
@@ -24,6 +24,10 @@ import com.github.klieber.phantomjs.PhantomJsException;
 
 public class ExtractionException extends PhantomJsException {
 
+  public ExtractionException(String message) {
+    super(message);
+  }
+
   public ExtractionException(String message, Throwable cause) {
     super(message,cause);
   }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.extract;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Extracts phantomjs from a tar.bz2 archive by decompressing the bzip2 blocks in parallel on a
+ * fork-join pool. The blocks are read from the archive with positional reads rather than a
+ * memory mapping, which on Windows would lock the archive against being evicted, pruned or
+ * replaced until the mapping is garbage collected. Other archive types, and any archive the
+ * parallel decoder cannot handle, are passed to the delegate.
+ */
+public class ParallelBZip2Extractor implements Extractor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ParallelBZip2Extractor.class);
+
+  private static final String FALLING_BACK = "Unable to decompress {} in parallel, falling back to a single thread: {}";
+
+  private static final String TAR_BZ2 = "tar.bz2";
+
+  // enough queued blocks that no thread waits on the reader
+  private static final int LOOK_AHEAD_PER_THREAD = 2;
+
+  private final PhantomJSArchive phantomJSArchive;
+  private final Extractor delegate;
+  private final int threads;
+
+  public ParallelBZip2Extractor(PhantomJSArchive phantomJSArchive, Extractor delegate, int threads) {
+    this.phantomJSArchive = phantomJSArchive;
+    this.delegate = delegate;
+    this.threads = threads;
+  }
+
+  @Override
+  public void extract(File archive, File extractTo) throws ExtractionException {
+    if (threads < 2 || !TAR_BZ2.equals(phantomJSArchive.getExtension())) {
+      delegate.extract(archive, extractTo);
+      return;
+    }
+    try {
+      extractParallel(archive, extractTo);
+    } catch (IOException e) {
+      LOGGER.warn(FALLING_BACK, archive, e.getMessage());
+      delegate.extract(archive, extractTo);
+    }
+  }
+
+  private void extractParallel(File archive, File extractTo) throws IOException, ExtractionException {
+    FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ);
+    try {
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      try {
+        InputStream in = new ParallelBZip2InputStream(channel, pool, threads * LOOK_AHEAD_PER_THREAD);
+        try {
+          new StreamExtractor(phantomJSArchive).extract(new TarArchiveInputStream(in), extractTo);
+        } finally {
+          in.close();
+        }
+      } finally {
+        pool.shutdownNow();
+      }
+    } finally {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.extract;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Decompresses bzip2 data using several threads. A bzip2 stream is a sequence of independently
+ * compressed blocks, each starting with a 48 bit marker that is not aligned to a byte boundary.
+ * The blocks are located up front, each one is rewritten as a standalone single block stream
+ * and decompressed on the executor. The results are read back in order, with a bounded number
+ * of blocks decompressed ahead of the reader. The file is only read with positional reads, so
+ * the blocks share a single channel across threads.
+ */
+class ParallelBZip2InputStream extends InputStream {
+
+  private static final long BLOCK_MAGIC = 0x314159265359L;
+  private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+  private static final long MAGIC_MASK = 0xffffffffffffL;
+  private static final int MAGIC_BITS = 48;
+  private static final int CRC_BITS = 32;
+  private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+  // the largest block size, every block of a stream with a smaller block size fits as well
+  private static final byte[] STREAM_HEADER = { 'B', 'Z', 'h', '9' };
+
+  // the third byte back from the end of the window always lies inside a marker that ends there,
+  // whatever its alignment, so most positions are ruled out with a single lookup
+  private static final boolean[] MARKER_BYTES = new boolean[256];
+
+  static {
+    for (int shift = 0; shift < 8; shift++) {
+      MARKER_BYTES[(int) ((BLOCK_MAGIC >>> (16 - shift)) & 0xff)] = true;
+      MARKER_BYTES[(int) ((END_OF_STREAM_MAGIC >>> (16 - shift)) & 0xff)] = true;
+    }
+  }
+
+  private static final String NOT_BZIP2 = "Not a bzip2 stream";
+  private static final String TRUNCATED = "Truncated bzip2 stream";
+  private static final String CRC_MISMATCH = "bzip2 stream CRC mismatch at bit %d";
+
+  private final Iterator<Block> blocks;
+  private final ExecutorService executor;
+  private final int lookAhead;
+  private final Deque<Future<byte[]>> pending;
+
+  private byte[] current;
+  private int position;
+
+  ParallelBZip2InputStream(FileChannel channel, ExecutorService executor, int lookAhead) throws IOException {
+    this.blocks = scan(channel).iterator();
+    this.executor = executor;
+    this.lookAhead = Math.max(1, lookAhead);
+    this.pending = new ArrayDeque<Future<byte[]>>();
+    this.current = new byte[0];
+    submit();
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!advance()) {
+      return -1;
+    }
+    return current[position++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (!advance()) {
+      return -1;
+    }
+    int count = Math.min(length, current.length - position);
+    System.arraycopy(current, position, buffer, offset, count);
+    position += count;
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return current.length - position;
+  }
+
+  @Override
+  public void close() {
+    // the reader may stop early, blocks it will never read are not worth decompressing
+    for (Future<byte[]> future : pending) {
+      future.cancel(true);
+    }
+    pending.clear();
+  }
+
+  private boolean advance() throws IOException {
+    while (position >= current.length) {
+      Future<byte[]> next = pending.poll();
+      if (next == null) {
+        return false;
+      }
+      current = await(next);
+      position = 0;
+      submit();
+    }
+    return true;
+  }
+
+  private void submit() {
+    while (pending.size() < lookAhead && blocks.hasNext()) {
+      final Block block = blocks.next();
+      pending.add(executor.submit(new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws IOException {
+          return block.decompress();
+        }
+      }));
+    }
+  }
+
+  private byte[] await(Future<byte[]> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Finds every block of every stream in the file, reading it once from start to end. The
+   * combined CRC at the end of each stream is checked against the CRCs of its blocks, so a
+   * marker that appears by chance inside the compressed data is caught before anything is
+   * decompressed.
+   */
+  private static List<Block> scan(FileChannel channel) throws IOException {
+    long size = channel.size();
+    if (size < STREAM_HEADER.length) {
+      throw new IOException(NOT_BZIP2);
+    }
+    byte[] header = read(channel, 0, STREAM_HEADER.length);
+    if (header[0] != 'B' || header[1] != 'Z' || header[2] != 'h') {
+      throw new IOException(NOT_BZIP2);
+    }
+    List<Block> blocks = new ArrayList<Block>();
+    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(SCAN_BUFFER_SIZE, size));
+    long window = 0;
+    long blockStart = -1;
+    int combinedCrc = 0;
+    for (long offset = 0; offset < size; offset += buffer.limit()) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), size - offset));
+      read(channel, offset, buffer);
+      for (int j = 0; j < buffer.limit(); j++) {
+        long i = offset + j;
+        window = (window << 8) | (buffer.get(j) & 0xff);
+        if (i < 2 || !MARKER_BYTES[(int) (window >>> 16) & 0xff]) {
+          continue;
+        }
+        for (int shift = 7; shift >= 0; shift--) {
+          long bit = (i + 1) * 8 - shift - MAGIC_BITS;
+          long candidate = (window >>> shift) & MAGIC_MASK;
+          if (bit < 0 || (candidate != BLOCK_MAGIC && candidate != END_OF_STREAM_MAGIC)) {
+            continue;
+          }
+          if (blockStart >= 0) {
+            blocks.add(new Block(channel, blockStart, bit));
+          }
+          int crc = readCrc(channel, size, bit + MAGIC_BITS);
+          if (candidate == BLOCK_MAGIC) {
+            combinedCrc = ((combinedCrc << 1) | (combinedCrc >>> 31)) ^ crc;
+            blockStart = bit;
+          } else {
+            if (crc != combinedCrc) {
+              throw new IOException(String.format(CRC_MISMATCH, bit));
+            }
+            combinedCrc = 0;
+            blockStart = -1;
+          }
+        }
+      }
+    }
+    if (blockStart >= 0) {
+      throw new IOException(TRUNCATED);
+    }
+    return blocks;
+  }
+
+  private static int readCrc(FileChannel channel, long size, long bit) throws IOException {
+    long first = bit >>> 3;
+    long last = (bit + CRC_BITS + 7) >>> 3;
+    if (last > size) {
+      throw new IOException(TRUNCATED);
+    }
+    return readBits(read(channel, first, (int) (last - first)), bit & 7, CRC_BITS);
+  }
+
+  private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    read(channel, position, buffer);
+    return buffer.array();
+  }
+
+  /**
+   * Fills the buffer up to its limit from the given position, leaving the position of the
+   * channel alone so other threads can read from it at the same time.
+   */
+  private static void read(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException(TRUNCATED);
+      }
+    }
+  }
+
+  private static int readBits(byte[] data, long bit, int count) throws IOException {
+    if (bit + count > data.length * 8L) {
+      throw new IOException(TRUNCATED);
+    }
+    int value = 0;
+    for (int i = 0; i < count; i++) {
+      value = (value << 1) | getBit(data, bit + i);
+    }
+    return value;
+  }
+
+  private static int getBit(byte[] data, long bit) {
+    return (data[(int) (bit >>> 3)] >>> (7 - (int) (bit & 7))) & 1;
+  }
+
+  private static void setBit(byte[] data, long bit) {
+    data[(int) (bit >>> 3)] |= 0x80 >>> (int) (bit & 7);
+  }
+
+  /**
+   * A single compressed block, from its marker up to the marker that follows it.
+   */
+  private static class Block {
+
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+
+    private Block(FileChannel channel, long start, long end) {
+      this.channel = channel;
+      this.start = start;
+      this.end = end;
+    }
+
+    private byte[] decompress() throws IOException {
+      InputStream in = new BZip2CompressorInputStream(new ByteArrayInputStream(toStream()));
+      try {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtil.copy(in, out);
+        return out.toByteArray();
+      } finally {
+        in.close();
+      }
+    }
+
+    /**
+     * Rewrites the block as a complete stream: a header, the block shifted onto a byte boundary
+     * and an end of stream marker. The combined CRC of a single block stream is the block CRC.
+     */
+    private byte[] toStream() throws IOException {
+      long first = start >>> 3;
+      byte[] data = read(channel, first, (int) (((end + 7) >>> 3) - first));
+
+      long bits = end - start;
+      byte[] stream = new byte[(int) (STREAM_HEADER.length + (bits + MAGIC_BITS + CRC_BITS + 7) / 8)];
+      System.arraycopy(STREAM_HEADER, 0, stream, 0, STREAM_HEADER.length);
+
+      int shift = (int) (start & 7);
+      int bytes = (int) (bits >>> 3);
+      for (int i = 0; i < bytes; i++) {
+        int value = (data[i] & 0xff) << shift;
+        if (shift > 0) {
+          value |= (data[i + 1] & 0xff) >>> (8 - shift);
+        }
+        stream[STREAM_HEADER.length + i] = (byte) value;
+      }
+
+      long bit = (STREAM_HEADER.length + bytes) * 8L;
+      for (long source = shift + bytes * 8L; source < shift + bits; source++, bit++) {
+        if (getBit(data, source) != 0) {
+          setBit(stream, bit);
+        }
+      }
+      bit = writeBits(stream, bit, END_OF_STREAM_MAGIC, MAGIC_BITS);
+      writeBits(stream, bit, readBits(data, shift + MAGIC_BITS, CRC_BITS) & 0xffffffffL, CRC_BITS);
+      return stream;
+    }
+
+    private static long writeBits(byte[] stream, long bit, long value, int count) {
+      for (int i = count - 1; i >= 0; i--, bit++) {
+        if (((value >>> i) & 1) != 0) {
+          setBit(stream, bit);
+        }
+      }
+      return bit;
+    }
+  }
+}
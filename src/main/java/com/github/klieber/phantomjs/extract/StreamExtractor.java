@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.extract;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.util.FileMover;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.codehaus.plexus.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Extracts the phantomjs executable from an archive while it is being read, without needing
+ * the whole archive on disk. Entries are scanned in order and reading stops as soon as the
+ * executable has been written.
+ */
+public class StreamExtractor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StreamExtractor.class);
+
+  private static final String EXTRACTING = "Extracting {} to {}";
+  private static final String UNABLE_TO_EXTRACT = "Unable to extract %s from stream";
+  private static final String ENTRY_NOT_FOUND = "%s was not found in the archive";
+  private static final String UNSUPPORTED_ARCHIVE = "Unsupported archive type: %s";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final PhantomJSArchive phantomJSArchive;
+
+  public StreamExtractor(PhantomJSArchive phantomJSArchive) {
+    this.phantomJSArchive = phantomJSArchive;
+  }
+
+  /**
+   * Extracts the executable from the given stream. The stream is left open so the caller can
+   * continue reading it.
+   */
+  public void extract(InputStream in, File extractTo) throws ExtractionException {
+    try {
+      extract(openArchive(new UnclosableInputStream(in)), extractTo);
+    } catch (IOException e) {
+      throw new ExtractionException(String.format(UNABLE_TO_EXTRACT, phantomJSArchive.getPathToExecutable()), e);
+    }
+  }
+
+  /**
+   * Scans an already opened archive for the executable, leaving read failures to the caller.
+   */
+  void extract(ArchiveInputStream archiveStream, File extractTo) throws IOException, ExtractionException {
+    String pathToExecutable = phantomJSArchive.getPathToExecutable();
+    ArchiveEntry entry;
+    while ((entry = archiveStream.getNextEntry()) != null) {
+      if (!entry.isDirectory() && pathToExecutable.equals(normalize(entry.getName()))) {
+        LOGGER.info(EXTRACTING, entry.getName(), extractTo.getAbsolutePath());
+        write(archiveStream, extractTo);
+        return;
+      }
+    }
+    throw new ExtractionException(String.format(ENTRY_NOT_FOUND, pathToExecutable));
+  }
+
+  private ArchiveInputStream openArchive(InputStream in) throws IOException, ExtractionException {
+    String extension = phantomJSArchive.getExtension();
+    if ("zip".equals(extension)) {
+      return new ZipArchiveInputStream(in);
+    } else if ("tar.bz2".equals(extension)) {
+      return new TarArchiveInputStream(new BZip2CompressorInputStream(in, true));
+    } else if ("tar.gz".equals(extension)) {
+      return new TarArchiveInputStream(new GzipCompressorInputStream(in, true));
+    }
+    throw new ExtractionException(String.format(UNSUPPORTED_ARCHIVE, extension));
+  }
+
+  /**
+   * Writes the executable next to its target and moves it into place once it is complete.
+   */
+  static void write(InputStream in, File extractTo) throws IOException {
+    File directory = extractTo.getParentFile();
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IOException("Unable to create directory " + directory);
+    }
+    // write next to the target and move it into place so nobody runs a partial binary
+    File temp = File.createTempFile(extractTo.getName(), TEMP_SUFFIX, directory);
+    try {
+      OutputStream out = new FileOutputStream(temp);
+      try {
+        IOUtil.copy(in, out);
+      } finally {
+        out.close();
+      }
+      temp.setExecutable(true);
+      FileMover.move(temp, extractTo);
+    } finally {
+      temp.delete();
+    }
+  }
+
+  private String normalize(String name) {
+    return name.startsWith("./") ? name.substring(2) : name;
+  }
+
+  /**
+   * Shields the underlying stream from the archive and compressor streams closing it.
+   */
+  private static class UnclosableInputStream extends FilterInputStream {
+
+    private UnclosableInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public void close() {
+      // the caller owns the underlying stream
+    }
+  }
+}
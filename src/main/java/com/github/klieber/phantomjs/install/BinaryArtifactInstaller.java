@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.install;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.cache.AccessTimes;
+import com.github.klieber.phantomjs.config.Configuration;
+import com.github.klieber.phantomjs.download.DownloadException;
+import com.github.klieber.phantomjs.download.RepositoryDownloader;
+import com.github.klieber.phantomjs.lock.LockManager;
+import com.github.klieber.phantomjs.util.FileLinker;
+import com.github.klieber.phantomjs.util.FileMover;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Installs phantomjs from a prebuilt binary artifact, published with the publish-binary goal,
+ * so that no archive has to be decompressed. When the repository has no such artifact the
+ * fallback installer is used.
+ */
+public class BinaryArtifactInstaller implements Installer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BinaryArtifactInstaller.class);
+
+  private static final String UNABLE_TO_INSTALL = "Unable to install phantomjs.";
+  private static final String NO_BINARY_ARTIFACT = "No prebuilt phantomjs binary available, installing from the archive: {}";
+  private static final String INSTALLING = "Installing prebuilt phantomjs binary {} to {}";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final Configuration config;
+  private final RepositoryDownloader downloader;
+  private final Installer fallbackInstaller;
+  private final boolean link;
+  private final LockManager lockManager;
+
+  /**
+   * @param link whether to link the binary from the local repository instead of copying it, only
+   *             done when the resolved binary is already executable
+   */
+  public BinaryArtifactInstaller(Configuration config,
+                                 RepositoryDownloader downloader,
+                                 Installer fallbackInstaller,
+                                 boolean link,
+                                 LockManager lockManager) {
+    this.config = config;
+    this.downloader = downloader;
+    this.fallbackInstaller = fallbackInstaller;
+    this.link = link;
+    this.lockManager = lockManager;
+  }
+
+  @Override
+  public String install() throws InstallationException {
+    PhantomJSArchive phantomJSArchive = config.getPhantomJsArchive();
+    File extractTo = new File(config.getOutputDirectory(), phantomJSArchive.getExtractToPath());
+
+    if (extractTo.exists()) {
+      return extractTo.getAbsolutePath();
+    }
+
+    File binary;
+    try {
+      binary = downloader.downloadBinary(phantomJSArchive);
+    } catch (DownloadException e) {
+      LOGGER.info(NO_BINARY_ARTIFACT, e.getMessage());
+      return fallbackInstaller.install();
+    }
+
+    LockManager.Lock lock = lock(extractTo);
+    try {
+      // another build may have installed it while we were waiting for the lock
+      if (!extractTo.exists()) {
+        LOGGER.info(INSTALLING, binary, extractTo);
+        place(binary, extractTo);
+      }
+    } catch (IOException e) {
+      throw new InstallationException(UNABLE_TO_INSTALL, e);
+    } finally {
+      lock.release();
+    }
+    AccessTimes.touch(binary);
+    return extractTo.getAbsolutePath();
+  }
+
+  private void place(File binary, File extractTo) throws IOException {
+    // a link shares the permissions of the resolved file, which must not be changed in the repository
+    if (link && binary.canExecute()) {
+      FileLinker.link(binary, extractTo);
+      return;
+    }
+    File directory = extractTo.getAbsoluteFile().getParentFile();
+    if (!directory.exists() && !directory.mkdirs() && !directory.exists()) {
+      throw new IOException("Unable to create directory " + directory);
+    }
+    // copy next to the target and move it into place so nobody runs a partial binary
+    File temp = File.createTempFile(extractTo.getName(), TEMP_SUFFIX, directory);
+    try {
+      Files.copy(binary.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      temp.setExecutable(true);
+      FileMover.move(temp, extractTo);
+    } finally {
+      temp.delete();
+    }
+  }
+
+  private LockManager.Lock lock(File extractTo) throws InstallationException {
+    try {
+      return lockManager.lock(extractTo);
+    } catch (IOException e) {
+      throw new InstallationException(UNABLE_TO_INSTALL, e);
+    }
+  }
+}
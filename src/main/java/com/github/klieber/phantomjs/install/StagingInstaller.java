@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.install;
+
+import com.github.klieber.phantomjs.extract.ExtractionException;
+import com.github.klieber.phantomjs.util.Checksums;
+import org.codehaus.plexus.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Installs phantomjs into a stage on a fast, usually memory backed, staging directory such as
+ * /dev/shm. Every output directory gets its own stage, so repeated builds of a project reuse
+ * the binary that is already staged. When the staging directory is missing, short on space or
+ * extraction into it fails, phantomjs is installed into the output directory instead.
+ */
+public class StagingInstaller implements Installer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StagingInstaller.class);
+
+  private static final String STAGING_UNAVAILABLE = "Staging directory {} is not usable, installing into the output directory";
+  private static final String UNABLE_TO_STAGE = "Unable to stage phantomjs in {}, installing into the output directory: {}";
+  private static final String REMOVING_STALE_STAGE = "Removing stale phantomjs stage {}";
+  private static final String UNABLE_TO_REMOVE = "Unable to remove stale phantomjs stage {}";
+
+  private static final String STAGES = "phantomjs-maven-plugin";
+  private static final int STAGE_NAME_LENGTH = 16;
+
+  // room for the largest phantomjs binary with some to spare
+  private static final long MINIMUM_FREE_SPACE = 128L * 1024 * 1024;
+
+  // stages nobody has installed into for this long belong to builds that are gone
+  private static final long STALE_PERIOD = TimeUnit.DAYS.toMillis(1);
+
+  private final File stagingDirectory;
+  private final File stage;
+  private final Installer stagedInstaller;
+  private final Installer fallbackInstaller;
+
+  public StagingInstaller(File stagingDirectory,
+                          File stage,
+                          Installer stagedInstaller,
+                          Installer fallbackInstaller) {
+    this.stagingDirectory = stagingDirectory;
+    this.stage = stage;
+    this.stagedInstaller = stagedInstaller;
+    this.fallbackInstaller = fallbackInstaller;
+  }
+
+  /**
+   * The stage used for the given output directory.
+   */
+  public static File getStage(File stagingDirectory, File outputDirectory) {
+    try {
+      byte[] path = outputDirectory.getAbsolutePath().getBytes("UTF-8");
+      String name = Checksums.toHex(Checksums.newSha256().digest(path)).substring(0, STAGE_NAME_LENGTH);
+      return new File(new File(stagingDirectory, STAGES), name);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public String install() throws InstallationException {
+    if (!isUsable()) {
+      LOGGER.info(STAGING_UNAVAILABLE, stagingDirectory);
+      return fallbackInstaller.install();
+    }
+    removeStaleStages();
+    if (stage.isDirectory() || stage.mkdirs()) {
+      stage.setLastModified(System.currentTimeMillis());
+    }
+    try {
+      return stagedInstaller.install();
+    } catch (InstallationException e) {
+      // a failed download would fail again, only extraction depends on the staging directory
+      if (!(e.getCause() instanceof ExtractionException)) {
+        throw e;
+      }
+      LOGGER.warn(UNABLE_TO_STAGE, stage, e.getCause().getMessage());
+      delete(stage);
+      return fallbackInstaller.install();
+    }
+  }
+
+  private boolean isUsable() {
+    return stagingDirectory.isDirectory()
+        && stagingDirectory.canWrite()
+        && stagingDirectory.getUsableSpace() >= MINIMUM_FREE_SPACE;
+  }
+
+  private void removeStaleStages() {
+    File[] stages = new File(stagingDirectory, STAGES).listFiles();
+    if (stages == null) {
+      return;
+    }
+    long staleBefore = System.currentTimeMillis() - STALE_PERIOD;
+    for (File other : stages) {
+      if (!other.equals(stage) && other.isDirectory() && other.lastModified() < staleBefore) {
+        LOGGER.debug(REMOVING_STALE_STAGE, other);
+        delete(other);
+      }
+    }
+  }
+
+  private void delete(File directory) {
+    try {
+      FileUtils.deleteDirectory(directory);
+    } catch (IOException e) {
+      LOGGER.debug(UNABLE_TO_REMOVE, directory, e);
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.install;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.config.Configuration;
+import com.github.klieber.phantomjs.download.DownloadException;
+import com.github.klieber.phantomjs.download.StreamingDownloader;
+import com.github.klieber.phantomjs.extract.ExtractionException;
+import com.github.klieber.phantomjs.extract.StreamExtractor;
+import com.github.klieber.phantomjs.lock.LockManager;
+import com.github.klieber.phantomjs.util.DaemonThreadFactory;
+import org.codehaus.plexus.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Installs phantomjs by extracting the executable from the archive while it is still being
+ * downloaded. The download runs on its own thread and feeds the extractor through a pipe so
+ * that network transfer and decompression overlap.
+ */
+public class StreamingInstaller implements Installer {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StreamingInstaller.class);
+
+  private static final String UNABLE_TO_INSTALL = "Unable to install phantomjs.";
+  private static final String UNABLE_TO_CACHE = "Installed phantomjs but was unable to cache the archive";
+
+  // large enough that the download rarely waits on decompression
+  private static final int PIPE_SIZE = 1024 * 1024;
+
+  private final Configuration config;
+  private final StreamingDownloader downloader;
+  private final StreamExtractor extractor;
+  private final boolean keepArchive;
+  private final LockManager lockManager;
+
+  public StreamingInstaller(Configuration config,
+                            StreamingDownloader downloader,
+                            StreamExtractor extractor,
+                            boolean keepArchive,
+                            LockManager lockManager) {
+    this.config = config;
+    this.downloader = downloader;
+    this.extractor = extractor;
+    this.keepArchive = keepArchive;
+    this.lockManager = lockManager;
+  }
+
+  @Override
+  public String install() throws InstallationException {
+    PhantomJSArchive phantomJSArchive = config.getPhantomJsArchive();
+    File outputDirectory = config.getOutputDirectory();
+
+    File extractTo = new File(outputDirectory, phantomJSArchive.getExtractToPath());
+
+    if (!extractTo.exists()) {
+      LockManager.Lock lock;
+      try {
+        lock = lockManager.lock(extractTo);
+      } catch (IOException e) {
+        throw new InstallationException(UNABLE_TO_INSTALL, e);
+      }
+      try {
+        // another build may have installed it while we were waiting for the lock
+        if (!extractTo.exists()) {
+          stream(phantomJSArchive, extractTo);
+        }
+      } finally {
+        lock.release();
+      }
+    }
+    return extractTo.getAbsolutePath();
+  }
+
+  private void stream(PhantomJSArchive phantomJSArchive, File extractTo) throws InstallationException {
+    ExecutorService executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("phantomjs-stream"));
+    PipedInputStream in = new PipedInputStream(PIPE_SIZE);
+    try {
+      Future<Void> download = executor.submit(new Download(phantomJSArchive, new PipedOutputStream(in)));
+      try {
+        extractor.extract(in, extractTo);
+      } catch (ExtractionException e) {
+        if (download.isDone()) {
+          // a failed download shows up as a truncated archive, report the download failure instead
+          awaitDownload(download);
+        }
+        throw new InstallationException(UNABLE_TO_INSTALL, e);
+      }
+      if (keepArchive) {
+        cacheArchive(in, download);
+      }
+    } catch (IOException e) {
+      throw new InstallationException(UNABLE_TO_INSTALL, e);
+    } finally {
+      // closing the pipe stops a download that is no longer needed
+      IOUtil.close(in);
+      executor.shutdownNow();
+    }
+  }
+
+  private void cacheArchive(InputStream in, Future<Void> download) {
+    try {
+      // keep reading so the rest of the archive reaches the cache
+      drain(in);
+      awaitDownload(download);
+    } catch (IOException e) {
+      LOGGER.warn(UNABLE_TO_CACHE, e);
+    } catch (InstallationException e) {
+      // the executable is already in place, only the cached copy of the archive is missing
+      LOGGER.warn(UNABLE_TO_CACHE, e.getCause());
+    }
+  }
+
+  private void awaitDownload(Future<Void> download) throws InstallationException {
+    try {
+      download.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InstallationException(UNABLE_TO_INSTALL, e);
+    } catch (ExecutionException e) {
+      throw new InstallationException(UNABLE_TO_INSTALL, e.getCause());
+    }
+  }
+
+  private void drain(InputStream in) throws IOException {
+    byte[] buffer = new byte[8192];
+    while (in.read(buffer) != -1) {
+      // discard, the downloader is writing the archive to the cache
+    }
+  }
+
+  private class Download implements Callable<Void> {
+
+    private final PhantomJSArchive phantomJSArchive;
+    private final PipedOutputStream out;
+
+    private Download(PhantomJSArchive phantomJSArchive, PipedOutputStream out) {
+      this.phantomJSArchive = phantomJSArchive;
+      this.out = out;
+    }
+
+    @Override
+    public Void call() throws DownloadException {
+      try {
+        downloader.download(phantomJSArchive, out, keepArchive);
+      } finally {
+        IOUtil.close(out);
+      }
+      return null;
+    }
+  }
+}
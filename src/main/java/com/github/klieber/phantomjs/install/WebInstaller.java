@@ -26,8 +26,10 @@ import com.github.klieber.phantomjs.download.DownloadException;
 import com.github.klieber.phantomjs.download.Downloader;
 import com.github.klieber.phantomjs.extract.ExtractionException;
 import com.github.klieber.phantomjs.extract.Extractor;
+import com.github.klieber.phantomjs.lock.LockManager;
 
 import java.io.File;
+import java.io.IOException;
 
 public class WebInstaller implements Installer {
 
@@ -36,11 +38,13 @@ public class WebInstaller implements Installer {
   private final Configuration config;
   private final Downloader downloader;
   private final Extractor extractor;
+  private final LockManager lockManager;
 
-  public WebInstaller(Configuration config, Downloader downloader, Extractor extractor) {
+  public WebInstaller(Configuration config, Downloader downloader, Extractor extractor, LockManager lockManager) {
     this.config = config;
     this.downloader = downloader;
     this.extractor = extractor;
+    this.lockManager = lockManager;
   }
 
   @Override
@@ -51,16 +55,29 @@ public class WebInstaller implements Installer {
     File extractTo = new File(outputDirectory, phantomJSArchive.getExtractToPath());
 
     if (!extractTo.exists()) {
+      LockManager.Lock lock = lock(extractTo);
       try {
-        File archive = downloader.download(phantomJSArchive);
-        extractor.extract(archive, extractTo);
+        // another build may have installed it while we were waiting for the lock
+        if (!extractTo.exists()) {
+          File archive = downloader.download(phantomJSArchive);
+          extractor.extract(archive, extractTo);
+        }
       } catch(DownloadException e) {
         throw new InstallationException(UNABLE_TO_INSTALL, e);
       } catch(ExtractionException e) {
         throw new InstallationException(UNABLE_TO_INSTALL, e);
+      } finally {
+        lock.release();
       }
-
     }
     return extractTo.getAbsolutePath();
   }
+
+  private LockManager.Lock lock(File extractTo) throws InstallationException {
+    try {
+      return lockManager.lock(extractTo);
+    } catch (IOException e) {
+      throw new InstallationException(UNABLE_TO_INSTALL, e);
+    }
+  }
 }
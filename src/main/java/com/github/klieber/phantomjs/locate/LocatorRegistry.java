@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.locate;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Remembers where phantomjs was located for the rest of the build, so that the modules of a
+ * multi-module build share one install instead of repeating it. Modules asking for the same
+ * key at the same time wait for the first one, modules asking for different keys only contend
+ * when their keys share a lock stripe.
+ */
+public class LocatorRegistry {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LocatorRegistry.class);
+
+  private static final String SESSION_KEY = LocatorRegistry.class.getName();
+
+  private static final String REUSING = "Reusing phantomjs located earlier in this build at {}";
+
+  private static final int STRIPES = 16;
+
+  private final ConcurrentMap<String, String> locations;
+  private final ReentrantLock[] locks;
+
+  public LocatorRegistry() {
+    this.locations = new ConcurrentHashMap<String, String>();
+    this.locks = new ReentrantLock[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      this.locks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * @return the registry shared by every execution in the build
+   */
+  public static LocatorRegistry forSession(RepositorySystemSession session) {
+    SessionData data = session.getData();
+    LocatorRegistry registry = (LocatorRegistry) data.get(SESSION_KEY);
+    if (registry == null) {
+      // another execution may have won the race, in which case its registry is used
+      data.set(SESSION_KEY, null, new LocatorRegistry());
+      registry = (LocatorRegistry) data.get(SESSION_KEY);
+    }
+    return registry;
+  }
+
+  /**
+   * Returns the location remembered for the key, or asks the locator and remembers its answer.
+   * A remembered location that no longer exists is located again.
+   */
+  public String locate(String key, Locator locator) {
+    String location = getExisting(key);
+    if (location != null) {
+      LOGGER.debug(REUSING, location);
+      return location;
+    }
+    ReentrantLock lock = locks[(key.hashCode() & Integer.MAX_VALUE) % STRIPES];
+    lock.lock();
+    try {
+      location = getExisting(key);
+      if (location == null) {
+        location = locator.locate();
+        if (location != null) {
+          locations.put(key, location);
+        }
+      } else {
+        LOGGER.debug(REUSING, location);
+      }
+      return location;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private String getExisting(String key) {
+    String location = locations.get(key);
+    return location != null && new File(location).exists() ? location : null;
+  }
+}
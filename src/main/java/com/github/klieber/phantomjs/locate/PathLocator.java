@@ -21,21 +21,76 @@
 package com.github.klieber.phantomjs.locate;
 
 import com.github.klieber.phantomjs.resolve.BinaryResolver;
+import com.github.klieber.phantomjs.util.DaemonThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * Looks for phantomjs in a list of directories, usually the system path. The first directory
+ * in the list that has a suitable binary wins. With more than one thread the directories are
+ * checked concurrently, which hides slow file systems and version checks, and the checks of
+ * later directories are cancelled as soon as an earlier one has a match.
+ */
 public class PathLocator implements Locator {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(PathLocator.class);
+
+  private static final String UNABLE_TO_CHECK = "Unable to check {} for phantomjs";
+
+  public static final int DEFAULT_THREADS = 4;
+
   private final BinaryResolver binaryResolver;
   private final List<String> paths;
+  private final int threads;
 
   public PathLocator(BinaryResolver binaryResolver, List<String> paths) {
+    this(binaryResolver, paths, 1);
+  }
+
+  public PathLocator(BinaryResolver binaryResolver, List<String> paths, int threads) {
     this.binaryResolver = binaryResolver;
     this.paths = paths;
+    this.threads = threads;
   }
 
   @Override
   public String locate() {
+    if (threads <= 1 || paths.size() <= 1) {
+      return locateInOrder();
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(threads, paths.size()),
+        new DaemonThreadFactory("phantomjs-path"));
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>(paths.size());
+      for (String path : paths) {
+        results.add(executor.submit(new Resolve(path)));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        String location = getResult(paths.get(i), results.get(i));
+        if (location != null) {
+          // an earlier directory always wins, the rest no longer matter
+          for (Future<String> later : results.subList(i + 1, results.size())) {
+            later.cancel(true);
+          }
+          return location;
+        }
+      }
+      return null;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private String locateInOrder() {
     String location = null;
     for (String path : this.paths) {
       location = binaryResolver.resolve(path);
@@ -45,4 +100,30 @@ public class PathLocator implements Locator {
     }
     return location;
   }
+
+  private String getResult(String path, Future<String> result) {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      LOGGER.warn(UNABLE_TO_CHECK, path, e.getCause());
+      return null;
+    }
+  }
+
+  private class Resolve implements Callable<String> {
+
+    private final String path;
+
+    private Resolve(String path) {
+      this.path = path;
+    }
+
+    @Override
+    public String call() {
+      return binaryResolver.resolve(path);
+    }
+  }
 }
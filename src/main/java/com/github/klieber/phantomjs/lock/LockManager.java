@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.lock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes work on a file between threads and between processes. Other threads of this jvm
+ * wait on an in-memory lock, other processes on an exclusive {@link FileLock} of a lock file
+ * next to the file. A file lock cannot be taken twice by one jvm, which is why both are needed.
+ * The lock files are left in place, removing them would let two processes lock different files.
+ */
+public class LockManager {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LockManager.class);
+
+  private static final String LOCK = ".lock";
+
+  private static final String WAITING = "Waiting for another build to finish with {}";
+  private static final String INTERRUPTED = "Interrupted while waiting for lock on %s";
+  private static final String UNABLE_TO_RELEASE = "Unable to release lock on {}";
+
+  // shared by every instance so that all threads of the build see the same locks
+  private static final ConcurrentMap<String, ReentrantLock> LOCKS = new ConcurrentHashMap<String, ReentrantLock>();
+
+  /**
+   * Locks the given file, waiting for other threads and processes that hold the lock. The
+   * lock is reentrant for the thread holding it.
+   */
+  public Lock lock(File file) throws IOException {
+    File lockFile = new File(file.getPath() + LOCK);
+    ReentrantLock localLock = getLocalLock(lockFile);
+    try {
+      localLock.lockInterruptibly();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(String.format(INTERRUPTED, file));
+    }
+    if (localLock.getHoldCount() > 1) {
+      // the file lock is already held by this thread
+      return new Lock(file, localLock, null, null);
+    }
+    RandomAccessFile randomAccessFile = null;
+    try {
+      File directory = lockFile.getParentFile();
+      if (directory != null && !directory.exists() && !directory.mkdirs() && !directory.exists()) {
+        throw new IOException("Unable to create directory " + directory);
+      }
+      randomAccessFile = new RandomAccessFile(lockFile, "rw");
+      FileLock fileLock = randomAccessFile.getChannel().tryLock();
+      if (fileLock == null) {
+        LOGGER.info(WAITING, file);
+        fileLock = randomAccessFile.getChannel().lock();
+      }
+      return new Lock(file, localLock, randomAccessFile, fileLock);
+    } catch (IOException e) {
+      close(randomAccessFile);
+      localLock.unlock();
+      throw e;
+    }
+  }
+
+  private ReentrantLock getLocalLock(File lockFile) throws IOException {
+    String key = lockFile.getCanonicalPath();
+    ReentrantLock lock = LOCKS.get(key);
+    if (lock == null) {
+      ReentrantLock newLock = new ReentrantLock();
+      lock = LOCKS.putIfAbsent(key, newLock);
+      if (lock == null) {
+        lock = newLock;
+      }
+    }
+    return lock;
+  }
+
+  private static void close(RandomAccessFile randomAccessFile) {
+    if (randomAccessFile != null) {
+      try {
+        randomAccessFile.close();
+      } catch (IOException e) {
+        // nothing left to clean up
+      }
+    }
+  }
+
+  /**
+   * A lock held on a file, released by {@link #release()}.
+   */
+  public static class Lock {
+
+    private final File file;
+    private final ReentrantLock localLock;
+    private final RandomAccessFile randomAccessFile;
+    private final FileLock fileLock;
+
+    private Lock(File file, ReentrantLock localLock, RandomAccessFile randomAccessFile, FileLock fileLock) {
+      this.file = file;
+      this.localLock = localLock;
+      this.randomAccessFile = randomAccessFile;
+      this.fileLock = fileLock;
+    }
+
+    public void release() {
+      try {
+        if (fileLock != null) {
+          fileLock.release();
+        }
+      } catch (IOException e) {
+        LOGGER.warn(UNABLE_TO_RELEASE, file, e);
+      } finally {
+        close(randomAccessFile);
+        localLock.unlock();
+      }
+    }
+  }
+}
@@ -21,18 +21,33 @@
 package com.github.klieber.phantomjs.mojo;
 
 import com.github.klieber.phantomjs.exec.ExecutionException;
+import com.github.klieber.phantomjs.exec.OutputSink;
+import com.github.klieber.phantomjs.exec.OutputSinks;
+import com.github.klieber.phantomjs.exec.ParallelPhantomJsExecutor;
 import com.github.klieber.phantomjs.exec.PhantomJsExecutor;
 import com.github.klieber.phantomjs.exec.PhantomJsOptions;
 import com.github.klieber.phantomjs.exec.PhantomJsProcessBuilder;
+import com.github.klieber.phantomjs.exec.PhantomJsWorkerPool;
+import com.github.klieber.phantomjs.exec.ScriptResult;
+import org.apache.maven.model.FileSet;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Maven plugin for downloading and installing phantomjs binaries.
@@ -46,6 +61,13 @@ public class ExecPhantomJsMojo extends AbstractPhantomJsMojo {
 
   private static final String EXECUTION_FAILURE = "Failed to execute PhantomJS command";
   private static final String ABNORMAL_EXIT_CODE = "PhantomJS execution did not exit normally (code = %d)";
+  private static final String EXECUTING_SCRIPTS = "Executing {} phantomjs scripts using {} processes";
+  private static final String EXECUTING_SCRIPTS_ON_WORKERS = "Executing {} phantomjs scripts using {} workers";
+  private static final String SCRIPT_EXIT_CODE = "%s (code = %d)";
+  private static final String WORKERS_WITHOUT_SCRIPTS = "workers only apply to scripts, running script in its own process";
+  private static final String SCRIPTS_FAILED = "%d of %d phantomjs scripts did not exit normally: %s";
+
+  private static final String[] DEFAULT_INCLUDES = { "**/*.js" };
 
   /**
    * Command line options for phantomjs
@@ -67,6 +89,68 @@ public class ExecPhantomJsMojo extends AbstractPhantomJsMojo {
   )
   private String script;
 
+  /**
+   * <p>Scripts to execute concurrently, each in its own phantomjs process.</p>
+   * <p>Every script is run with the same command line options, arguments and configuration
+   * file. Includes default to all .js files in the directory. The output of each script is
+   * written in one piece once it has finished.</p>
+   *
+   * @since 0.5
+   */
+  @Parameter
+  private FileSet scripts;
+
+  /**
+   * The most phantomjs processes that run scripts at the same time. Defaults to the number of
+   * available processors.
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      property = "phantomjs.processes"
+  )
+  private int processes;
+
+  /**
+   * <p>Runs the scripts on long-lived phantomjs workers instead of starting a process for every
+   * script. There are as many workers as processes. Only applies to scripts, a single script is
+   * always run in its own process.</p>
+   * <p>Each worker runs a controller script that takes jobs over a loopback port. Scripts that
+   * run on the same worker share its global state, so every script must end by calling
+   * phantom.exit and only output written through console is captured.</p>
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      property = "phantomjs.workers",
+      defaultValue = "false"
+  )
+  private boolean workers;
+
+  /**
+   * The number of scripts a worker runs before it is replaced by a fresh one.
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      property = "phantomjs.jobsPerWorker",
+      defaultValue = "20"
+  )
+  private int jobsPerWorker;
+
+  /**
+   * <p>The most seconds a script may run on a worker. A script that runs longer is reported as
+   * failed and its worker is replaced by a fresh one.</p>
+   * <p>Defaults to 0, which lets scripts run for as long as they take.</p>
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      property = "phantomjs.jobTimeout",
+      defaultValue = "0"
+  )
+  private int jobTimeout;
+
   /**
    * Arguments for the script being executed
    *
@@ -98,6 +182,37 @@ public class ExecPhantomJsMojo extends AbstractPhantomJsMojo {
   )
   private boolean failOnNonZeroExitCode;
 
+  /**
+   * <p>Where the output of phantomjs goes: CONSOLE, LOG, FILE or DISCARD.</p>
+   * <p>CONSOLE writes to the standard output and error of maven, LOG logs every line through the
+   * maven log, FILE appends to the outputFile and DISCARD throws the output away.</p>
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      property = "phantomjs.output",
+      defaultValue = "CONSOLE",
+      required = true
+  )
+  private Output output;
+
+  /**
+   * The file the output of phantomjs is appended to when output is FILE.
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      property = "phantomjs.outputFile",
+      defaultValue = "${project.build.directory}/phantomjs.log"
+  )
+  private File outputFile;
+
+  @Parameter(
+      defaultValue = "${basedir}",
+      readonly = true
+  )
+  private File basedir;
+
   public void run() throws MojoFailureException {
     LOGGER.info("Executing phantomjs command");
 
@@ -105,7 +220,7 @@ public class ExecPhantomJsMojo extends AbstractPhantomJsMojo {
 
     PhantomJsProcessBuilder builder = new PhantomJsProcessBuilder(binary);
 
-    PhantomJsExecutor executor = new PhantomJsExecutor(builder);
+    PhantomJsExecutor executor = new PhantomJsExecutor(builder, getOutputSink());
 
     PhantomJsOptions options = new PhantomJsOptions();
     options.setConfigFile(this.configFile);
@@ -113,6 +228,14 @@ public class ExecPhantomJsMojo extends AbstractPhantomJsMojo {
     options.addArguments(this.arguments);
     options.setScript(this.script);
 
+    if (this.scripts != null) {
+      runScripts(builder, options);
+      return;
+    }
+    if (this.workers) {
+      LOGGER.warn(WORKERS_WITHOUT_SCRIPTS);
+    }
+
     try {
       int code = executor.execute(options);
       if (failOnNonZeroExitCode && code != 0) {
@@ -122,4 +245,103 @@ public class ExecPhantomJsMojo extends AbstractPhantomJsMojo {
       throw new MojoFailureException(EXECUTION_FAILURE, e);
     }
   }
+
+  private void runScripts(PhantomJsProcessBuilder builder, PhantomJsOptions options) throws MojoFailureException {
+    List<String> paths = getScripts();
+    int threads = this.processes > 0 ? this.processes : Runtime.getRuntime().availableProcessors();
+
+    List<ScriptResult> results;
+    try {
+      if (this.workers) {
+        LOGGER.info(EXECUTING_SCRIPTS_ON_WORKERS, paths.size(), threads);
+        PhantomJsWorkerPool pool = new PhantomJsWorkerPool(builder, options, threads, Math.max(1, this.jobsPerWorker), getJobTimeout());
+        try {
+          results = new ParallelPhantomJsExecutor(pool, threads).execute(options, paths, getOutputSink());
+        } finally {
+          pool.close();
+        }
+      } else {
+        LOGGER.info(EXECUTING_SCRIPTS, paths.size(), threads);
+        results = new ParallelPhantomJsExecutor(builder, threads).execute(options, paths, getOutputSink());
+      }
+    } catch (ExecutionException e) {
+      throw new MojoFailureException(EXECUTION_FAILURE, e);
+    }
+
+    List<String> failures = new ArrayList<String>();
+    for (ScriptResult result : results) {
+      if (result.getCode() != 0) {
+        failures.add(String.format(SCRIPT_EXIT_CODE, result.getScript(), result.getCode()));
+      }
+    }
+    if (!failures.isEmpty()) {
+      String message = String.format(SCRIPTS_FAILED, failures.size(), results.size(), StringUtils.join(failures.iterator(), ", "));
+      if (failOnNonZeroExitCode) {
+        throw new MojoFailureException(message);
+      }
+      LOGGER.warn(message);
+    }
+  }
+
+  private int getJobTimeout() {
+    return (int) Math.min(Integer.MAX_VALUE, TimeUnit.SECONDS.toMillis(Math.max(0, this.jobTimeout)));
+  }
+
+  /**
+   * @return the script followed by the scripts of the fileset, each file only once
+   */
+  List<String> getScripts() {
+    // keyed by canonical path so the script is not run again when the fileset matches it too
+    Map<String, String> paths = new LinkedHashMap<String, String>();
+    if (this.script != null) {
+      paths.put(getCanonicalPath(new File(this.script)), this.script);
+    }
+    String directoryName = this.scripts.getDirectory();
+    File directory = directoryName != null ? FileUtils.resolveFile(this.basedir, directoryName) : null;
+    if (directory != null && directory.isDirectory()) {
+      DirectoryScanner scanner = new DirectoryScanner();
+      scanner.setBasedir(directory);
+      List<String> includes = this.scripts.getIncludes();
+      scanner.setIncludes(includes.isEmpty() ? DEFAULT_INCLUDES : includes.toArray(new String[includes.size()]));
+      List<String> excludes = this.scripts.getExcludes();
+      scanner.setExcludes(excludes.toArray(new String[excludes.size()]));
+      scanner.scan();
+      String[] files = scanner.getIncludedFiles();
+      Arrays.sort(files);
+      for (String file : files) {
+        File path = new File(directory, file);
+        String key = getCanonicalPath(path);
+        if (!paths.containsKey(key)) {
+          paths.put(key, path.getAbsolutePath());
+        }
+      }
+    }
+    return new ArrayList<String>(paths.values());
+  }
+
+  private String getCanonicalPath(File file) {
+    try {
+      return file.getCanonicalPath();
+    } catch (IOException e) {
+      return file.getAbsolutePath();
+    }
+  }
+
+  private OutputSink getOutputSink() {
+    if (Output.LOG.equals(output)) {
+      return OutputSinks.log(LOGGER);
+    } else if (Output.FILE.equals(output)) {
+      return OutputSinks.file(outputFile);
+    } else if (Output.DISCARD.equals(output)) {
+      return OutputSinks.discard();
+    }
+    return OutputSinks.console();
+  }
+
+  private enum Output {
+    CONSOLE,
+    LOG,
+    FILE,
+    DISCARD
+  }
 }
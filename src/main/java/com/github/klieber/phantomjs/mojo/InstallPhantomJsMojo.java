@@ -25,19 +25,37 @@ import com.github.klieber.phantomjs.archive.PhantomJSArchiveBuilder;
 import com.github.klieber.phantomjs.cache.CachedArtifact;
 import com.github.klieber.phantomjs.cache.CachedFile;
 import com.github.klieber.phantomjs.config.Configuration;
+import com.github.klieber.phantomjs.config.RelocatedConfiguration;
+import com.github.klieber.phantomjs.download.ChecksumManifest;
 import com.github.klieber.phantomjs.download.Downloader;
+import com.github.klieber.phantomjs.download.HedgedDownloader;
+import com.github.klieber.phantomjs.download.HttpTransport;
+import com.github.klieber.phantomjs.download.LockingDownloader;
+import com.github.klieber.phantomjs.download.LockingStreamingDownloader;
+import com.github.klieber.phantomjs.download.MirrorStatistics;
 import com.github.klieber.phantomjs.download.RepositoryDownloader;
-import com.github.klieber.phantomjs.download.RuleBasedDownloader;
+import com.github.klieber.phantomjs.download.StreamingDownloader;
+import com.github.klieber.phantomjs.download.VerifyingDownloader;
 import com.github.klieber.phantomjs.download.WebDownloader;
+import com.github.klieber.phantomjs.extract.ArchiveEntryExtractor;
 import com.github.klieber.phantomjs.extract.Extractor;
-import com.github.klieber.phantomjs.extract.PhantomJsExtractor;
+import com.github.klieber.phantomjs.extract.ParallelBZip2Extractor;
+import com.github.klieber.phantomjs.extract.StreamExtractor;
+import com.github.klieber.phantomjs.install.BinaryArtifactInstaller;
 import com.github.klieber.phantomjs.install.Installer;
+import com.github.klieber.phantomjs.install.StagingInstaller;
+import com.github.klieber.phantomjs.install.StreamingInstaller;
 import com.github.klieber.phantomjs.install.WebInstaller;
 import com.github.klieber.phantomjs.locate.ArchiveLocator;
 import com.github.klieber.phantomjs.locate.CompositeLocator;
 import com.github.klieber.phantomjs.locate.Locator;
+import com.github.klieber.phantomjs.locate.LocatorRegistry;
 import com.github.klieber.phantomjs.locate.PathLocator;
+import com.github.klieber.phantomjs.lock.LockManager;
 import com.github.klieber.phantomjs.resolve.PhantomJsBinaryResolver;
+import com.github.klieber.phantomjs.resolve.VersionCache;
+import com.github.klieber.phantomjs.store.BinaryStore;
+import com.github.klieber.phantomjs.store.StoringExtractor;
 import com.github.klieber.phantomjs.util.ArtifactBuilder;
 import com.github.klieber.phantomjs.util.Predicate;
 import com.github.klieber.phantomjs.util.Predicates;
@@ -49,6 +67,7 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.repository.RepositoryPolicy;
 
 import javax.inject.Inject;
 import java.io.File;
@@ -76,6 +95,9 @@ public class InstallPhantomJsMojo extends AbstractPhantomJsMojo implements Confi
   private static final String GOOGLE_CODE = "https://phantomjs.googlecode.com/files/";
   private static final String BITBUCKET = "https://bitbucket.org/ariya/phantomjs/downloads/";
 
+  private static final String MIRROR_STATISTICS = "com/github/klieber/phantomjs-maven-plugin/mirrors.properties";
+  private static final String VERSION_CACHE = "com/github/klieber/phantomjs-maven-plugin/versions.properties";
+
   private enum Source {
     URL,
     REPOSITORY
@@ -102,6 +124,19 @@ public class InstallPhantomJsMojo extends AbstractPhantomJsMojo implements Confi
   )
   private String baseUrl;
 
+  /**
+   * <p>Additional base urls the phantomjs binary can be downloaded from.</p>
+   * <p>The plugin remembers how fast and reliable each mirror was in earlier builds and tries
+   * the best one first. When a baseUrl is also configured it is treated as one of the
+   * mirrors. A url that is listed more than once is only used once.</p>
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      property = "phantomjs.mirrors"
+  )
+  private List<String> mirrors;
+
   /**
    * The directory the phantomjs binary should be installed.
    *
@@ -154,6 +189,144 @@ public class InstallPhantomJsMojo extends AbstractPhantomJsMojo implements Confi
   )
   private Source source;
 
+  /**
+   * <p>The number of concurrent connections used to download the phantomjs archive when the
+   * source is URL.</p>
+   * <p>The archive is split into byte ranges when the server supports them, otherwise it is
+   * downloaded using a single connection.</p>
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      defaultValue = "4",
+      property = "phantomjs.downloadSegments",
+      required = true
+  )
+  private int downloadSegments;
+
+  /**
+   * <p>How long to wait, in milliseconds, for a download source to respond before the next
+   * source is tried in parallel. The first source to finish the download is used.</p>
+   * <p>Only applies when the source is URL and there is more than one place to download from:
+   * either mirrors are configured, alongside a baseUrl or not, or neither is configured and the
+   * default download sites are used. A baseUrl on its own is never hedged.</p>
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      defaultValue = "2000",
+      property = "phantomjs.hedgeDelay",
+      required = true
+  )
+  private long hedgeDelay;
+
+  /**
+   * <p>Extract phantomjs while the archive is being downloaded instead of downloading the
+   * whole archive first.</p>
+   * <p>Only applies when the source is URL and at most one baseUrl or mirror is configured. With
+   * several, the whole archive is downloaded first so that falling back to and hedging between
+   * the mirrors still applies. With neither, only the default download site for the version is
+   * used.</p>
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      defaultValue = "false",
+      property = "phantomjs.streamingInstall",
+      required = true
+  )
+  private boolean streamingInstall;
+
+  /**
+   * Keep a copy of the downloaded archive in the local repository when using a streaming install.
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      defaultValue = "true",
+      property = "phantomjs.keepArchive",
+      required = true
+  )
+  private boolean keepArchive;
+
+  /**
+   * <p>Extract each phantomjs archive only once per machine and link the binary into the
+   * output directory.</p>
+   * <p>Extracted binaries are kept in the local repository and shared by every project, so
+   * installing again after a clean build is almost free. A hard link is used where possible and
+   * a copy otherwise, so pruning the cache never leaves a dangling link behind.</p>
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      defaultValue = "true",
+      property = "phantomjs.shareBinaries",
+      required = true
+  )
+  private boolean shareBinaries;
+
+  /**
+   * <p>Install phantomjs from a prebuilt binary artifact when the repository has one.</p>
+   * <p>Binary artifacts are published with the publish-binary goal and hold just the extracted
+   * executable, so no archive has to be decompressed. The archive is used when there is no
+   * binary artifact for the version and platform. Only applies when the source is
+   * REPOSITORY.</p>
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      defaultValue = "false",
+      property = "phantomjs.binaryArtifacts",
+      required = true
+  )
+  private boolean binaryArtifacts;
+
+  /**
+   * <p>The number of threads used to decompress tar.bz2 archives.</p>
+   * <p>Defaults to a single thread. Parallel decompression reads the whole archive once to
+   * locate the blocks before decompressing them and has not been measured to pay off on every
+   * machine, so it is only used when set to more than 1.</p>
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      defaultValue = "1",
+      property = "phantomjs.extractThreads"
+  )
+  private int extractThreads;
+
+  /**
+   * <p>A fast directory, such as the memory backed /dev/shm, to install phantomjs into instead
+   * of the output directory.</p>
+   * <p>Intended for short-lived build agents with slow workspace storage. The binary is
+   * extracted straight into the staging directory rather than shared through the local
+   * repository. When the directory is missing, short on space or extraction fails, phantomjs is
+   * installed into the output directory as usual. Stages left behind by earlier builds are
+   * removed after a day.</p>
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      property = "phantomjs.stagingDirectory"
+  )
+  private File stagingDirectory;
+
+  /**
+   * <p>The expected SHA-256 of the phantomjs archive.</p>
+   * <p>Verification is opt-in for most archives. The manifest bundled with the plugin only lists
+   * the checksums of a few published releases, currently the 2.1.1 linux-x86_64 archive, and
+   * those archives are verified without setting this parameter. Every other archive is only
+   * verified when its checksum is set here. A cached archive that does not match is downloaded
+   * again, a download that does not match fails the build. Streaming installs are not verified
+   * because the binary is extracted before the whole archive has been read.</p>
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      property = "phantomjs.checksum"
+  )
+  private String checksum;
+
   private RepositorySystem repositorySystem;
 
   @Parameter(
@@ -170,9 +343,12 @@ public class InstallPhantomJsMojo extends AbstractPhantomJsMojo implements Confi
 
   private PhantomJSArchive phantomJSArchive;
 
+  private LockManager lockManager;
+
   @Inject
   public InstallPhantomJsMojo(RepositorySystem repositorySystem) {
     this.repositorySystem = repositorySystem;
+    this.lockManager = new LockManager();
   }
 
   @Override
@@ -200,7 +376,8 @@ public class InstallPhantomJsMojo extends AbstractPhantomJsMojo implements Confi
 
   public void run() throws MojoFailureException {
     Locator locator = new CompositeLocator(getLocators());
-    String location = locator.locate();
+    // other modules of the build that need the same phantomjs reuse this answer
+    String location = LocatorRegistry.forSession(repositorySystemSession).locate(getInstallKey(), locator);
 
     if (location == null) {
       throw new MojoFailureException(UNABLE_TO_INSTALL);
@@ -208,6 +385,18 @@ public class InstallPhantomJsMojo extends AbstractPhantomJsMojo implements Confi
     this.setPhantomJsBinary(location);
   }
 
+  private String getInstallKey() {
+    return new StringBuilder()
+        .append(version).append('|')
+        .append(getPhantomJsArchive().getClassifier()).append('|')
+        .append(source).append('|')
+        .append(binaryArtifacts).append('|')
+        .append(outputDirectory.getAbsolutePath()).append('|')
+        .append(stagingDirectory).append('|')
+        .append(checkSystemPath)
+        .toString();
+  }
+
   private List<Locator> getLocators() {
     List<Locator> locators = new ArrayList<Locator>();
     if (this.checkSystemPath) {
@@ -220,18 +409,73 @@ public class InstallPhantomJsMojo extends AbstractPhantomJsMojo implements Confi
   private Locator getPathLocator() {
     String systemPath = System.getenv("PATH");
     List<String> paths = Arrays.asList(systemPath.split(File.pathSeparator));
-    return new PathLocator(new PhantomJsBinaryResolver(this),paths);
+    final VersionCache versionCache = getVersionCache();
+    final Locator locator = new PathLocator(new PhantomJsBinaryResolver(this, versionCache),paths,PathLocator.DEFAULT_THREADS);
+    return new Locator() {
+      @Override
+      public String locate() {
+        try {
+          return locator.locate();
+        } finally {
+          // written once per build rather than once per directory on the path
+          versionCache.save();
+        }
+      }
+    };
   }
 
   private Locator getArchiveLocator() {
+    Installer installer = getInstaller(this, this.shareBinaries);
+    if (this.stagingDirectory != null) {
+      File stage = StagingInstaller.getStage(this.stagingDirectory, this.outputDirectory);
+      // a binary linked from the local repository would still be read from slow storage
+      Installer stagedInstaller = getInstaller(new RelocatedConfiguration(this, stage), false);
+      installer = new StagingInstaller(this.stagingDirectory, stage, stagedInstaller, installer);
+    }
+    return new ArchiveLocator(installer);
+  }
 
+  private Installer getInstaller(Configuration config, boolean shareBinaries) {
+    // a stream cannot switch mirrors half way, so it is only used when there is one to use
+    if (this.streamingInstall && Source.URL.equals(source) && getSources().size() <= 1) {
+      return getStreamingInstaller(config);
+    }
     Downloader downloader = getDownloader();
 
-    Extractor extractor = new PhantomJsExtractor(phantomJSArchive);
+    Extractor extractor = getExtractor();
+    if (shareBinaries) {
+      extractor = new StoringExtractor(extractor, getPhantomJsArchive(), getBinaryStore(), lockManager);
+    }
 
-    Installer installer = new WebInstaller(this, downloader, extractor);
+    Installer installer = new WebInstaller(config, downloader, extractor, lockManager);
+    if (this.binaryArtifacts && Source.REPOSITORY.equals(source)) {
+      RepositoryDownloader binaryDownloader = new RepositoryDownloader(new ArtifactBuilder(),repositorySystem,remoteRepositories,repositorySystemSession);
+      installer = new BinaryArtifactInstaller(config, binaryDownloader, installer, shareBinaries, lockManager);
+    }
+    return installer;
+  }
 
-    return new ArchiveLocator(installer);
+  private Extractor getExtractor() {
+    Extractor extractor = new ArchiveEntryExtractor(getPhantomJsArchive());
+    if (this.extractThreads > 1) {
+      return new ParallelBZip2Extractor(getPhantomJsArchive(), extractor, this.extractThreads);
+    }
+    return extractor;
+  }
+
+  private Installer getStreamingInstaller(Configuration config) {
+    CachedFile cachedFile = new CachedArtifact(getPhantomJsArchive(), new ArtifactBuilder(), repositorySystemSession);
+
+    List<String> sources = getSources();
+    String url = sources.isEmpty() ? (IS_LEGACY_VERSION.apply(version) ? GOOGLE_CODE : BITBUCKET) : sources.get(0);
+    StreamingDownloader downloader = new LockingStreamingDownloader(
+        new WebDownloader(url, cachedFile, downloadSegments, isRefresh(), getTransport()),
+        cachedFile,
+        lockManager);
+
+    StreamExtractor extractor = new StreamExtractor(getPhantomJsArchive());
+
+    return new StreamingInstaller(config, downloader, extractor, keepArchive, lockManager);
   }
 
   private Downloader getDownloader() {
@@ -240,14 +484,78 @@ public class InstallPhantomJsMojo extends AbstractPhantomJsMojo implements Confi
     Downloader downloader = null;
     if (Source.REPOSITORY.equals(source)) {
       downloader = new RepositoryDownloader(artifactBuilder,repositorySystem,remoteRepositories,repositorySystemSession);
+    } else if (hasMirrors()) {
+      Map<WebDownloader, Predicate<String>> rules = new LinkedHashMap<WebDownloader, Predicate<String>>();
+      // each url gets one downloader, two would race on the same partial file
+      for (String url : getSources()) {
+        rules.put(new WebDownloader(url, cachedFile, downloadSegments, isRefresh(), getTransport()),Predicates.<String>alwaysTrue());
+      }
+      downloader = new HedgedDownloader(rules, hedgeDelay, getMirrorStatistics());
     } else if (this.baseUrl == null) {
-      Map<Downloader, Predicate<String>> rules = new HashMap<Downloader, Predicate<String>>();
-      rules.put(new WebDownloader(GOOGLE_CODE, cachedFile.getFile()),IS_LEGACY_VERSION);
-      rules.put(new WebDownloader(BITBUCKET, cachedFile.getFile()),Predicates.not(IS_LEGACY_VERSION));
-      downloader = new RuleBasedDownloader(rules);
+      // in order of preference, googlecode no longer serves downloads but is kept as a last resort
+      Map<WebDownloader, Predicate<String>> rules = new LinkedHashMap<WebDownloader, Predicate<String>>();
+      rules.put(new WebDownloader(BITBUCKET, cachedFile, downloadSegments, isRefresh(), getTransport()),Predicates.<String>alwaysTrue());
+      rules.put(new WebDownloader(GOOGLE_CODE, cachedFile, downloadSegments, isRefresh(), getTransport()),IS_LEGACY_VERSION);
+      downloader = new HedgedDownloader(rules, hedgeDelay, getMirrorStatistics());
     } else {
-      downloader = new WebDownloader(baseUrl, cachedFile.getFile());
+      downloader = new WebDownloader(baseUrl, cachedFile, downloadSegments, isRefresh(), getTransport());
+    }
+    String expectedChecksum = getExpectedChecksum();
+    if (expectedChecksum != null) {
+      downloader = new VerifyingDownloader(downloader, expectedChecksum);
+    }
+    // concurrent builds on this machine wait for each other and reuse the cached archive, and
+    // the cache-prune goal never removes an archive while it is being downloaded
+    return new LockingDownloader(downloader, cachedFile, lockManager);
+  }
+
+  private String getExpectedChecksum() {
+    if (this.checksum != null) {
+      return this.checksum;
+    }
+    return ChecksumManifest.load().getChecksum(getPhantomJsArchive());
+  }
+
+  /**
+   * @return the configured baseUrl followed by the mirrors, without duplicates
+   */
+  private List<String> getSources() {
+    Set<String> sources = new LinkedHashSet<String>();
+    if (this.baseUrl != null) {
+      sources.add(this.baseUrl);
     }
-    return downloader;
+    if (hasMirrors()) {
+      sources.addAll(this.mirrors);
+    }
+    return new ArrayList<String>(sources);
+  }
+
+  private boolean hasMirrors() {
+    return this.mirrors != null && !this.mirrors.isEmpty();
+  }
+
+  private VersionCache getVersionCache() {
+    File localRepository = repositorySystemSession.getLocalRepository().getBasedir();
+    return new VersionCache(new File(localRepository, VERSION_CACHE));
+  }
+
+  private MirrorStatistics getMirrorStatistics() {
+    File localRepository = repositorySystemSession.getLocalRepository().getBasedir();
+    return new MirrorStatistics(new File(localRepository, MIRROR_STATISTICS), lockManager);
+  }
+
+  private BinaryStore getBinaryStore() {
+    File localRepository = repositorySystemSession.getLocalRepository().getBasedir();
+    return new BinaryStore(new File(localRepository, BinaryStore.LOCATION));
+  }
+
+  private HttpTransport getTransport() {
+    // shared by every execution in the build so that they reuse the same connections
+    return HttpTransport.forSession(repositorySystemSession);
+  }
+
+  private boolean isRefresh() {
+    // mvn -U asks for cached downloads to be checked for updates
+    return RepositoryPolicy.UPDATE_POLICY_ALWAYS.equals(repositorySystemSession.getUpdatePolicy());
   }
 }
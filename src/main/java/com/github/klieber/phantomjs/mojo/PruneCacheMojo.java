@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.mojo;
+
+import com.github.klieber.phantomjs.lock.LockManager;
+import com.github.klieber.phantomjs.prune.CacheEntry;
+import com.github.klieber.phantomjs.prune.CachePruner;
+import com.github.klieber.phantomjs.prune.CacheScanner;
+import com.github.klieber.phantomjs.store.BinaryStore;
+import com.github.klieber.phantomjs.util.ArtifactBuilder;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.eclipse.aether.RepositorySystemSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes the least recently used phantomjs archives and extracted binaries from the local
+ * repository until the cache is within its size budget and age limit. It is safe to run while
+ * other builds are installing phantomjs.
+ *
+ * @since 0.5
+ */
+@Mojo(name = "cache-prune", requiresProject = false, threadSafe = true)
+public class PruneCacheMojo extends AbstractPhantomJsMojo {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PruneCacheMojo.class);
+
+  private static final long MEGABYTE = 1024 * 1024;
+  private static final long DAY = 24 * 60 * 60 * 1000;
+
+  private static final String PRUNED = "Pruned {} cached phantomjs files";
+
+  /**
+   * The most disk space, in megabytes, cached archives and binaries may use together. Zero or
+   * less means there is no budget.
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      defaultValue = "512",
+      property = "phantomjs.maxCacheSize",
+      required = true
+  )
+  private long maxCacheSize;
+
+  /**
+   * The number of days after which an archive or binary that was not used is removed. Zero or
+   * less means there is no limit.
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      defaultValue = "90",
+      property = "phantomjs.maxCacheAge",
+      required = true
+  )
+  private long maxCacheAge;
+
+  @Parameter(
+      defaultValue = "${repositorySystemSession}",
+      readonly = true
+  )
+  private RepositorySystemSession repositorySystemSession;
+
+  @Override
+  protected void run() throws MojoFailureException {
+    File localRepository = repositorySystemSession.getLocalRepository().getBasedir();
+    File archives = new File(localRepository, ArtifactBuilder.GROUP_ID.replace('.', '/') + "/" + ArtifactBuilder.ARTIFACT_ID);
+    File binaries = new File(localRepository, BinaryStore.LOCATION);
+
+    CacheScanner scanner = new CacheScanner();
+    List<CacheEntry> entries = new ArrayList<CacheEntry>();
+    entries.addAll(scanner.scanArchives(archives));
+    entries.addAll(scanner.scanBinaries(binaries));
+
+    CachePruner pruner = new CachePruner(new LockManager(), maxCacheSize * MEGABYTE, maxCacheAge * DAY);
+    List<CacheEntry> pruned = pruner.prune(entries);
+    LOGGER.info(PRUNED, pruned.size());
+  }
+}
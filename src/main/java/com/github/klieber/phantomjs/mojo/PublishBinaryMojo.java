@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.mojo;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.archive.PhantomJSArchiveBuilder;
+import com.github.klieber.phantomjs.util.ArtifactBuilder;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.deployment.DeployRequest;
+import org.eclipse.aether.deployment.DeploymentException;
+import org.eclipse.aether.installation.InstallRequest;
+import org.eclipse.aether.installation.InstallationException;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.File;
+
+/**
+ * Publishes the installed phantomjs executable as an artifact of its own, so that builds using
+ * the binaryArtifacts option of the install goal can skip decompressing the archive. The
+ * artifact is installed into the local repository and, when a repository url is given, deployed
+ * to it.
+ *
+ * @since 0.5
+ */
+@Mojo(name = "publish-binary", defaultPhase = LifecyclePhase.DEPLOY, requiresProject = false, threadSafe = true)
+public class PublishBinaryMojo extends AbstractPhantomJsMojo {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PublishBinaryMojo.class);
+
+  private static final String BINARY_NOT_FOUND = "phantomjs binary %s does not exist, run the install goal first.";
+  private static final String UNABLE_TO_PUBLISH = "Failed to publish the phantomjs binary.";
+  private static final String INSTALLED = "Installed phantomjs binary artifact {}";
+  private static final String DEPLOYED = "Deployed phantomjs binary artifact {} to {}";
+
+  private static final String DEFAULT_LAYOUT = "default";
+
+  /**
+   * The version of phantomjs the binary belongs to.
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      property = "phantomjs.version",
+      required = true
+  )
+  private String version;
+
+  /**
+   * The id of the repository to deploy to, used to look up credentials in settings.xml.
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      defaultValue = "remote-repository",
+      property = "phantomjs.repositoryId",
+      required = true
+  )
+  private String repositoryId;
+
+  /**
+   * The url of the repository to deploy to. The artifact is only installed into the local
+   * repository when it is not set.
+   *
+   * @since 0.5
+   */
+  @Parameter(
+      property = "phantomjs.repositoryUrl"
+  )
+  private String repositoryUrl;
+
+  @Parameter(
+      defaultValue = "${repositorySystemSession}",
+      readonly = true
+  )
+  private RepositorySystemSession repositorySystemSession;
+
+  private RepositorySystem repositorySystem;
+
+  @Inject
+  public PublishBinaryMojo(RepositorySystem repositorySystem) {
+    this.repositorySystem = repositorySystem;
+  }
+
+  @Override
+  protected void run() throws MojoFailureException {
+    String binary = getPhantomJsBinary();
+    if (binary == null || !new File(binary).isFile()) {
+      throw new MojoFailureException(String.format(BINARY_NOT_FOUND, binary));
+    }
+
+    PhantomJSArchive archive = new PhantomJSArchiveBuilder(version).build();
+    Artifact artifact = new ArtifactBuilder().createBinaryArtifact(archive).setFile(new File(binary));
+    try {
+      repositorySystem.install(repositorySystemSession, new InstallRequest().addArtifact(artifact));
+      LOGGER.info(INSTALLED, artifact);
+      if (repositoryUrl != null) {
+        RemoteRepository repository = getRepository();
+        repositorySystem.deploy(repositorySystemSession, new DeployRequest().addArtifact(artifact).setRepository(repository));
+        LOGGER.info(DEPLOYED, artifact, repository.getUrl());
+      }
+    } catch (InstallationException e) {
+      throw new MojoFailureException(UNABLE_TO_PUBLISH, e);
+    } catch (DeploymentException e) {
+      throw new MojoFailureException(UNABLE_TO_PUBLISH, e);
+    }
+  }
+
+  private RemoteRepository getRepository() {
+    RemoteRepository repository = new RemoteRepository.Builder(repositoryId, DEFAULT_LAYOUT, repositoryUrl).build();
+    // credentials and proxies are configured in settings.xml
+    return new RemoteRepository.Builder(repository)
+        .setAuthentication(repositorySystemSession.getAuthenticationSelector().getAuthentication(repository))
+        .setProxy(repositorySystemSession.getProxySelector().getProxy(repository))
+        .build();
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.prune;
+
+import com.github.klieber.phantomjs.cache.AccessTimes;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A cached archive or binary together with the files that only exist because of it, such as
+ * its checksum and access time.
+ */
+public class CacheEntry {
+
+  private final File file;
+  private final List<File> companions;
+  private final File lockFile;
+
+  public CacheEntry(File file, List<File> companions) {
+    this(file, companions, file);
+  }
+
+  /**
+   * @param lockFile the file whose lock guards this entry, for entries that belong to another
+   *                 file such as a partial download of an archive
+   */
+  public CacheEntry(File file, List<File> companions, File lockFile) {
+    this.file = file;
+    this.companions = Collections.unmodifiableList(new ArrayList<File>(companions));
+    this.lockFile = lockFile;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public File getLockFile() {
+    return lockFile;
+  }
+
+  public List<File> getCompanions() {
+    return companions;
+  }
+
+  public long getSize() {
+    return file.length();
+  }
+
+  public long getLastAccess() {
+    return AccessTimes.getLastAccess(file);
+  }
+
+  /**
+   * Deletes the file and its companions.
+   *
+   * @return false if the file could not be deleted
+   */
+  boolean delete() {
+    if (!file.delete() && file.exists()) {
+      return false;
+    }
+    for (File companion : companions) {
+      companion.delete();
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return file.getPath();
+  }
+}
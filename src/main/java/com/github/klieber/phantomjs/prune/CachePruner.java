@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.prune;
+
+import com.github.klieber.phantomjs.lock.LockManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Removes the least recently used cache entries until the cache is within its size budget and
+ * no entry is older than the age limit. Each entry is removed while holding the same lock the
+ * installers take, so builds running at the same time are never left with a missing file.
+ */
+public class CachePruner {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CachePruner.class);
+
+  private static final String PRUNED = "Pruned {} ({} KB)";
+  private static final String UNABLE_TO_PRUNE = "Unable to prune {}";
+  private static final String IN_USE = "Keeping {}, it is in use";
+
+  // entries used this recently may belong to a build that is still running
+  static final long IN_USE_PERIOD = 10 * 60 * 1000;
+
+  private final LockManager lockManager;
+  private final long maxSize;
+  private final long maxAge;
+
+  /**
+   * @param maxSize the size budget in bytes, zero or less for no budget
+   * @param maxAge  the age limit in milliseconds, zero or less for no limit
+   */
+  public CachePruner(LockManager lockManager, long maxSize, long maxAge) {
+    this.lockManager = lockManager;
+    this.maxSize = maxSize;
+    this.maxAge = maxAge;
+  }
+
+  /**
+   * @return the entries that were removed
+   */
+  public List<CacheEntry> prune(List<CacheEntry> entries) {
+    List<CacheEntry> candidates = new ArrayList<CacheEntry>(entries);
+    Collections.sort(candidates, new Comparator<CacheEntry>() {
+      @Override
+      public int compare(CacheEntry entry1, CacheEntry entry2) {
+        long lastAccess1 = entry1.getLastAccess();
+        long lastAccess2 = entry2.getLastAccess();
+        return lastAccess1 < lastAccess2 ? -1 : (lastAccess1 == lastAccess2 ? 0 : 1);
+      }
+    });
+
+    long size = 0;
+    for (CacheEntry entry : candidates) {
+      size += entry.getSize();
+    }
+
+    long now = System.currentTimeMillis();
+    List<CacheEntry> pruned = new ArrayList<CacheEntry>();
+    for (CacheEntry entry : candidates) {
+      boolean tooOld = maxAge > 0 && entry.getLastAccess() < now - maxAge;
+      boolean overBudget = maxSize > 0 && size > maxSize;
+      if (!tooOld && !overBudget) {
+        // everything after this entry was used more recently
+        break;
+      }
+      long entrySize = entry.getSize();
+      if (remove(entry, now)) {
+        size -= entrySize;
+        pruned.add(entry);
+      }
+    }
+    return pruned;
+  }
+
+  private boolean remove(CacheEntry entry, long now) {
+    LockManager.Lock lock;
+    try {
+      lock = lockManager.lock(entry.getLockFile());
+    } catch (IOException e) {
+      LOGGER.warn(UNABLE_TO_PRUNE, entry, e);
+      return false;
+    }
+    try {
+      // checked under the lock, a build may have used it since the cache was scanned
+      if (entry.getLastAccess() > now - IN_USE_PERIOD) {
+        LOGGER.info(IN_USE, entry);
+        return false;
+      }
+      long size = entry.getSize();
+      if (!entry.delete()) {
+        LOGGER.warn(UNABLE_TO_PRUNE, entry);
+        return false;
+      }
+      LOGGER.info(PRUNED, entry, size / 1024);
+      return true;
+    } finally {
+      lock.release();
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.prune;
+
+import com.github.klieber.phantomjs.cache.AccessTimes;
+import com.github.klieber.phantomjs.util.ArtifactBuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the entries of the archive cache and the binary store.
+ */
+public class CacheScanner {
+
+  // prebuilt binary artifacts are resolved into the same directory as the archives
+  private static final List<String> ARCHIVE_EXTENSIONS = Arrays.asList(".zip", ".tar.bz2", ".tar.gz", "." + ArtifactBuilder.BINARY_EXTENSION);
+
+  // files kept next to a cached archive by the downloaders
+  private static final List<String> ARCHIVE_COMPANIONS = Arrays.asList(".sha256", ".validators", AccessTimes.SUFFIX);
+
+  // resumable downloads are named <archive>.<source>.part, see WebDownloader
+  private static final Pattern PARTIAL_DOWNLOAD = Pattern.compile("(.+)\\.[0-9a-f]+\\.part");
+
+  private static final List<String> PARTIAL_DOWNLOAD_COMPANIONS = Arrays.asList(".checkpoint", ".checkpoint.tmp");
+
+  // lock files stay, removing them would let two processes lock different files
+  private static final List<String> NOT_BINARIES = Arrays.asList(".lock", ".tmp", ".sha256", AccessTimes.SUFFIX);
+
+  /**
+   * @return the archives and the partial downloads of archives found below the directory
+   */
+  public List<CacheEntry> scanArchives(File directory) {
+    List<CacheEntry> entries = new ArrayList<CacheEntry>();
+    for (File file : listFiles(directory)) {
+      Matcher partialDownload = PARTIAL_DOWNLOAD.matcher(file.getName());
+      if (endsWithAny(file.getName(), ARCHIVE_EXTENSIONS)) {
+        entries.add(new CacheEntry(file, getCompanions(file, ARCHIVE_COMPANIONS)));
+      } else if (partialDownload.matches()) {
+        // as large as the archive it belongs to, the downloaders lock it through that archive
+        File archive = new File(file.getParentFile(), partialDownload.group(1));
+        entries.add(new CacheEntry(file, getCompanions(file, PARTIAL_DOWNLOAD_COMPANIONS), archive));
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * @return the extracted binaries found below the directory
+   */
+  public List<CacheEntry> scanBinaries(File directory) {
+    List<CacheEntry> entries = new ArrayList<CacheEntry>();
+    for (File file : listFiles(directory)) {
+      if (!endsWithAny(file.getName(), NOT_BINARIES)) {
+        entries.add(new CacheEntry(file, getCompanions(file, Arrays.asList(AccessTimes.SUFFIX))));
+      }
+    }
+    return entries;
+  }
+
+  private List<File> getCompanions(File file, List<String> suffixes) {
+    List<File> companions = new ArrayList<File>();
+    for (String suffix : suffixes) {
+      companions.add(new File(file.getPath() + suffix));
+    }
+    return companions;
+  }
+
+  private List<File> listFiles(File directory) {
+    List<File> files = new ArrayList<File>();
+    File[] children = directory.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        if (child.isDirectory()) {
+          files.addAll(listFiles(child));
+        } else {
+          files.add(child);
+        }
+      }
+    }
+    return files;
+  }
+
+  private boolean endsWithAny(String name, List<String> suffixes) {
+    for (String suffix : suffixes) {
+      if (name.endsWith(suffix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -48,46 +48,91 @@ public class PhantomJsBinaryResolver implements BinaryResolver {
   );
 
   private final Configuration config;
+  private final VersionCache versionCache;
+  private final VersionScanner versionScanner;
 
   public PhantomJsBinaryResolver(Configuration config) {
+    this(config, new VersionCache(null));
+  }
+
+  public PhantomJsBinaryResolver(Configuration config, VersionCache versionCache) {
+    this(config, versionCache, VersionScanner.load());
+  }
+
+  public PhantomJsBinaryResolver(Configuration config, VersionCache versionCache, VersionScanner versionScanner) {
     this.config = config;
+    this.versionCache = versionCache;
+    this.versionScanner = versionScanner;
   }
 
   @Override
   public String resolve(String path) {
+    File directory = new File(path);
+    if (versionCache.isEmpty(directory)) {
+      return null;
+    }
     String binaryPath = null;
+    boolean found = false;
     for (String binaryName : BINARY_NAMES) {
-      binaryPath = getBinaryPath(path,binaryName);
-      if (binaryPath != null) {
-        break;
+      File file = new File(directory, binaryName);
+      if (file.exists()) {
+        found = true;
+        binaryPath = getBinaryPath(file);
+        if (binaryPath != null) {
+          break;
+        }
       }
     }
+    if (!found) {
+      versionCache.setEmpty(directory);
+    }
     return binaryPath;
   }
 
-  private String getBinaryPath(String path, String binary) {
-    File file = new File(path, binary);
-    if (file.exists()) {
-      String versionString = getVersion(file.getAbsolutePath());
-      if (versionString != null && (!this.config.enforceVersion() || this.config.getVersion().equals(versionString))) {
-        LOGGER.info(FOUND_PHANTOMJS,versionString,binary);
-        return file.getAbsolutePath();
-      }
+  private String getBinaryPath(File file) {
+    String versionString = getVersion(file);
+    if (versionString != null && (!this.config.enforceVersion() || this.config.getVersion().equals(versionString))) {
+      LOGGER.info(FOUND_PHANTOMJS,versionString,file.getName());
+      return file.getAbsolutePath();
     }
     return null;
   }
 
-  private String getVersion(String binary) {
+  private String getVersion(File binary) {
+    // only look at the binary again when it changed since the last build
+    String versionString = versionCache.getVersion(binary);
+    if (versionString == null) {
+      versionString = detectVersion(binary);
+      if (versionString != null) {
+        versionCache.setVersion(binary, versionString);
+      }
+    }
+    return VersionCache.NO_VERSION.equals(versionString) ? null : versionString;
+  }
+
+  private String detectVersion(File binary) {
+    // reading the version from the file avoids starting an unknown binary found on the path
+    String versionString = versionScanner.scan(binary);
+    return versionString != null ? versionString : runVersion(binary.getAbsolutePath());
+  }
+
+
+  /**
+   * @return the version, {@link VersionCache#NO_VERSION} if the binary did not report one or
+   *         null if it could not be run
+   */
+  private String runVersion(String binary) {
     PhantomJsOptions options = new PhantomJsOptions();
     options.setCommandLineOptions("-v");
 
     PhantomJsProcessBuilder builder = new PhantomJsProcessBuilder(binary);
 
+    Process process = null;
     try {
-      Process process = builder.start(options);
+      process = builder.start(options);
       BufferedReader standardOut = new BufferedReader(new InputStreamReader(process.getInputStream()));
       String versionString = StringUtils.trim(standardOut.readLine());
-      return process.waitFor() == 0 ? versionString : null;
+      return process.waitFor() == 0 && versionString != null ? versionString : VersionCache.NO_VERSION;
 
       // TODO Should these exceptions just be wrapped and rethrown for the mojo to handle?
     } catch (ExecutionException e) {
@@ -95,7 +140,9 @@ public class PhantomJsBinaryResolver implements BinaryResolver {
     } catch (IOException e) {
       LOGGER.warn(SYSTEM_CHECK_FAILURE,e);
     } catch (InterruptedException e) {
-      LOGGER.warn(SYSTEM_CHECK_FAILURE,e);
+      // the check is no longer needed, e.g. an earlier path already had phantomjs
+      process.destroy();
+      Thread.currentThread().interrupt();
     }
     return null;
   }
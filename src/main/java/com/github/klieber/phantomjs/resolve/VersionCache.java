@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.resolve;
+
+import com.github.klieber.phantomjs.util.FileMover;
+import org.codehaus.plexus.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Properties;
+
+/**
+ * Remembers the version reported by each phantomjs binary, and which directories have no
+ * binary at all, so that phantomjs only has to be run again when a file changes. A binary is
+ * recognised by its canonical path together with its size, modification time and file key
+ * (the inode on unix), a directory by its modification time and file key, which change when
+ * files are added or removed. The cache is kept in a small properties file, usually in the
+ * local repository.
+ */
+public class VersionCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VersionCache.class);
+
+  private static final String UNABLE_TO_SAVE = "Unable to save phantomjs versions to {}";
+
+  /**
+   * The version remembered for a file that is not a working phantomjs binary.
+   */
+  public static final String NO_VERSION = "";
+
+  private static final String BINARY = "binary:";
+  private static final String EMPTY = "empty:";
+  private static final char SEPARATOR = '|';
+
+  private final File file;
+  private final Properties entries;
+  private boolean modified;
+
+  /**
+   * @param file where the cache is kept or null to keep it in memory only
+   */
+  public VersionCache(File file) {
+    this.file = file;
+    this.entries = new Properties();
+    load();
+  }
+
+  /**
+   * @return the remembered version, {@link #NO_VERSION} if the binary is known not to work or
+   *         null if the binary changed or was never run
+   */
+  public synchronized String getVersion(File binary) {
+    String fingerprint = getFingerprint(binary, true);
+    String entry = fingerprint != null ? entries.getProperty(BINARY + getPath(binary)) : null;
+    if (entry != null && entry.startsWith(fingerprint + SEPARATOR)) {
+      return entry.substring(fingerprint.length() + 1);
+    }
+    return null;
+  }
+
+  public synchronized void setVersion(File binary, String version) {
+    String fingerprint = getFingerprint(binary, true);
+    if (fingerprint != null) {
+      entries.setProperty(BINARY + getPath(binary), fingerprint + SEPARATOR + version);
+      modified = true;
+    }
+  }
+
+  /**
+   * @return true if the directory had no phantomjs binary and has not changed since
+   */
+  public synchronized boolean isEmpty(File directory) {
+    String fingerprint = getFingerprint(directory, false);
+    return fingerprint != null && fingerprint.equals(entries.getProperty(EMPTY + getPath(directory)));
+  }
+
+  public synchronized void setEmpty(File directory) {
+    String fingerprint = getFingerprint(directory, false);
+    if (fingerprint != null) {
+      entries.setProperty(EMPTY + getPath(directory), fingerprint);
+      modified = true;
+    }
+  }
+
+  /**
+   * Writes the cache to its file if anything changed.
+   */
+  public synchronized void save() {
+    if (file == null || !modified) {
+      return;
+    }
+    try {
+      File directory = file.getParentFile();
+      if (directory != null && !directory.exists() && !directory.mkdirs()) {
+        throw new IOException("Unable to create directory " + directory);
+      }
+      File temp = new File(file.getPath() + ".tmp");
+      OutputStream out = new FileOutputStream(temp);
+      try {
+        entries.store(out, null);
+      } finally {
+        out.close();
+      }
+      FileMover.move(temp, file);
+      modified = false;
+    } catch (IOException e) {
+      // phantomjs is simply run again next time
+      LOGGER.warn(UNABLE_TO_SAVE, file, e);
+    }
+  }
+
+  private void load() {
+    if (file == null || !file.isFile()) {
+      return;
+    }
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      entries.load(in);
+    } catch (IOException e) {
+      entries.clear();
+    } catch (RuntimeException e) {
+      // a damaged cache just means phantomjs is run again
+      entries.clear();
+    } finally {
+      IOUtil.close(in);
+    }
+  }
+
+  private String getFingerprint(File file, boolean includeSize) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+      StringBuilder fingerprint = new StringBuilder();
+      if (includeSize) {
+        fingerprint.append(attributes.size()).append(',');
+      }
+      fingerprint.append(attributes.lastModifiedTime().toMillis()).append(',');
+      Object fileKey = attributes.fileKey();
+      if (fileKey != null) {
+        fingerprint.append(fileKey);
+      }
+      return fingerprint.toString();
+    } catch (IOException e) {
+      return null;
+    } catch (UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  private String getPath(File file) {
+    try {
+      return file.getCanonicalPath();
+    } catch (IOException e) {
+      return file.getAbsolutePath();
+    }
+  }
+}
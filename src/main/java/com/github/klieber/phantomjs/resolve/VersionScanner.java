@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.resolve;
+
+import com.github.klieber.phantomjs.util.Checksums;
+import org.codehaus.plexus.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the version of a phantomjs binary without running it. phantomjs builds the
+ * <code>phantom.version</code> object from the keys "major", "minor" and "patch", which the
+ * compiler stores next to each other followed by the version string, so the executable contains
+ * <code>major\0minor\0patch\0</code> and then the NUL terminated version. The file is memory
+ * mapped and searched for that layout. Binaries laid out differently can be recognised by their
+ * SHA-256 through a table of known releases.
+ */
+public class VersionScanner {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(VersionScanner.class);
+
+  private static final String KNOWN_VERSIONS = "/com/github/klieber/phantomjs/versions.properties";
+
+  private static final String UNABLE_TO_LOAD = "Unable to load the known phantomjs versions {}";
+  private static final String UNABLE_TO_SCAN = "Unable to scan {} for its version: {}";
+
+  private static final byte[] MARKER = "major\0minor\0patch\0".getBytes();
+
+  // longer strings are not a version
+  private static final int MAX_VERSION_LENGTH = 32;
+
+  // the version string may be aligned a few bytes past the keys
+  private static final int MAX_PADDING = 8;
+
+  private static final Pattern VERSION = Pattern.compile("[0-9]+(\\.[0-9]+)+(-[A-Za-z0-9.]+)?");
+
+  private final Properties knownVersions;
+
+  /**
+   * @param knownVersions versions of known binaries keyed by their lower case hex SHA-256
+   */
+  public VersionScanner(Properties knownVersions) {
+    this.knownVersions = knownVersions;
+  }
+
+  /**
+   * @return a scanner using the table of known versions bundled with the plugin
+   */
+  public static VersionScanner load() {
+    Properties knownVersions = new Properties();
+    InputStream in = VersionScanner.class.getResourceAsStream(KNOWN_VERSIONS);
+    if (in != null) {
+      try {
+        knownVersions.load(in);
+      } catch (IOException e) {
+        LOGGER.warn(UNABLE_TO_LOAD, KNOWN_VERSIONS, e);
+      } finally {
+        IOUtil.close(in);
+      }
+    }
+    return new VersionScanner(knownVersions);
+  }
+
+  /**
+   * @return the version of the binary or null if it cannot be told without running it
+   */
+  public String scan(File binary) {
+    try {
+      String version = findMarker(binary);
+      if (version == null && !knownVersions.isEmpty()) {
+        version = knownVersions.getProperty(Checksums.sha256(binary));
+      }
+      return version;
+    } catch (IOException e) {
+      LOGGER.debug(UNABLE_TO_SCAN, binary, e.getMessage());
+      return null;
+    }
+  }
+
+  private String findMarker(File binary) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(binary, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        return null;
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      int limit = buffer.limit() - MARKER.length;
+      for (int i = 0; i <= limit; i++) {
+        if (buffer.get(i) == MARKER[0] && matchesMarker(buffer, i)) {
+          String version = readVersion(buffer, i + MARKER.length);
+          if (version != null) {
+            return version;
+          }
+        }
+      }
+      return null;
+    } finally {
+      file.close();
+    }
+  }
+
+  private boolean matchesMarker(MappedByteBuffer buffer, int position) {
+    for (int i = 1; i < MARKER.length; i++) {
+      if (buffer.get(position + i) != MARKER[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String readVersion(MappedByteBuffer buffer, int position) {
+    int start = position;
+    while (start < buffer.limit() && start - position < MAX_PADDING && buffer.get(start) == 0) {
+      start++;
+    }
+    StringBuilder version = new StringBuilder();
+    for (int i = start; i < buffer.limit(); i++) {
+      byte b = buffer.get(i);
+      if (b == 0) {
+        // the version is what phantomjs --version prints, e.g. 2.1.1 or 2.5.0-beta
+        return VERSION.matcher(version).matches() ? version.toString() : null;
+      }
+      if (version.length() == MAX_VERSION_LENGTH) {
+        break;
+      }
+      version.append((char) b);
+    }
+    return null;
+  }
+}
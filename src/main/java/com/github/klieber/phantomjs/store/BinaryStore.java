@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.store;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.util.Checksums;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A machine wide store of extracted phantomjs binaries shared by every project. Binaries are
+ * kept under their version, classifier and the SHA-256 of the archive they came from, so an
+ * archive that changes upstream never reuses a stale binary. The checksum of an archive is
+ * remembered next to it so that it is only computed once.
+ */
+public class BinaryStore {
+
+  /**
+   * Where the store is kept, relative to the local repository.
+   */
+  public static final String LOCATION = "com/github/klieber/phantomjs-maven-plugin/binaries";
+
+  private final File directory;
+
+  public BinaryStore(File directory) {
+    this.directory = directory;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  /**
+   * @return where the binary extracted from the given archive is kept, it may not exist yet
+   */
+  public File getBinary(PhantomJSArchive phantomJSArchive, File archive) throws IOException {
+    String executable = new File(phantomJSArchive.getExtractToPath()).getName();
+    File entry = new File(new File(directory, phantomJSArchive.getVersion()), phantomJSArchive.getClassifier());
+    return new File(new File(entry, Checksums.cachedSha256(archive)), executable);
+  }
+}
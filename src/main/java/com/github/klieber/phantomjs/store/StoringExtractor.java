@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.store;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.cache.AccessTimes;
+import com.github.klieber.phantomjs.extract.ExtractionException;
+import com.github.klieber.phantomjs.extract.Extractor;
+import com.github.klieber.phantomjs.lock.LockManager;
+import com.github.klieber.phantomjs.util.FileLinker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Extracts each archive only once per machine. The binary is extracted into the
+ * {@link BinaryStore} and linked to the requested location, so installing again after a clean
+ * build only needs a new link.
+ */
+public class StoringExtractor implements Extractor {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StoringExtractor.class);
+
+  private static final String UNABLE_TO_STORE = "Unable to install phantomjs from the binary store %s";
+  private static final String REUSING = "Reusing {} from the binary store";
+
+  private final Extractor extractor;
+  private final PhantomJSArchive phantomJSArchive;
+  private final BinaryStore binaryStore;
+  private final LockManager lockManager;
+
+  public StoringExtractor(Extractor extractor,
+                          PhantomJSArchive phantomJSArchive,
+                          BinaryStore binaryStore,
+                          LockManager lockManager) {
+    this.extractor = extractor;
+    this.phantomJSArchive = phantomJSArchive;
+    this.binaryStore = binaryStore;
+    this.lockManager = lockManager;
+  }
+
+  @Override
+  public void extract(File archive, File extractTo) throws ExtractionException {
+    try {
+      File binary = binaryStore.getBinary(phantomJSArchive, archive);
+      // held while reusing a stored binary as well, so the cache-prune goal cannot remove it
+      // between checking that it exists and linking it
+      LockManager.Lock lock = lockManager.lock(binary);
+      try {
+        if (binary.exists()) {
+          LOGGER.info(REUSING, binary);
+        } else {
+          extractor.extract(archive, binary);
+        }
+        AccessTimes.touch(binary);
+        FileLinker.link(binary, extractTo);
+      } finally {
+        lock.release();
+      }
+    } catch (IOException e) {
+      throw new ExtractionException(String.format(UNABLE_TO_STORE, binaryStore.getDirectory()), e);
+    }
+  }
+}
@@ -33,6 +33,12 @@ public class ArtifactBuilder {
   public static final String GROUP_ID = "com.github.klieber";
   public static final String ARTIFACT_ID = "phantomjs";
 
+  /**
+   * Appended to the archive classifier for the artifact holding just the extracted executable.
+   */
+  public static final String BINARY_CLASSIFIER_SUFFIX = "-bin";
+  public static final String BINARY_EXTENSION = "bin";
+
   public Artifact createArtifact(String groupId, String artifactId, PhantomJSArchive archive) {
     return new DefaultArtifact(
         groupId,
@@ -46,4 +52,18 @@ public class ArtifactBuilder {
   public Artifact createArtifact(PhantomJSArchive archive) {
     return createArtifact(GROUP_ID, ARTIFACT_ID, archive);
   }
+
+  /**
+   * Creates the artifact for the extracted executable of the archive, published with the
+   * publish-binary goal.
+   */
+  public Artifact createBinaryArtifact(PhantomJSArchive archive) {
+    return new DefaultArtifact(
+        GROUP_ID,
+        ARTIFACT_ID,
+        archive.getClassifier() + BINARY_CLASSIFIER_SUFFIX,
+        BINARY_EXTENSION,
+        archive.getVersion()
+    );
+  }
 }
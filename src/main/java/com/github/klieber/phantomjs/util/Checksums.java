@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.util;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Computes the checksums used to identify and verify archives. The SHA-256 of a file can be
+ * remembered in a small properties file next to it, which is trusted for as long as the
+ * length and modification time of the file are unchanged.
+ */
+public class Checksums {
+
+  public static final String SHA_256 = "SHA-256";
+
+  private static final String SIDECAR = ".sha256";
+
+  private static final String LENGTH = "length";
+  private static final String LAST_MODIFIED = "lastModified";
+  private static final String CHECKSUM = "sha256";
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private Checksums() {
+    // hide default constructor
+  }
+
+  /**
+   * @return a new SHA-256 digest, which every jvm is required to support
+   */
+  public static MessageDigest newSha256() {
+    try {
+      return MessageDigest.getInstance(SHA_256);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @return the lower case hex SHA-256 of the file contents
+   */
+  public static String sha256(File file) throws IOException {
+    MessageDigest digest = newSha256();
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] buffer = new byte[64 * 1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    } finally {
+      IOUtil.close(in);
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * @return the remembered SHA-256 of the file, computing and remembering it when there is none
+   *         or the file has changed since
+   */
+  public static String cachedSha256(File file) throws IOException {
+    String checksum = getRememberedSha256(file);
+    if (checksum == null) {
+      checksum = sha256(file);
+      rememberSha256(file, checksum);
+    }
+    return checksum;
+  }
+
+  /**
+   * @return the remembered SHA-256 of the file or null if there is none or the file has changed
+   */
+  public static String getRememberedSha256(File file) {
+    File sidecar = getSidecar(file);
+    if (!sidecar.isFile()) {
+      return null;
+    }
+    Properties properties = new Properties();
+    InputStream in = null;
+    try {
+      in = new FileInputStream(sidecar);
+      properties.load(in);
+    } catch (IOException e) {
+      // the checksum is simply computed again
+      return null;
+    } finally {
+      IOUtil.close(in);
+    }
+    if (String.valueOf(file.length()).equals(properties.getProperty(LENGTH))
+        && String.valueOf(file.lastModified()).equals(properties.getProperty(LAST_MODIFIED))) {
+      return properties.getProperty(CHECKSUM);
+    }
+    return null;
+  }
+
+  /**
+   * Remembers a checksum that was computed elsewhere, for example while the file was written.
+   * Failing to remember it only means it is computed again later.
+   */
+  public static void rememberSha256(File file, String checksum) {
+    Properties properties = new Properties();
+    properties.setProperty(LENGTH, String.valueOf(file.length()));
+    properties.setProperty(LAST_MODIFIED, String.valueOf(file.lastModified()));
+    properties.setProperty(CHECKSUM, checksum);
+
+    File sidecar = getSidecar(file);
+    File temp = new File(sidecar.getPath() + ".tmp");
+    OutputStream out = null;
+    try {
+      out = new FileOutputStream(temp);
+      properties.store(out, null);
+      out.close();
+      FileMover.move(temp, sidecar);
+    } catch (IOException e) {
+      IOUtil.close(out);
+      temp.delete();
+    }
+  }
+
+  public static void forgetSha256(File file) {
+    getSidecar(file).delete();
+  }
+
+  private static File getSidecar(File file) {
+    return new File(file.getPath() + SIDECAR);
+  }
+
+  public static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+      chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+    }
+    return new String(chars);
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Makes a file available at another path without copying it where the file system allows.
+ */
+public class FileLinker {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FileLinker.class);
+
+  private static final String HARD_LINKED = "Linked {} to {}";
+  private static final String COPIED = "Copied {} to {}";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private FileLinker() {
+    // hide default constructor
+  }
+
+  /**
+   * Replaces target with a hard link to source, falling back to a copy when the files are on
+   * different file systems or hard links are not supported. A symbolic link is never used, it
+   * would dangle once the source is pruned from the cache.
+   */
+  public static void link(File source, File target) throws IOException {
+    File directory = target.getAbsoluteFile().getParentFile();
+    if (!directory.exists() && !directory.mkdirs() && !directory.exists()) {
+      throw new IOException("Unable to create directory " + directory);
+    }
+    // link next to the target and move it into place so the target is replaced in one step
+    File temp = File.createTempFile(target.getName(), TEMP_SUFFIX, directory);
+    try {
+      temp.delete();
+      create(source.getAbsoluteFile().toPath(), temp.toPath());
+      FileMover.move(temp, target);
+    } finally {
+      Files.deleteIfExists(temp.toPath());
+    }
+  }
+
+  private static void create(Path source, Path link) throws IOException {
+    try {
+      Files.createLink(link, source);
+      LOGGER.debug(HARD_LINKED, link, source);
+      return;
+    } catch (UnsupportedOperationException e) {
+      // fall back to a copy
+    } catch (IOException e) {
+      // typically a different file system, fall back to a copy
+    }
+    Files.copy(source, link, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+    LOGGER.debug(COPIED, source, link);
+  }
+}
@@ -26,6 +26,15 @@ public class Predicates {
     // hide default constructor
   }
 
+  public static <E> Predicate<E> alwaysTrue() {
+    return new Predicate<E>() {
+      @Override
+      public boolean apply(E element) {
+        return true;
+      }
+    };
+  }
+
   public static <E> Predicate<E> not(final Predicate<E> predicate) {
     return new Predicate<E>() {
       @Override
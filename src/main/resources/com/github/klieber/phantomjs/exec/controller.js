@@ -0,0 +1,166 @@
+/*
+ * Controller run by every worker of the phantomjs worker pool. It listens on the loopback port
+ * given as its only argument and prints "ready" once it accepts jobs.
+ *
+ *   POST /run       the script to run followed by its arguments, one per line. The response is
+ *                   sent once the script calls phantom.exit, with the exit code in X-Exit-Code,
+ *                   the length of the standard output in X-Output-Length and a body holding
+ *                   the standard output followed by the error output.
+ *   POST /shutdown  stops the worker.
+ *
+ * Scripts see their own phantom, console and system objects so that phantom.exit ends the job
+ * rather than the worker and console output is returned with the job.
+ */
+var fs = require('fs');
+var system = require('system');
+var server = require('webserver').create();
+
+var PHANTOM_PROPERTIES = ['version', 'libraryPath', 'scriptName', 'outputEncoding', 'cookiesEnabled',
+  'cookies', 'addCookie', 'deleteCookie', 'clearCookies', 'injectJs', 'setProxy'];
+var SYSTEM_PROPERTIES = ['pid', 'platform', 'os', 'env', 'isSSLSupported', 'stdout', 'stderr', 'stdin'];
+var CONSOLE_PROPERTIES = ['log', 'info', 'debug', 'warn', 'error'];
+
+var current = null;
+
+function forward(target, names, overrides) {
+  var proxy = {};
+  var name;
+  for (name in target) {
+    if (names.indexOf(name) === -1) {
+      names = names.concat([name]);
+    }
+  }
+  names.forEach(function (name) {
+    if (!overrides.hasOwnProperty(name)) {
+      forwardProperty(proxy, target, name);
+    }
+  });
+  for (name in overrides) {
+    proxy[name] = overrides[name];
+  }
+  return proxy;
+}
+
+function forwardProperty(proxy, target, name) {
+  if (typeof target[name] === 'function') {
+    proxy[name] = function () {
+      return target[name].apply(target, arguments);
+    };
+  } else {
+    Object.defineProperty(proxy, name, {
+      enumerable: true,
+      get: function () {
+        return target[name];
+      },
+      set: function (value) {
+        target[name] = value;
+      }
+    });
+  }
+}
+
+function collect(lines) {
+  return function () {
+    lines.push(Array.prototype.join.call(arguments, ' ') + '\n');
+  };
+}
+
+function finish(job, code) {
+  if (current !== job) {
+    // a late callback of a job that has already finished
+    return;
+  }
+  current = null;
+  var output = job.output.join('');
+  var response = job.response;
+  response.statusCode = 200;
+  response.setHeader('Content-Type', 'text/plain; charset=utf-8');
+  response.setHeader('Connection', 'close');
+  response.setHeader('X-Exit-Code', String(code === undefined ? 0 : Number(code) || 0));
+  response.setHeader('X-Output-Length', String(output.length));
+  response.write(output + job.error.join(''));
+  response.close();
+}
+
+function fail(job, message, trace) {
+  var handler = job.phantom.onError;
+  if (typeof handler === 'function') {
+    handler(message, trace);
+    return;
+  }
+  job.error.push(message + '\n');
+  (trace || []).forEach(function (frame) {
+    job.error.push('  ' + (frame.file || frame.sourceURL) + ':' + frame.line +
+        (frame['function'] ? ' in ' + frame['function'] : '') + '\n');
+  });
+  // a worker must not hang on a script that never gets to call phantom.exit
+  finish(job, 1);
+}
+
+function run(lines, response) {
+  var script = fs.absolute(lines[0]);
+  var directory = script.replace(/[\\\/][^\\\/]*$/, '');
+  var job = { response: response, output: [], error: [] };
+  var jobSystem = forward(system, SYSTEM_PROPERTIES.slice(), { args: lines });
+  var jobConsole = forward(console, CONSOLE_PROPERTIES.slice(), {
+    log: collect(job.output),
+    info: collect(job.output),
+    debug: collect(job.output),
+    warn: collect(job.error),
+    error: collect(job.error)
+  });
+  job.phantom = forward(phantom, PHANTOM_PROPERTIES.slice(), {
+    args: lines.slice(1),
+    scriptName: script,
+    onError: null,
+    exit: function (code) {
+      finish(job, code);
+    }
+  });
+  var jobRequire = function (name) {
+    if (name === 'system') {
+      return jobSystem;
+    }
+    return require(name.charAt(0) === '.' ? directory + '/' + name : name);
+  };
+  current = job;
+  try {
+    var source = fs.read(script).replace(/^#!.*/, '');
+    new Function('phantom', 'require', 'console', source)(job.phantom, jobRequire, jobConsole);
+  } catch (e) {
+    fail(job, String(e), []);
+  }
+}
+
+phantom.onError = function (message, trace) {
+  if (current) {
+    fail(current, message, trace);
+  } else {
+    system.stderr.write(message + '\n');
+  }
+};
+
+var listening = server.listen('127.0.0.1:' + system.args[1], function (request, response) {
+  if (request.method === 'POST' && request.url === '/shutdown') {
+    response.statusCode = 200;
+    response.close();
+    setTimeout(function () {
+      phantom.exit(0);
+    }, 0);
+  } else if (request.method !== 'POST' || request.url !== '/run') {
+    response.statusCode = 404;
+    response.close();
+  } else if (current) {
+    response.statusCode = 503;
+    response.close();
+  } else {
+    run(String(request.postRaw || request.post || '').split('\n'), response);
+  }
+});
+
+if (listening) {
+  console.log('ready');
+} else {
+  system.stderr.write('Unable to listen on port ' + system.args[1] + '\n');
+  phantom.exit(2);
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.cache;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LocalCachedFileTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File file;
+
+  private LocalCachedFile cachedFile;
+
+  @Before
+  public void before() {
+    file = new File(temporaryFolder.getRoot(), "archive.zip");
+    cachedFile = new LocalCachedFile(file);
+  }
+
+  @Test
+  public void testGetFile() {
+    assertEquals(file, cachedFile.getFile());
+  }
+
+  @Test
+  public void shouldSaveAndLoadValidators() throws Exception {
+    cachedFile.setValidators(new CacheValidators("\"abc\"", "Tue, 15 Nov 1994 08:12:31 GMT", 123));
+
+    CacheValidators validators = new LocalCachedFile(file).getValidators();
+    assertEquals("\"abc\"", validators.getETag());
+    assertEquals("Tue, 15 Nov 1994 08:12:31 GMT", validators.getLastModified());
+    assertEquals(123, validators.getLength());
+  }
+
+  @Test
+  public void shouldReplaceValidatorsWithoutLeavingTempFiles() throws Exception {
+    cachedFile.setValidators(new CacheValidators("\"abc\"", null, 123));
+    cachedFile.setValidators(new CacheValidators("\"def\"", null, 456));
+
+    assertEquals("\"def\"", cachedFile.getValidators().getETag());
+    assertEquals(1, temporaryFolder.getRoot().list().length);
+  }
+
+  @Test
+  public void shouldAllowMissingHeaders() throws Exception {
+    cachedFile.setValidators(new CacheValidators(null, null, 5));
+
+    assertNull(cachedFile.getValidators().getETag());
+    assertNull(cachedFile.getValidators().getLastModified());
+  }
+
+  @Test
+  public void shouldReturnNullWithoutValidators() {
+    assertNull(cachedFile.getValidators());
+  }
+
+  @Test
+  public void shouldIgnoreDamagedValidators() throws Exception {
+    FileUtils.fileWrite(new File(file.getPath() + ".validators"), "length=abc");
+    assertNull(cachedFile.getValidators());
+  }
+
+  @Test
+  public void shouldRemoveValidators() throws Exception {
+    cachedFile.setValidators(new CacheValidators(null, null, 5));
+    cachedFile.setValidators(null);
+    assertNull(cachedFile.getValidators());
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(PhantomJSArchive.class)
+public class ChecksumManifestTest {
+
+  private static final String ARCHIVE_NAME = "phantomjs-1.9.7-linux-x86_64.tar.bz2";
+
+  @Mock
+  private PhantomJSArchive phantomJSArchive;
+
+  @Before
+  public void before() {
+    when(phantomJSArchive.getArchiveName()).thenReturn(ARCHIVE_NAME);
+  }
+
+  @Test
+  public void shouldReturnChecksumForArchive() {
+    Properties checksums = new Properties();
+    checksums.setProperty(ARCHIVE_NAME, " ABCDEF ");
+
+    assertEquals("abcdef", new ChecksumManifest(checksums).getChecksum(phantomJSArchive));
+  }
+
+  @Test
+  public void shouldReturnNullForUnknownArchive() {
+    assertNull(new ChecksumManifest(new Properties()).getChecksum(phantomJSArchive));
+  }
+
+  @Test
+  public void shouldLoadBundledManifest() {
+    when(phantomJSArchive.getArchiveName()).thenReturn("phantomjs-2.1.1-linux-x86_64.tar.bz2");
+
+    assertEquals("86dd9a4bf4aee45f1a84c9f61cf1947c1d6dce9b9e8d2a907105da7852460d2f", ChecksumManifest.load().getChecksum(phantomJSArchive));
+  }
+}
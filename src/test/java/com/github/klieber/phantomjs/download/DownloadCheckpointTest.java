@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DownloadCheckpointTest {
+
+  private static final String URL = "http://example.org/phantomjs.zip";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldSplitIntoRanges() {
+    DownloadCheckpoint checkpoint = DownloadCheckpoint.create(URL, 10, 3);
+
+    assertEquals(3, checkpoint.getRanges().size());
+    assertEquals(0, checkpoint.getRanges().get(0).getStart());
+    assertEquals(3, checkpoint.getRanges().get(0).getEnd());
+    assertEquals(8, checkpoint.getRanges().get(2).getStart());
+    assertEquals(9, checkpoint.getRanges().get(2).getEnd());
+    assertEquals(10, checkpoint.getRemaining());
+  }
+
+  @Test
+  public void shouldSaveAndLoad() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "checkpoint");
+    DownloadCheckpoint checkpoint = DownloadCheckpoint.create(URL, 10, 2);
+    checkpoint.getRanges().get(0).advance(5);
+    checkpoint.getRanges().get(1).advance(2);
+    checkpoint.save(file);
+
+    DownloadCheckpoint loaded = DownloadCheckpoint.load(file);
+
+    assertTrue(loaded.matches(URL, 10, null));
+    assertFalse(loaded.matches(URL, 11, null));
+    assertTrue(loaded.getRanges().get(0).isComplete());
+    assertEquals(7, loaded.getRanges().get(1).getPosition());
+    assertEquals(3, loaded.getRemaining());
+  }
+
+  @Test
+  public void shouldKeepValidator() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "checkpoint");
+    DownloadCheckpoint.create(URL, 10, "\"v1\"", 2).save(file);
+
+    DownloadCheckpoint loaded = DownloadCheckpoint.load(file);
+
+    assertTrue(loaded.matches(URL, 10, "\"v1\""));
+    assertFalse(loaded.matches(URL, 10, "\"v2\""));
+    assertFalse(loaded.matches(URL, 10, null));
+  }
+
+  @Test
+  public void shouldNotFollowWritesAfterSnapshot() {
+    DownloadCheckpoint checkpoint = DownloadCheckpoint.create(URL, 10, 2);
+    checkpoint.getRanges().get(0).advance(2);
+
+    DownloadCheckpoint snapshot = checkpoint.snapshot();
+    checkpoint.getRanges().get(0).advance(3);
+
+    assertEquals(2, snapshot.getRanges().get(0).getPosition());
+    assertEquals(8, snapshot.getRemaining());
+  }
+
+  @Test
+  public void shouldIgnoreMissingCheckpoint() {
+    assertNull(DownloadCheckpoint.load(new File(temporaryFolder.getRoot(), "missing")));
+  }
+
+  @Test
+  public void shouldIgnoreDamagedCheckpoint() throws Exception {
+    File file = temporaryFolder.newFile("checkpoint");
+    assertNull(DownloadCheckpoint.load(file));
+  }
+}
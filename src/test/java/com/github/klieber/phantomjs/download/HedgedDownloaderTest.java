@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.util.Predicate;
+import com.github.klieber.phantomjs.util.Predicates;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.File;
+import java.net.HttpURLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.googlecode.catchexception.CatchException.catchException;
+import static com.googlecode.catchexception.CatchException.caughtException;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(PhantomJSArchive.class)
+@PowerMockIgnore("com.sun.net.httpserver.*")
+public class HedgedDownloaderTest {
+
+  private static final String VERSION = "1.9.7";
+  private static final long HEDGE_DELAY = 100;
+
+  private static final Predicate<String> NEVER = Predicates.not(Predicates.<String>alwaysTrue());
+
+  @Mock
+  private PhantomJSArchive phantomJSArchive;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private StubHttpServer primary;
+
+  private StubHttpServer secondary;
+
+  private File file;
+
+  private Map<WebDownloader, Predicate<String>> rules;
+
+  private MirrorStatistics statistics;
+
+  @Before
+  public void before() throws Exception {
+    primary = new StubHttpServer();
+    primary.setContent(new byte[100]);
+    secondary = new StubHttpServer();
+    secondary.setContent(new byte[200]);
+
+    file = new File(temporaryFolder.getRoot(), "file.zip");
+    rules = new LinkedHashMap<WebDownloader, Predicate<String>>();
+    statistics = new MirrorStatistics(null);
+
+    when(phantomJSArchive.getArchiveName()).thenReturn("file.zip");
+    when(phantomJSArchive.getVersion()).thenReturn(VERSION);
+  }
+
+  @After
+  public void after() {
+    primary.stop();
+    secondary.stop();
+  }
+
+  @Test
+  public void shouldUsePreferredSource() throws Exception {
+    addSources(Predicates.<String>alwaysTrue());
+
+    assertEquals(file, new HedgedDownloader(rules, HEDGE_DELAY, statistics).download(phantomJSArchive));
+    assertEquals(100, file.length());
+  }
+
+  @Test
+  public void shouldHedgeWhenPreferredSourceIsSlow() throws Exception {
+    primary.setDelay(5000);
+    addSources(Predicates.<String>alwaysTrue());
+
+    long start = System.currentTimeMillis();
+    new HedgedDownloader(rules, HEDGE_DELAY, statistics).download(phantomJSArchive);
+
+    assertEquals(200, file.length());
+    assertTrue(System.currentTimeMillis() - start < 5000);
+  }
+
+  @Test
+  public void shouldFallBackWhenPreferredSourceFails() throws Exception {
+    primary.setStatus(HttpURLConnection.HTTP_NOT_FOUND);
+    addSources(Predicates.<String>alwaysTrue());
+
+    new HedgedDownloader(rules, 10000, statistics).download(phantomJSArchive);
+
+    assertEquals(200, file.length());
+  }
+
+  @Test
+  public void shouldSkipIneligibleSources() throws Exception {
+    addSources(NEVER);
+
+    new HedgedDownloader(rules, HEDGE_DELAY, statistics).download(phantomJSArchive);
+
+    assertEquals(200, file.length());
+  }
+
+  @Test
+  public void shouldFailWhenAllSourcesFail() throws Exception {
+    primary.setStatus(HttpURLConnection.HTTP_NOT_FOUND);
+    secondary.setStatus(HttpURLConnection.HTTP_NOT_FOUND);
+    addSources(Predicates.<String>alwaysTrue());
+
+    catchException(new HedgedDownloader(rules, HEDGE_DELAY, statistics)).download(phantomJSArchive);
+    assertThat(caughtException(), is(instanceOf(DownloadException.class)));
+  }
+
+  @Test
+  public void shouldFailWhenNoSourceMatches() throws Exception {
+    rules.put(new WebDownloader(primary.getBaseUrl(), file), NEVER);
+
+    catchException(new HedgedDownloader(rules, HEDGE_DELAY, statistics)).download(phantomJSArchive);
+    assertThat(caughtException(), is(instanceOf(DownloadException.class)));
+  }
+
+  @Test
+  public void shouldPreferFasterSource() throws Exception {
+    statistics.recordSuccess(primary.getBaseUrl(), new TransferStatistics(1000, 500, 5000));
+    statistics.recordSuccess(secondary.getBaseUrl(), new TransferStatistics(1000, 10, 100));
+    addSources(Predicates.<String>alwaysTrue());
+
+    new HedgedDownloader(rules, 10000, statistics).download(phantomJSArchive);
+
+    assertEquals(200, file.length());
+  }
+
+  @Test
+  public void shouldRecordSourcePerformance() throws Exception {
+    primary.setStatus(HttpURLConnection.HTTP_NOT_FOUND);
+    addSources(Predicates.<String>alwaysTrue());
+
+    new HedgedDownloader(rules, 10000, statistics).download(phantomJSArchive);
+
+    // the failed source is now tried after the one that worked
+    assertTrue(statistics.compare(secondary.getBaseUrl(), primary.getBaseUrl()) < 0);
+  }
+
+  private void addSources(Predicate<String> primaryRule) {
+    rules.put(new WebDownloader(primary.getBaseUrl(), file), primaryRule);
+    rules.put(new WebDownloader(secondary.getBaseUrl(), file), Predicates.<String>alwaysTrue());
+  }
+}
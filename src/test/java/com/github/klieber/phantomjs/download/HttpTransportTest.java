@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.eclipse.aether.ConfigurationProperties;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.repository.Proxy;
+import org.eclipse.aether.util.repository.AuthenticationBuilder;
+import org.eclipse.aether.util.repository.DefaultProxySelector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Authenticator;
+import java.net.InetAddress;
+import java.net.PasswordAuthentication;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HttpTransportTest {
+
+  private static final byte[] CONTENT = "content".getBytes();
+
+  private StubHttpServer server;
+
+  private DefaultRepositorySystemSession session;
+
+  @Before
+  public void before() throws Exception {
+    server = new StubHttpServer();
+    server.setContent(CONTENT);
+    session = new DefaultRepositorySystemSession();
+  }
+
+  @After
+  public void after() {
+    server.stop();
+  }
+
+  @Test
+  public void shouldShareTransportWithinSession() {
+    assertSame(HttpTransport.forSession(session), HttpTransport.forSession(session));
+  }
+
+  @Test
+  public void shouldApplySessionTimeouts() throws Exception {
+    session.setConfigProperty(ConfigurationProperties.CONNECT_TIMEOUT, 1234);
+    session.setConfigProperty(ConfigurationProperties.REQUEST_TIMEOUT, 5678);
+
+    URLConnection connection = HttpTransport.forSession(session).openConnection(new URL(server.getBaseUrl()));
+
+    assertEquals(1234, connection.getConnectTimeout());
+    assertEquals(5678, connection.getReadTimeout());
+  }
+
+  @Test
+  public void shouldConnectDirectlyWithoutProxy() throws Exception {
+    URLConnection connection = HttpTransport.forSession(session).openConnection(new URL(server.getBaseUrl()));
+
+    assertArrayEquals(CONTENT, read(connection));
+    assertNull(server.getRequestHeader("Proxy-Authorization"));
+  }
+
+  @Test
+  public void shouldUseSessionProxy() throws Exception {
+    URL serverUrl = new URL(server.getBaseUrl());
+    DefaultProxySelector proxySelector = new DefaultProxySelector();
+    proxySelector.add(new Proxy(Proxy.TYPE_HTTP, serverUrl.getHost(), serverUrl.getPort(),
+        new AuthenticationBuilder().addUsername("user").addPassword("secret").build()), null);
+    session.setProxySelector(proxySelector);
+
+    // the stub server answers every request so it can stand in for the proxy
+    URLConnection connection = HttpTransport.forSession(session).openConnection(new URL("http://phantomjs.invalid/file.zip"));
+
+    assertArrayEquals(CONTENT, read(connection));
+    assertEquals("Basic dXNlcjpzZWNyZXQ=", server.getRequestHeader("Proxy-Authorization"));
+  }
+
+  @Test
+  public void shouldLeaveTunnelToDefaultAuthenticator() throws Exception {
+    final ServerSocket proxyServer = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+    final List<String> connects = Collections.synchronizedList(new ArrayList<String>());
+    Thread proxy = new Thread() {
+      @Override
+      public void run() {
+        serveConnects(proxyServer, connects);
+      }
+    };
+    proxy.setDaemon(true);
+    proxy.start();
+    // stands in for the authenticator maven or another plugin installed
+    Authenticator.setDefault(new Authenticator() {
+      @Override
+      protected PasswordAuthentication getPasswordAuthentication() {
+        return new PasswordAuthentication("maven-user", "secret".toCharArray());
+      }
+    });
+    try {
+      DefaultProxySelector proxySelector = new DefaultProxySelector();
+      proxySelector.add(new Proxy(Proxy.TYPE_HTTP, "127.0.0.1", proxyServer.getLocalPort(),
+          new AuthenticationBuilder().addUsername("tunnel-user").addPassword("secret").build()), null);
+      session.setProxySelector(proxySelector);
+
+      URLConnection connection = HttpTransport.forSession(session).openConnection(new URL("https://phantomjs.invalid/file.zip"));
+      try {
+        read(connection);
+      } catch (IOException e) {
+        // the stub proxy closes the tunnel instead of relaying the tls handshake
+      }
+    } finally {
+      Authenticator.setDefault(null);
+      proxyServer.close();
+    }
+
+    // headers set on the connection never reach the CONNECT and the default authenticator stays
+    assertEquals(2, connects.size());
+    assertNull(connects.get(0));
+    assertTrue(connects.get(1).startsWith("Digest username=\"maven-user\""));
+  }
+
+  /**
+   * Challenges every CONNECT without credentials and accepts the first one that has them.
+   */
+  private void serveConnects(ServerSocket proxyServer, List<String> connects) {
+    try {
+      while (true) {
+        Socket socket = proxyServer.accept();
+        try {
+          BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+          OutputStream out = socket.getOutputStream();
+          String line;
+          while ((line = reader.readLine()) != null) {
+            String authorization = null;
+            while ((line = reader.readLine()) != null && line.length() > 0) {
+              if (line.toLowerCase().startsWith("proxy-authorization:")) {
+                authorization = line.substring(line.indexOf(':') + 1).trim();
+              }
+            }
+            connects.add(authorization);
+            if (authorization == null) {
+              out.write(("HTTP/1.1 407 Proxy Authentication Required\r\n"
+                  + "Proxy-Authenticate: Digest realm=\"proxy\", nonce=\"0123456789\", qop=\"auth\"\r\n"
+                  + "Content-Length: 0\r\n\r\n").getBytes("US-ASCII"));
+              out.flush();
+            } else {
+              out.write("HTTP/1.1 200 Connection established\r\n\r\n".getBytes("US-ASCII"));
+              out.flush();
+              return;
+            }
+          }
+        } finally {
+          socket.close();
+        }
+      }
+    } catch (IOException e) {
+      // the test closed the proxy
+    }
+  }
+
+  private byte[] read(URLConnection connection) throws Exception {
+    InputStream in = connection.getInputStream();
+    try {
+      return IOUtil.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+}
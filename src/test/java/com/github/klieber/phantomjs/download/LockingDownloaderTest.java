@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.cache.LocalCachedFile;
+import com.github.klieber.phantomjs.lock.LockManager;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.googlecode.catchexception.CatchException.catchException;
+import static com.googlecode.catchexception.CatchException.caughtException;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(PhantomJSArchive.class)
+public class LockingDownloaderTest {
+
+  @Mock
+  private PhantomJSArchive phantomJSArchive;
+
+  @Mock
+  private Downloader downloader;
+
+  @Mock
+  private LockManager lockManager;
+
+  @Mock
+  private LockManager.Lock lock;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File file;
+
+  private LockingDownloader lockingDownloader;
+
+  @Before
+  public void before() throws Exception {
+    file = new File(temporaryFolder.getRoot(), "archive.zip");
+    lockingDownloader = new LockingDownloader(downloader, new LocalCachedFile(file), lockManager);
+    when(lockManager.lock(file)).thenReturn(lock);
+  }
+
+  @Test
+  public void shouldDownloadWhileHoldingLock() throws Exception {
+    when(downloader.download(phantomJSArchive)).thenAnswer(new Answer<File>() {
+      @Override
+      public File answer(InvocationOnMock invocation) throws Throwable {
+        verify(lockManager).lock(file);
+        return file;
+      }
+    });
+
+    assertSame(file, lockingDownloader.download(phantomJSArchive));
+    verify(lock).release();
+  }
+
+  @Test
+  public void shouldReleaseLockWhenDownloadFails() throws Exception {
+    DownloadException exception = new DownloadException("error");
+    when(downloader.download(phantomJSArchive)).thenThrow(exception);
+
+    catchException(lockingDownloader).download(phantomJSArchive);
+
+    assertSame(exception, caughtException());
+    verify(lock).release();
+  }
+
+  @Test
+  public void shouldFailWhenLockIsUnavailable() throws Exception {
+    when(lockManager.lock(file)).thenThrow(new IOException("error"));
+
+    catchException(lockingDownloader).download(phantomJSArchive);
+
+    assertTrue(caughtException() instanceof DownloadException);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MirrorStatisticsTest {
+
+  private static final String FAST = "https://fast.example.com/";
+  private static final String SLOW = "https://slow.example.com/";
+  private static final String UNKNOWN = "https://unknown.example.com/";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File file;
+
+  private MirrorStatistics statistics;
+
+  @Before
+  public void before() {
+    file = new File(temporaryFolder.getRoot(), "stats/mirrors.properties");
+    statistics = new MirrorStatistics(file);
+  }
+
+  @Test
+  public void shouldRankFasterMirrorFirst() {
+    statistics.recordSuccess(SLOW, new TransferStatistics(1024 * 1024, 800, 10000));
+    statistics.recordSuccess(FAST, new TransferStatistics(1024 * 1024, 50, 500));
+
+    assertEquals(Arrays.asList(FAST, SLOW), rank(SLOW, FAST));
+  }
+
+  @Test
+  public void shouldRankUnknownMirrorsAfterHealthyOnes() {
+    statistics.recordSuccess(SLOW, new TransferStatistics(1024 * 1024, 800, 10000));
+
+    assertEquals(Arrays.asList(SLOW, UNKNOWN), rank(UNKNOWN, SLOW));
+  }
+
+  @Test
+  public void shouldRankFailingMirrorsLast() {
+    statistics.recordSuccess(FAST, new TransferStatistics(1024 * 1024, 50, 500));
+    statistics.recordFailure(FAST);
+    statistics.recordFailure(FAST);
+    statistics.recordFailure(FAST);
+
+    assertEquals(Arrays.asList(UNKNOWN, FAST), rank(FAST, UNKNOWN));
+  }
+
+  @Test
+  public void shouldKeepOrderOfUnknownMirrors() {
+    assertEquals(Arrays.asList(SLOW, FAST), rank(SLOW, FAST));
+  }
+
+  @Test
+  public void shouldPersistStatistics() {
+    statistics.recordSuccess(SLOW, new TransferStatistics(1024 * 1024, 800, 10000));
+    statistics.recordSuccess(FAST, new TransferStatistics(1024 * 1024, 50, 500));
+    statistics.save();
+
+    MirrorStatistics loaded = new MirrorStatistics(file);
+    assertTrue(loaded.compare(FAST, SLOW) < 0);
+    assertTrue(loaded.compare(SLOW, UNKNOWN) < 0);
+  }
+
+  @Test
+  public void shouldMergeStatisticsOfConcurrentBuilds() {
+    MirrorStatistics other = new MirrorStatistics(file);
+    statistics.recordSuccess(SLOW, new TransferStatistics(1024 * 1024, 800, 10000));
+    other.recordSuccess(FAST, new TransferStatistics(1024 * 1024, 50, 500));
+    statistics.save();
+    other.save();
+
+    MirrorStatistics loaded = new MirrorStatistics(file);
+    assertTrue(loaded.compare(FAST, SLOW) < 0);
+    assertTrue(loaded.compare(SLOW, UNKNOWN) < 0);
+    for (String name : file.getParentFile().list()) {
+      assertFalse(name, name.endsWith(".tmp"));
+    }
+  }
+
+  @Test
+  public void shouldIgnoreDamagedStatistics() throws Exception {
+    file.getParentFile().mkdirs();
+    FileUtils.fileWrite(file, "https\\://fast.example.com/.reliability=abc");
+
+    assertEquals(0, new MirrorStatistics(file).compare(FAST, SLOW));
+  }
+
+  private List<String> rank(String... mirrors) {
+    List<String> ranked = new ArrayList<String>(Arrays.asList(mirrors));
+    Collections.sort(ranked, statistics);
+    return ranked;
+  }
+}
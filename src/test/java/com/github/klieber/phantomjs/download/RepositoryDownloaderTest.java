@@ -40,6 +40,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -47,8 +48,11 @@ import static com.googlecode.catchexception.CatchException.catchException;
 import static com.googlecode.catchexception.CatchException.caughtException;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.when;
 
@@ -71,9 +75,15 @@ public class RepositoryDownloaderTest {
   @Mock
   private PhantomJSArchive phantomJSArchive;
 
+  @Mock
+  private PhantomJSArchive otherArchive;
+
   @Captor
   private ArgumentCaptor<ArtifactRequest> artifactRequestCaptor;
 
+  @Captor
+  private ArgumentCaptor<List<ArtifactRequest>> artifactRequestsCaptor;
+
   @Mock
   private ArtifactResult artifactResult;
 
@@ -83,6 +93,15 @@ public class RepositoryDownloaderTest {
   @Mock
   private File archiveFile;
 
+  @Mock
+  private ArtifactResult otherResult;
+
+  @Mock
+  private Artifact otherArtifact;
+
+  @Mock
+  private File otherFile;
+
   @InjectMocks
   private RepositoryDownloader repositoryDownloader;
 
@@ -100,6 +119,26 @@ public class RepositoryDownloaderTest {
     assertSame(remoteRepositories, request.getRepositories());
   }
 
+  @Test
+  public void shouldDownloadBinary() throws DownloadException, ArtifactResolutionException {
+    when(artifactBuilder.createBinaryArtifact(phantomJSArchive)).thenReturn(artifact);
+    when(repositorySystem.resolveArtifact(same(repositorySystemSession), artifactRequestCaptor.capture())).thenReturn(artifactResult);
+    when(artifactResult.getArtifact()).thenReturn(artifact);
+    when(artifact.getFile()).thenReturn(archiveFile);
+
+    assertSame(archiveFile, repositoryDownloader.downloadBinary(phantomJSArchive));
+    assertSame(artifact, artifactRequestCaptor.getValue().getArtifact());
+  }
+
+  @Test
+  public void shouldFailWhenBinaryIsNotAvailable() throws DownloadException, ArtifactResolutionException {
+    when(artifactBuilder.createBinaryArtifact(phantomJSArchive)).thenReturn(artifact);
+    when(repositorySystem.resolveArtifact(same(repositorySystemSession), artifactRequestCaptor.capture())).thenThrow(new ArtifactResolutionException(Collections.<ArtifactResult>emptyList()));
+
+    catchException(repositoryDownloader).downloadBinary(phantomJSArchive);
+    assertThat(caughtException(), is(instanceOf(DownloadException.class)));
+  }
+
   @Test
   public void shouldHandleArtifactResolutionException() throws DownloadException, ArtifactResolutionException {
     when(artifactBuilder.createArtifact(phantomJSArchive)).thenReturn(artifact);
@@ -108,4 +147,56 @@ public class RepositoryDownloaderTest {
     catchException(repositoryDownloader).download(phantomJSArchive);
     assertThat(caughtException(), is(instanceOf(DownloadException.class)));
   }
+
+  @Test
+  public void shouldDownloadAllInOneRequest() throws DownloadException, ArtifactResolutionException {
+    when(artifactBuilder.createArtifact(phantomJSArchive)).thenReturn(artifact);
+    when(artifactBuilder.createArtifact(otherArchive)).thenReturn(otherArtifact);
+    when(repositorySystem.resolveArtifacts(same(repositorySystemSession), artifactRequestsCaptor.capture())).thenReturn(Arrays.asList(artifactResult, otherResult));
+    when(artifactResult.isResolved()).thenReturn(true);
+    when(artifactResult.getArtifact()).thenReturn(artifact);
+    when(artifact.getFile()).thenReturn(archiveFile);
+    when(otherResult.isResolved()).thenReturn(true);
+    when(otherResult.getArtifact()).thenReturn(otherArtifact);
+    when(otherArtifact.getFile()).thenReturn(otherFile);
+
+    List<DownloadResult> results = repositoryDownloader.downloadAll(Arrays.asList(phantomJSArchive, otherArchive));
+
+    assertEquals(2, results.size());
+    assertSame(phantomJSArchive, results.get(0).getArchive());
+    assertSame(archiveFile, results.get(0).getFile());
+    assertSame(otherArchive, results.get(1).getArchive());
+    assertSame(otherFile, results.get(1).getFile());
+
+    List<ArtifactRequest> requests = artifactRequestsCaptor.getValue();
+    assertEquals(2, requests.size());
+    assertSame(artifact, requests.get(0).getArtifact());
+    assertSame(otherArtifact, requests.get(1).getArtifact());
+    assertSame(remoteRepositories, requests.get(1).getRepositories());
+  }
+
+  @Test
+  public void shouldReportFailuresIndividually() throws DownloadException, ArtifactResolutionException {
+    Exception cause = new Exception("not found");
+    when(artifactBuilder.createArtifact(phantomJSArchive)).thenReturn(artifact);
+    when(artifactBuilder.createArtifact(otherArchive)).thenReturn(otherArtifact);
+    when(artifact.getFile()).thenReturn(archiveFile);
+
+    ArtifactResult resolved = new ArtifactResult(new ArtifactRequest(artifact, null, null));
+    resolved.setArtifact(artifact);
+    ArtifactResult missing = new ArtifactResult(new ArtifactRequest(otherArtifact, null, null));
+    missing.addException(cause);
+    ArtifactResolutionException exception = new ArtifactResolutionException(Arrays.asList(resolved, missing));
+    when(repositorySystem.resolveArtifacts(same(repositorySystemSession), artifactRequestsCaptor.capture())).thenThrow(exception);
+
+    List<DownloadResult> results = repositoryDownloader.downloadAll(Arrays.asList(phantomJSArchive, otherArchive));
+
+    assertTrue(results.get(0).isSuccessful());
+    assertSame(archiveFile, results.get(0).getFile());
+    assertFalse(results.get(1).isSuccessful());
+    assertSame(cause, results.get(1).getException().getCause());
+
+    catchException(results.get(1)).getFile();
+    assertSame(results.get(1).getException(), caughtException());
+  }
 }
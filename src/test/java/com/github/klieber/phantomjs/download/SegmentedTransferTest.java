@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+
+import static com.googlecode.catchexception.CatchException.catchException;
+import static com.googlecode.catchexception.CatchException.caughtException;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedTransferTest {
+
+  private static final int LENGTH = 1000;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private StubHttpServer server;
+
+  private File file;
+
+  private File checkpointFile;
+
+  private URL url;
+
+  @Before
+  public void before() throws Exception {
+    server = new StubHttpServer();
+    server.setContent(new byte[LENGTH]);
+    file = temporaryFolder.newFile("archive.zip");
+    checkpointFile = new File(temporaryFolder.getRoot(), "archive.zip.part.checkpoint");
+    url = new URL(server.getBaseUrl());
+  }
+
+  @After
+  public void after() {
+    server.stop();
+  }
+
+  @Test
+  public void shouldRequestEachSegment() throws Exception {
+    server.setAcceptRanges(true);
+
+    new SegmentedTransfer(HttpTransport.DEFAULT, url, DownloadCheckpoint.create(server.getBaseUrl(), LENGTH, 3), checkpointFile).transferTo(file);
+
+    assertEquals(LENGTH, file.length());
+    assertEquals(3, server.getRanges().size());
+    assertFalse(checkpointFile.exists());
+  }
+
+  @Test
+  public void shouldSkipCompletedSegments() throws Exception {
+    server.setAcceptRanges(true);
+    server.setFailAfter(LENGTH / 2 - 1);
+
+    DownloadCheckpoint checkpoint = DownloadCheckpoint.create(server.getBaseUrl(), LENGTH, 2);
+    catchException(new SegmentedTransfer(HttpTransport.DEFAULT, url, checkpoint, checkpointFile)).transferTo(file);
+    assertThat(caughtException(), is(instanceOf(IOException.class)));
+    assertTrue(checkpointFile.exists());
+
+    server.setFailAfter(-1);
+    new SegmentedTransfer(HttpTransport.DEFAULT, url, DownloadCheckpoint.load(checkpointFile), checkpointFile).transferTo(file);
+
+    assertEquals(LENGTH, file.length());
+    // at least the segment that failed first resumes where it stopped
+    List<String> resumed = server.getRanges().subList(2, server.getRanges().size());
+    assertTrue(resumed.contains("bytes=499-499") || resumed.contains("bytes=999-999"));
+  }
+
+  @Test
+  public void shouldFailWhenFileChangedOnServer() throws Exception {
+    server.setAcceptRanges(true);
+    server.setETag("\"v2\"");
+    DownloadCheckpoint checkpoint = DownloadCheckpoint.create(server.getBaseUrl(), LENGTH, "\"v1\"", 2);
+
+    catchException(new SegmentedTransfer(HttpTransport.DEFAULT, url, checkpoint, checkpointFile)).transferTo(file);
+
+    assertThat(caughtException(), is(instanceOf(IOException.class)));
+    assertEquals(LENGTH, checkpoint.getRemaining());
+  }
+
+  @Test
+  public void shouldFailWhenRangesAreIgnored() throws Exception {
+    SegmentedTransfer transfer = new SegmentedTransfer(HttpTransport.DEFAULT, url, DownloadCheckpoint.create(server.getBaseUrl(), LENGTH, 2), checkpointFile);
+
+    catchException(transfer).transferTo(file);
+    assertThat(caughtException(), is(instanceOf(IOException.class)));
+  }
+}
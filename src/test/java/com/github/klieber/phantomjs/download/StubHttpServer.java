@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal local http server standing in for the phantomjs download sites.
+ */
+public class StubHttpServer {
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final List<String> ranges;
+
+  private volatile byte[] content;
+  private volatile boolean acceptRanges;
+  private volatile int status;
+  private volatile long failAfter;
+  private volatile long delay;
+  private volatile String etag;
+  private final AtomicInteger requests;
+  private volatile Headers requestHeaders;
+
+  public StubHttpServer() throws IOException {
+    this.ranges = Collections.synchronizedList(new ArrayList<String>());
+    this.requests = new AtomicInteger();
+    this.content = new byte[0];
+    this.status = HttpURLConnection.HTTP_OK;
+    this.failAfter = -1;
+    this.executor = Executors.newCachedThreadPool();
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    this.server.createContext("/", new ContentHandler());
+    this.server.setExecutor(executor);
+    this.server.start();
+  }
+
+  public String getBaseUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+  }
+
+  public void setContent(byte[] content) {
+    this.content = content;
+  }
+
+  public void setAcceptRanges(boolean acceptRanges) {
+    this.acceptRanges = acceptRanges;
+  }
+
+  public void setStatus(int status) {
+    this.status = status;
+  }
+
+  /**
+   * Drops every connection after the given number of body bytes, -1 disables the failure.
+   */
+  public void setFailAfter(long failAfter) {
+    this.failAfter = failAfter;
+  }
+
+  /**
+   * Waits the given number of milliseconds before answering each request.
+   */
+  public void setDelay(long delay) {
+    this.delay = delay;
+  }
+
+  /**
+   * Sends the given entity tag and answers matching conditional requests with 304.
+   */
+  public void setETag(String etag) {
+    this.etag = etag;
+  }
+
+  /**
+   * Returns a header of the most recent request.
+   */
+  public String getRequestHeader(String name) {
+    return requestHeaders == null ? null : requestHeaders.getFirst(name);
+  }
+
+  public int getRequestCount() {
+    return requests.get();
+  }
+
+  public List<String> getRanges() {
+    synchronized (ranges) {
+      return new ArrayList<String>(ranges);
+    }
+  }
+
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private class ContentHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      requests.incrementAndGet();
+      requestHeaders = exchange.getRequestHeaders();
+      try {
+        if (delay > 0) {
+          try {
+            Thread.sleep(delay);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+        if (status != HttpURLConnection.HTTP_OK) {
+          exchange.sendResponseHeaders(status, -1);
+          return;
+        }
+
+        if (etag != null) {
+          exchange.getResponseHeaders().set("ETag", etag);
+          if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            return;
+          }
+        }
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (ifRange != null && !ifRange.equals(etag)) {
+          // the client holds another version, so it gets the whole file
+          range = null;
+        }
+        byte[] body = content;
+        long start = 0;
+        long end = body.length - 1;
+        int code = HttpURLConnection.HTTP_OK;
+
+        if (acceptRanges) {
+          exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+          if (range != null) {
+            ranges.add(range);
+            String[] bounds = range.substring("bytes=".length()).split("-", -1);
+            start = Long.parseLong(bounds[0]);
+            if (bounds[1].length() > 0) {
+              end = Math.min(end, Long.parseLong(bounds[1]));
+            }
+            code = HttpURLConnection.HTTP_PARTIAL;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + body.length);
+          }
+        }
+
+        long length = end - start + 1;
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+          exchange.getResponseHeaders().set("Content-Length", String.valueOf(length));
+          exchange.sendResponseHeaders(code, -1);
+          return;
+        }
+        exchange.sendResponseHeaders(code, length);
+        OutputStream out = exchange.getResponseBody();
+        if (failAfter >= 0 && failAfter < length) {
+          out.write(body, (int) start, (int) failAfter);
+          out.flush();
+          // closing the exchange before the declared length was sent aborts the connection
+          return;
+        }
+        out.write(body, (int) start, (int) length);
+        out.close();
+      } finally {
+        exchange.close();
+      }
+    }
+  }
+}
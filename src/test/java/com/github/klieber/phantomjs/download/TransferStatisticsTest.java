@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TransferStatisticsTest {
+
+  @Test
+  public void shouldCalculateThroughput() {
+    assertEquals(2048, new TransferStatistics(4096, 10, 2000).getThroughput());
+  }
+
+  @Test
+  public void shouldHandleInstantTransfer() {
+    assertEquals(1024000, new TransferStatistics(1024, 0, 0).getThroughput());
+  }
+
+  @Test
+  public void shouldSummarize() {
+    assertEquals("4.0 KB in 2.00 s (2.0 KB/s, first byte after 10 ms)", new TransferStatistics(4096, 10, 2000).toString());
+  }
+}
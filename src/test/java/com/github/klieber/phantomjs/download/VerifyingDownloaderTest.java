@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.download;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.util.Checksums;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static com.googlecode.catchexception.CatchException.catchException;
+import static com.googlecode.catchexception.CatchException.caughtException;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(PhantomJSArchive.class)
+public class VerifyingDownloaderTest {
+
+  // sha-256 of "abc"
+  private static final String CHECKSUM = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Mock
+  private PhantomJSArchive phantomJSArchive;
+
+  @Mock
+  private Downloader downloader;
+
+  private File file;
+
+  @Before
+  public void before() {
+    file = new File(temporaryFolder.getRoot(), "archive.zip");
+  }
+
+  @Test
+  public void shouldAcceptMatchingArchive() throws Exception {
+    downloads("abc");
+
+    assertSame(file, new VerifyingDownloader(downloader, CHECKSUM.toUpperCase()).download(phantomJSArchive));
+    verify(downloader, times(1)).download(phantomJSArchive);
+  }
+
+  @Test
+  public void shouldDownloadDamagedArchiveAgain() throws Exception {
+    downloads("abd", "abc");
+
+    assertSame(file, new VerifyingDownloader(downloader, CHECKSUM).download(phantomJSArchive));
+    assertEquals("abc", FileUtils.fileRead(file));
+    verify(downloader, times(2)).download(phantomJSArchive);
+  }
+
+  @Test
+  public void shouldRejectArchiveThatNeverMatches() throws Exception {
+    downloads("abd", "abd");
+
+    catchException(new VerifyingDownloader(downloader, CHECKSUM)).download(phantomJSArchive);
+
+    assertThat(caughtException(), is(instanceOf(DownloadException.class)));
+    assertFalse(file.exists());
+    assertFalse(new File(file.getPath() + ".sha256").exists());
+  }
+
+  @Test
+  public void shouldTrustRememberedChecksum() throws Exception {
+    downloads("abd");
+    FileUtils.fileWrite(file, "abd");
+    Checksums.rememberSha256(file, CHECKSUM);
+
+    assertSame(file, new VerifyingDownloader(downloader, CHECKSUM).download(phantomJSArchive));
+  }
+
+  private void downloads(String... contents) throws Exception {
+    final Iterator<String> iterator = Arrays.asList(contents).iterator();
+    when(downloader.download(phantomJSArchive)).thenAnswer(new Answer<File>() {
+      @Override
+      public File answer(InvocationOnMock invocation) throws Throwable {
+        if (!file.exists()) {
+          FileUtils.fileWrite(file, iterator.next());
+        }
+        return file;
+      }
+    });
+  }
+}
@@ -21,94 +21,403 @@
 package com.github.klieber.phantomjs.download;
 
 import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.cache.LocalCachedFile;
+import com.github.klieber.phantomjs.util.Checksums;
 import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import static com.googlecode.catchexception.CatchException.catchException;
 import static com.googlecode.catchexception.CatchException.caughtException;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
-import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
-import static org.powermock.api.mockito.PowerMockito.*;
 
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({PhantomJSArchive.class,FileUtils.class})
+@PrepareForTest(PhantomJSArchive.class)
+@PowerMockIgnore("com.sun.net.httpserver.*")
 public class WebDownloaderTest {
 
-  private static final String BASE_URL = "http://example.org";
   private static final String FILE_PATH = "file.zip";
 
+  private static final int SEGMENTS = 4;
+
   @Mock
   private PhantomJSArchive phantomJSArchive;
 
-  @Mock
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private StubHttpServer server;
+
   private File file;
 
+  private byte[] content;
+
   private WebDownloader downloader;
 
   @Before
-  public void before() {
-    mockStatic(FileUtils.class);
-    downloader = new WebDownloader(BASE_URL, file);
+  public void before() throws Exception {
+    server = new StubHttpServer();
+    file = new File(temporaryFolder.getRoot(), "cache/" + FILE_PATH);
+    content = new byte[3 * 1024 * 1024 + 17];
+    new Random(42).nextBytes(content);
+    server.setContent(content);
+    downloader = new WebDownloader(server.getBaseUrl(), file, SEGMENTS);
+    when(phantomJSArchive.getArchiveName()).thenReturn(FILE_PATH);
+  }
+
+  @After
+  public void after() {
+    server.stop();
   }
 
   @Test
   public void shouldDownload() throws Exception {
-    when(phantomJSArchive.getArchiveName()).thenReturn(FILE_PATH);
-    when(file.length()).thenReturn(100L);
+    assertSame(file, downloader.download(phantomJSArchive));
+    assertArrayEquals(content, readFile());
+  }
+
+  @Test
+  public void shouldNotReplaceTargetPublishedDuringDownload() throws Exception {
+    server.setDelay(500);
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+          file.getParentFile().mkdirs();
+          FileUtils.fileWrite(file.getPath(), "other");
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    };
+    writer.start();
 
     downloader.download(phantomJSArchive);
+    writer.join();
 
-    verifyStatic();
-    FileUtils.copyURLToFile(any(URL.class), eq(file));
+    assertEquals("other", FileUtils.fileRead(file));
   }
 
+  @Test
+  public void shouldNotPublishWhenInterrupted() throws Exception {
+    Thread.currentThread().interrupt();
+    try {
+      catchException(downloader).download(phantomJSArchive);
+    } finally {
+      Thread.interrupted();
+    }
 
+    assertThat(caughtException(), is(instanceOf(DownloadException.class)));
+    assertFalse(file.exists());
+  }
 
   @Test
-  public void shouldFailDueToEmptyFile() throws Exception {
-    when(phantomJSArchive.getArchiveName()).thenReturn(FILE_PATH);
-    when(file.length()).thenReturn(0L);
+  public void shouldDownloadInSegments() throws Exception {
+    server.setAcceptRanges(true);
 
+    downloader.download(phantomJSArchive);
+
+    assertArrayEquals(content, readFile());
+    // the probe plus one request per segment
+    assertEquals(SEGMENTS + 1, server.getRanges().size());
+    assertTrue(server.getRanges().contains("bytes=0-786436"));
+  }
+
+  @Test
+  public void shouldDownloadSmallFileInOnePiece() throws Exception {
+    content = new byte[1024];
+    server.setContent(content);
+    server.setAcceptRanges(true);
+
+    downloader.download(phantomJSArchive);
+
+    assertArrayEquals(content, readFile());
+    assertEquals(Arrays.asList("bytes=0-0", "bytes=0-1023"), server.getRanges());
+  }
+
+  @Test
+  public void shouldDownloadWithSingleSegment() throws Exception {
+    server.setAcceptRanges(true);
+
+    downloader = new WebDownloader(server.getBaseUrl(), file, 1);
+    downloader.download(phantomJSArchive);
+
+    assertArrayEquals(content, readFile());
+    assertEquals(Arrays.asList("bytes=0-0", "bytes=0-" + (content.length - 1)), server.getRanges());
+  }
+
+  @Test
+  public void shouldResumeInterruptedDownload() throws Exception {
+    server.setAcceptRanges(true);
+    server.setFailAfter(content.length / 2);
+
+    downloader = new WebDownloader(server.getBaseUrl(), file, 1);
     catchException(downloader).download(phantomJSArchive);
     assertThat(caughtException(), is(instanceOf(DownloadException.class)));
+    assertFalse(file.exists());
+    assertTrue(getPart().exists());
 
-    verifyStatic();
-    FileUtils.copyURLToFile(any(URL.class), eq(file));
+    server.setFailAfter(-1);
+    downloader.download(phantomJSArchive);
+
+    assertArrayEquals(content, readFile());
+    assertFalse(getPart().exists());
+    assertFalse(new File(getPart().getPath() + ".checkpoint").exists());
+
+    List<String> ranges = server.getRanges();
+    String resumed = ranges.get(ranges.size() - 1);
+    assertFalse("bytes=0-" + (content.length - 1), resumed.startsWith("bytes=0-"));
   }
 
   @Test
-  public void shouldFailDueToIOException() throws Exception {
-    when(phantomJSArchive.getArchiveName()).thenReturn(FILE_PATH);
+  public void shouldRestartWhenCheckpointDoesNotMatch() throws Exception {
+    server.setAcceptRanges(true);
+    server.setFailAfter(content.length / 2);
+
+    downloader = new WebDownloader(server.getBaseUrl(), file, 1);
+    catchException(downloader).download(phantomJSArchive);
+
+    content = Arrays.copyOf(content, content.length - 1);
+    server.setContent(content);
+    server.setFailAfter(-1);
+    downloader.download(phantomJSArchive);
 
-    doThrow(new IOException()).when(FileUtils.class);
-    FileUtils.copyURLToFile(any(URL.class), eq(file));
+    assertArrayEquals(content, readFile());
+  }
+
+  @Test
+  public void shouldRestartWhenFileChangedWithSameLength() throws Exception {
+    server.setAcceptRanges(true);
+    server.setETag("\"v1\"");
+    server.setFailAfter(content.length / 2);
 
+    downloader = new WebDownloader(server.getBaseUrl(), file, 1);
     catchException(downloader).download(phantomJSArchive);
-    assertThat(caughtException(),is(instanceOf(DownloadException.class)));
+    assertTrue(getPart().exists());
 
-    verifyStatic();
-    FileUtils.copyURLToFile(any(URL.class), eq(file));
+    // republished with the same length
+    content = content.clone();
+    for (int i = 0; i < content.length; i++) {
+      content[i] ^= 0x5a;
+    }
+    server.setContent(content);
+    server.setETag("\"v2\"");
+    server.setFailAfter(-1);
+    downloader.download(phantomJSArchive);
+
+    assertArrayEquals(content, readFile());
   }
 
   @Test
-  public void shouldFailDueToMalformedUrl() throws Exception {
-    when(phantomJSArchive.getArchiveName()).thenReturn(FILE_PATH);
+  public void shouldNotifyWhenTransferStarts() throws Exception {
+    TransferListener listener = mock(TransferListener.class);
+    downloader.setTransferListener(listener);
+
+    downloader.download(phantomJSArchive);
+
+    verify(listener).transferStarted(any(URL.class));
+    verify(listener).transferCompleted(any(URL.class), any(TransferStatistics.class));
+  }
+
+  @Test
+  public void shouldRecordStatistics() throws Exception {
+    assertNull(downloader.getStatistics());
 
+    downloader.download(phantomJSArchive);
+
+    assertEquals(content.length, downloader.getStatistics().getBytes());
+  }
+
+  @Test
+  public void shouldRecordStatisticsForSegmentedDownload() throws Exception {
+    server.setAcceptRanges(true);
+
+    downloader.download(phantomJSArchive);
+
+    assertEquals(content.length, downloader.getStatistics().getBytes());
+  }
+
+  @Test
+  public void shouldRevalidateWithConditionalRequest() throws Exception {
+    server.setETag("\"v1\"");
+    downloader = new WebDownloader(server.getBaseUrl(), new LocalCachedFile(file), 1, true, HttpTransport.DEFAULT);
+    downloader.download(phantomJSArchive);
+    int requests = server.getRequestCount();
+
+    downloader.download(phantomJSArchive);
+
+    assertEquals(requests + 1, server.getRequestCount());
+    assertArrayEquals(content, readFile());
+  }
+
+  @Test
+  public void shouldReplaceChangedArchive() throws Exception {
+    server.setETag("\"v1\"");
+    downloader = new WebDownloader(server.getBaseUrl(), new LocalCachedFile(file), 1, true, HttpTransport.DEFAULT);
+    downloader.download(phantomJSArchive);
+
+    content = Arrays.copyOf(content, 100);
+    server.setContent(content);
+    server.setETag("\"v2\"");
+    downloader.download(phantomJSArchive);
+
+    assertArrayEquals(content, readFile());
+    assertEquals("\"v2\"", new LocalCachedFile(file).getValidators().getETag());
+  }
+
+  @Test
+  public void shouldKeepCachedArchiveWhenRevalidationFails() throws Exception {
+    downloader = new WebDownloader(server.getBaseUrl(), new LocalCachedFile(file), 1, true, HttpTransport.DEFAULT);
+    downloader.download(phantomJSArchive);
+
+    server.setStatus(HttpURLConnection.HTTP_INTERNAL_ERROR);
+
+    assertSame(file, downloader.download(phantomJSArchive));
+    assertArrayEquals(content, readFile());
+  }
+
+  @Test
+  public void shouldDownloadDamagedArchiveAgain() throws Exception {
+    downloader.download(phantomJSArchive);
+    FileUtils.fileWrite(file, "damaged");
+
+    downloader.download(phantomJSArchive);
+
+    assertArrayEquals(content, readFile());
+  }
+
+  @Test
+  public void shouldDiscardPartialDownloadWithoutRanges() throws Exception {
+    server.setFailAfter(100);
+
+    catchException(downloader).download(phantomJSArchive);
+    assertThat(caughtException(), is(instanceOf(DownloadException.class)));
+
+    assertFalse(file.exists());
+    assertFalse(getPart().exists());
+  }
+
+  @Test
+  public void shouldRememberChecksumComputedDuringDownload() throws Exception {
+    downloader.download(phantomJSArchive);
+
+    assertEquals(Checksums.sha256(file), Checksums.getRememberedSha256(file));
+  }
+
+  @Test
+  public void shouldNotRememberChecksumOfSegmentedDownload() throws Exception {
+    server.setAcceptRanges(true);
+
+    downloader.download(phantomJSArchive);
+
+    assertNull(Checksums.getRememberedSha256(file));
+  }
+
+  @Test
+  public void shouldRememberChecksumOfStreamedArchive() throws Exception {
+    downloader.download(phantomJSArchive, new ByteArrayOutputStream(), true);
+
+    assertEquals(Checksums.sha256(file), Checksums.getRememberedSha256(file));
+  }
+
+  @Test
+  public void shouldStreamAndKeepArchive() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    downloader.download(phantomJSArchive, out, true);
+
+    assertArrayEquals(content, out.toByteArray());
+    assertArrayEquals(content, readFile());
+  }
+
+  @Test
+  public void shouldStreamWithoutKeepingArchive() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    downloader.download(phantomJSArchive, out, false);
+
+    assertArrayEquals(content, out.toByteArray());
+    assertFalse(file.exists());
+  }
+
+  @Test
+  public void shouldStreamFromCache() throws Exception {
+    downloader.download(phantomJSArchive);
+    server.setStatus(HttpURLConnection.HTTP_NOT_FOUND);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    downloader.download(phantomJSArchive, out, true);
+
+    assertArrayEquals(content, out.toByteArray());
+  }
+
+  @Test
+  public void shouldFailDueToEmptyFile() throws Exception {
+    server.setContent(new byte[0]);
+
+    catchException(downloader).download(phantomJSArchive);
+    assertThat(caughtException(), is(instanceOf(DownloadException.class)));
+  }
+
+  @Test
+  public void shouldFailDueToIOException() throws Exception {
+    server.setStatus(HttpURLConnection.HTTP_NOT_FOUND);
+
+    catchException(downloader).download(phantomJSArchive);
+    assertThat(caughtException(),is(instanceOf(DownloadException.class)));
+    assertFalse(file.exists());
+  }
+
+  @Test
+  public void shouldFailDueToMalformedUrl() throws Exception {
     downloader = new WebDownloader("invalid-base-url", file);
     catchException(downloader).download(phantomJSArchive);
     assertThat(caughtException(),is(instanceOf(DownloadException.class)));
   }
+
+  private File getPart() {
+    return new File(file.getPath() + "." + Integer.toHexString(server.getBaseUrl().hashCode()) + ".part");
+  }
+
+  private byte[] readFile() throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      return IOUtil.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
 }
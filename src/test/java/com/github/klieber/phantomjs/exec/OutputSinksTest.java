@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.exec;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+
+@RunWith(MockitoJUnitRunner.class)
+public class OutputSinksTest {
+
+  @Mock
+  private Logger logger;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldLogEachLine() throws Exception {
+    OutputStream out = OutputSinks.log(logger).getOutput();
+
+    out.write("first\r\nsec".getBytes("UTF-8"));
+    out.write("ond\nthird".getBytes("UTF-8"));
+    out.flush();
+
+    InOrder inOrder = inOrder(logger);
+    inOrder.verify(logger).info("first");
+    inOrder.verify(logger).info("second");
+    inOrder.verify(logger).info("third");
+    verifyNoMoreInteractions(logger);
+  }
+
+  @Test
+  public void shouldLogErrorsAsWarnings() throws Exception {
+    OutputStream err = OutputSinks.log(logger).getError();
+
+    err.write('x');
+    err.write('\n');
+
+    verify(logger).warn("x");
+  }
+
+  @Test
+  public void shouldNotLogEmptyFlush() throws Exception {
+    OutputStream out = OutputSinks.log(logger).getOutput();
+
+    out.flush();
+
+    verifyNoMoreInteractions(logger);
+  }
+
+  @Test
+  public void shouldRedirectToFile() {
+    File file = new File(temporaryFolder.getRoot(), "logs/phantomjs.log");
+
+    OutputSink sink = OutputSinks.file(file);
+
+    assertEquals(ProcessBuilder.Redirect.Type.APPEND, sink.getRedirect().type());
+    assertEquals(file, sink.getRedirect().file());
+    assertTrue(file.getParentFile().isDirectory());
+  }
+
+  @Test
+  public void shouldNotRedirectConsole() {
+    OutputSink sink = OutputSinks.console();
+
+    assertNull(sink.getRedirect());
+    assertEquals(System.out, sink.getOutput());
+    assertEquals(System.err, sink.getError());
+  }
+
+  @Test
+  public void shouldDiscard() throws Exception {
+    OutputSink sink = OutputSinks.discard();
+
+    assertNull(sink.getRedirect());
+    sink.getOutput().write(new byte[100], 0, 100);
+    sink.getError().write(1);
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.exec;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.googlecode.catchexception.CatchException.catchException;
+import static com.googlecode.catchexception.CatchException.caughtException;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ParallelPhantomJsExecutorTest {
+
+  private static final int PROCESSES = 2;
+
+  @Mock
+  private PhantomJsProcessBuilder builder;
+
+  private PhantomJsOptions options;
+
+  private ByteArrayOutputStream output;
+
+  private ByteArrayOutputStream error;
+
+  private AtomicInteger running;
+
+  private AtomicInteger mostRunning;
+
+  @Before
+  public void before() throws Exception {
+    options = new PhantomJsOptions();
+    options.setCommandLineOptions("--web-security=false");
+    output = new ByteArrayOutputStream();
+    error = new ByteArrayOutputStream();
+    running = new AtomicInteger();
+    mostRunning = new AtomicInteger();
+
+    when(builder.start(any(PhantomJsOptions.class), (ProcessBuilder.Redirect) isNull())).thenAnswer(new Answer<Process>() {
+      @Override
+      public Process answer(InvocationOnMock invocation) throws Throwable {
+        PhantomJsOptions scriptOptions = (PhantomJsOptions) invocation.getArguments()[0];
+        assertEquals("--web-security=false", scriptOptions.getCommandLineOptions());
+        return start(scriptOptions.getScript());
+      }
+    });
+  }
+
+  @Test
+  public void shouldReturnExitCodePerScript() throws Exception {
+    List<ScriptResult> results = new ParallelPhantomJsExecutor(builder, PROCESSES)
+        .execute(options, Arrays.asList("a.js", "fail.js", "c.js"), OutputSinks.streams(output, error));
+
+    assertEquals(3, results.size());
+    assertResult("a.js", 0, results.get(0));
+    assertResult("fail.js", 1, results.get(1));
+    assertResult("c.js", 0, results.get(2));
+  }
+
+  @Test
+  public void shouldReturnEveryRunOfTheSameScript() throws Exception {
+    List<ScriptResult> results = new ParallelPhantomJsExecutor(builder, PROCESSES)
+        .execute(options, Arrays.asList("fail.js", "fail.js"), OutputSinks.discard());
+
+    assertEquals(2, results.size());
+    assertResult("fail.js", 1, results.get(0));
+    assertResult("fail.js", 1, results.get(1));
+  }
+
+  @Test
+  public void shouldKeepOutputOfEachScriptTogether() throws Exception {
+    new ParallelPhantomJsExecutor(builder, PROCESSES)
+        .execute(options, Arrays.asList("a.js", "b.js", "c.js", "d.js"), OutputSinks.streams(output, error));
+
+    String text = output.toString("UTF-8");
+    for (String script : Arrays.asList("a.js", "b.js", "c.js", "d.js")) {
+      assertTrue(text.contains(script + " 1\n" + script + " 2\n"));
+    }
+    assertEquals("", error.toString("UTF-8"));
+  }
+
+  @Test
+  public void shouldRunScriptsConcurrentlyUpToTheLimit() throws Exception {
+    new ParallelPhantomJsExecutor(builder, PROCESSES)
+        .execute(options, Arrays.asList("a.js", "b.js", "c.js", "d.js", "e.js", "f.js"), OutputSinks.discard());
+
+    assertEquals(PROCESSES, mostRunning.get());
+  }
+
+  @Test
+  public void shouldFailWhenScriptCannotBeStarted() throws Exception {
+    doThrow(new ExecutionException("no binary", null)).when(builder).start(any(PhantomJsOptions.class), (ProcessBuilder.Redirect) isNull());
+
+    catchException(new ParallelPhantomJsExecutor(builder, PROCESSES))
+        .execute(options, Arrays.asList("a.js"), OutputSinks.discard());
+
+    assertThat(caughtException(), is(instanceOf(ExecutionException.class)));
+  }
+
+  private void assertResult(String script, int code, ScriptResult result) {
+    assertEquals(script, result.getScript());
+    assertEquals(code, result.getCode());
+  }
+
+  private Process start(final String script) throws Exception {
+    Process process = mock(Process.class);
+    when(process.getInputStream()).thenReturn(new ByteArrayInputStream((script + " 1\n" + script + " 2\n").getBytes("UTF-8")));
+    when(process.getErrorStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+    when(process.waitFor()).thenAnswer(new Answer<Integer>() {
+      @Override
+      public Integer answer(InvocationOnMock invocation) throws Throwable {
+        int now = running.incrementAndGet();
+        synchronized (mostRunning) {
+          mostRunning.set(Math.max(mostRunning.get(), now));
+        }
+        Thread.sleep(100);
+        running.decrementAndGet();
+        return script.startsWith("fail") ? 1 : 0;
+      }
+    });
+    return process;
+  }
+}
@@ -26,14 +26,19 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.InputStream;
 
 import static com.googlecode.catchexception.CatchException.catchException;
 import static com.googlecode.catchexception.CatchException.caughtException;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -50,21 +55,32 @@ public class PhantomJsExecutorTest {
   private Process process;
 
   @Mock
+  private OutputSink sink;
+
   private InputStream inputStream;
 
-  @Mock
   private InputStream errorStream;
 
+  private ByteArrayOutputStream output;
+
+  private ByteArrayOutputStream error;
+
   private PhantomJsExecutor executor;
 
   @Before
-  public void before() {
-    executor = new PhantomJsExecutor(builder);
+  public void before() throws Exception {
+    inputStream = new ByteArrayInputStream(new byte[0]);
+    errorStream = new ByteArrayInputStream(new byte[0]);
+    output = new ByteArrayOutputStream();
+    error = new ByteArrayOutputStream();
+    when(sink.getOutput()).thenReturn(output);
+    when(sink.getError()).thenReturn(error);
+    executor = new PhantomJsExecutor(builder, sink);
   }
 
   @Test
   public void testStart() throws Exception {
-    when(builder.start(options)).thenReturn(process);
+    when(builder.start(options, null)).thenReturn(process);
     when(process.getInputStream()).thenReturn(inputStream);
     when(process.getErrorStream()).thenReturn(errorStream);
 
@@ -75,7 +91,7 @@ public class PhantomJsExecutorTest {
 
   @Test
   public void testCanHandleInterruption() throws Exception {
-    when(builder.start(options)).thenReturn(process);
+    when(builder.start(options, null)).thenReturn(process);
     when(process.getInputStream()).thenReturn(inputStream);
     when(process.getErrorStream()).thenReturn(errorStream);
 
@@ -83,5 +99,40 @@ public class PhantomJsExecutorTest {
 
     catchException(executor).execute(options);
     assertThat(caughtException(), is(instanceOf(ExecutionException.class)));
+    verify(process).destroy();
+  }
+
+  @Test
+  public void shouldCopyAllOutputBeforeReturning() throws Exception {
+    byte[] lines = lines(20000);
+    when(builder.start(options, null)).thenReturn(process);
+    when(process.getInputStream()).thenReturn(new ByteArrayInputStream(lines));
+    when(process.getErrorStream()).thenReturn(new ByteArrayInputStream("failed\n".getBytes("UTF-8")));
+    when(process.waitFor()).thenReturn(3);
+
+    assertEquals(3, executor.execute(options));
+
+    assertEquals(lines.length, output.size());
+    assertEquals("failed\n", error.toString("UTF-8"));
+  }
+
+  @Test
+  public void shouldNotCopyRedirectedOutput() throws Exception {
+    ProcessBuilder.Redirect redirect = ProcessBuilder.Redirect.appendTo(new File("phantomjs.log"));
+    when(sink.getRedirect()).thenReturn(redirect);
+    when(builder.start(options, redirect)).thenReturn(process);
+
+    executor.execute(options);
+
+    verify(process, never()).getInputStream();
+    verify(process, never()).getErrorStream();
+  }
+
+  private static byte[] lines(int count) throws Exception {
+    ByteArrayOutputStream lines = new ByteArrayOutputStream();
+    for (int i = 0; i < count; i++) {
+      lines.write(("line " + i + "\n").getBytes("UTF-8"));
+    }
+    return lines.toByteArray();
   }
 }
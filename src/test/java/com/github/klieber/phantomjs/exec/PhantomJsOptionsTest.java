@@ -83,4 +83,20 @@ public class PhantomJsOptionsTest {
     options.addArgument("b");
     assertEquals(Arrays.asList("a","b"), options.getArguments());
   }
+
+  @Test
+  public void testWithScript() {
+    options.setConfigFile(file);
+    options.setCommandLineOptions(EXAMPLE_STRING);
+    options.setScript("original.js");
+    options.addArgument("a");
+
+    PhantomJsOptions copy = options.withScript("other.js");
+
+    assertSame(file, copy.getConfigFile());
+    assertSame(EXAMPLE_STRING, copy.getCommandLineOptions());
+    assertEquals("other.js", copy.getScript());
+    assertEquals(Arrays.asList("a"), copy.getArguments());
+    assertEquals("original.js", options.getScript());
+  }
 }
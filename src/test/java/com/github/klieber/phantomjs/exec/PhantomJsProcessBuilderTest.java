@@ -22,7 +22,9 @@ package com.github.klieber.phantomjs.exec;
 
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.powermock.core.classloader.annotations.PrepareForTest;
@@ -36,6 +38,7 @@ import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 
@@ -52,6 +55,9 @@ public class PhantomJsProcessBuilderTest {
   @Mock
   private File file;
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   private PhantomJsProcessBuilder builder;
 
   @Before
@@ -81,6 +87,15 @@ public class PhantomJsProcessBuilderTest {
     assertNotNull(process);
   }
 
+  @Test
+  public void testStartWithRedirect() throws Exception {
+    File log = new File(temporaryFolder.getRoot(), "phantomjs.log");
+    Process process = builder.start(options, ProcessBuilder.Redirect.appendTo(log));
+    process.waitFor();
+    // the shell reports the missing binary on standard error, which ends up in the file
+    assertTrue(log.length() > 0);
+  }
+
   @Test
   @PrepareForTest(CommandLineUtils.class)
   public void testStartCanHandleException() throws Exception {
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.exec;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.googlecode.catchexception.CatchException.catchException;
+import static com.googlecode.catchexception.CatchException.caughtException;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PhantomJsWorkerPoolTest {
+
+  @Mock
+  private PhantomJsProcessBuilder builder;
+
+  private PhantomJsOptions options;
+
+  private ByteArrayOutputStream output;
+
+  private ByteArrayOutputStream error;
+
+  private List<HttpServer> servers;
+
+  private List<Process> processes;
+
+  private PhantomJsWorkerPool pool;
+
+  // holds back the answer to hang.js until the test is over
+  private CountDownLatch released;
+
+  @Before
+  public void before() throws Exception {
+    options = new PhantomJsOptions();
+    options.setCommandLineOptions("--web-security=false");
+    output = new ByteArrayOutputStream();
+    error = new ByteArrayOutputStream();
+    servers = new ArrayList<HttpServer>();
+    processes = new ArrayList<Process>();
+    released = new CountDownLatch(1);
+
+    when(builder.start(any(PhantomJsOptions.class), eq(ProcessBuilder.Redirect.PIPE))).thenAnswer(new Answer<Process>() {
+      @Override
+      public Process answer(InvocationOnMock invocation) throws Throwable {
+        PhantomJsOptions workerOptions = (PhantomJsOptions) invocation.getArguments()[0];
+        assertEquals("--web-security=false", workerOptions.getCommandLineOptions());
+        assertTrue(workerOptions.getScript().endsWith(".js"));
+        return startWorker(Integer.parseInt(workerOptions.getArguments().get(0)));
+      }
+    });
+  }
+
+  @After
+  public void after() {
+    released.countDown();
+    if (pool != null) {
+      pool.close();
+    }
+    for (HttpServer server : servers) {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void shouldRunScriptOnWorker() throws Exception {
+    pool = new PhantomJsWorkerPool(builder, options, 1, 10);
+
+    int code = pool.execute(script("fail.js", "first", "second"), OutputSinks.streams(output, error));
+
+    assertEquals(1, code);
+    assertTrue(output.toString("UTF-8").endsWith("fail.js\nfirst\nsecond\n"));
+    assertEquals("errors of fail.js\n", error.toString("UTF-8"));
+  }
+
+  @Test
+  public void shouldReuseWorkers() throws Exception {
+    pool = new PhantomJsWorkerPool(builder, options, 1, 10);
+
+    for (String script : Arrays.asList("a.js", "b.js", "c.js")) {
+      assertEquals(0, pool.execute(script(script), OutputSinks.discard()));
+    }
+
+    verify(builder, times(1)).start(any(PhantomJsOptions.class), eq(ProcessBuilder.Redirect.PIPE));
+  }
+
+  @Test
+  public void shouldRecycleWorkersAfterJobs() throws Exception {
+    pool = new PhantomJsWorkerPool(builder, options, 1, 2);
+
+    for (String script : Arrays.asList("a.js", "b.js", "c.js")) {
+      pool.execute(script(script), OutputSinks.discard());
+    }
+
+    verify(builder, times(2)).start(any(PhantomJsOptions.class), eq(ProcessBuilder.Redirect.PIPE));
+    verify(processes.get(0)).destroy();
+  }
+
+  @Test
+  public void shouldRunScriptsConcurrentlyOnWorkers() throws Exception {
+    pool = new PhantomJsWorkerPool(builder, options, 2, 10);
+
+    List<ScriptResult> results = new ParallelPhantomJsExecutor(pool, 2)
+        .execute(options, Arrays.asList("a.js", "fail.js", "c.js", "d.js"), OutputSinks.streams(output, error));
+
+    assertEquals("a.js", results.get(0).getScript());
+    assertEquals(0, results.get(0).getCode());
+    assertEquals("fail.js", results.get(1).getScript());
+    assertEquals(1, results.get(1).getCode());
+    assertTrue(output.toString("UTF-8").contains("d.js\n"));
+    assertTrue(processes.size() <= 2);
+  }
+
+  @Test
+  public void shouldReplaceWorkerThatFails() throws Exception {
+    pool = new PhantomJsWorkerPool(builder, options, 1, 10);
+
+    int code = pool.execute(script("crash.js"), OutputSinks.streams(output, error));
+    assertEquals(PhantomJsWorkerPool.WORKER_FAILURE, code);
+    assertTrue(error.toString("UTF-8").contains("crash.js"));
+    verify(processes.get(0)).destroy();
+
+    assertEquals(0, pool.execute(script("a.js"), OutputSinks.discard()));
+    assertEquals(2, processes.size());
+  }
+
+  @Test
+  public void shouldReplaceWorkerThatAnswersWithoutExitCode() throws Exception {
+    pool = new PhantomJsWorkerPool(builder, options, 1, 10);
+
+    int code = pool.execute(script("headless.js"), OutputSinks.streams(output, error));
+
+    assertEquals(PhantomJsWorkerPool.WORKER_FAILURE, code);
+    assertTrue(error.toString("UTF-8").contains("X-Exit-Code"));
+    verify(processes.get(0)).destroy();
+  }
+
+  @Test
+  public void shouldReplaceWorkerThatRunsPastTimeout() throws Exception {
+    pool = new PhantomJsWorkerPool(builder, options, 1, 10, 200);
+
+    int code = pool.execute(script("hang.js"), OutputSinks.streams(output, error));
+    assertEquals(PhantomJsWorkerPool.WORKER_FAILURE, code);
+    verify(processes.get(0)).destroy();
+
+    assertEquals(0, pool.execute(script("a.js"), OutputSinks.discard()));
+    assertEquals(2, processes.size());
+  }
+
+  @Test
+  public void shouldRestartWorkerThatCannotListen() throws Exception {
+    final Answer<?> working = new Answer<Process>() {
+      @Override
+      public Process answer(InvocationOnMock invocation) throws Throwable {
+        PhantomJsOptions workerOptions = (PhantomJsOptions) invocation.getArguments()[0];
+        return startWorker(Integer.parseInt(workerOptions.getArguments().get(0)));
+      }
+    };
+    when(builder.start(any(PhantomJsOptions.class), eq(ProcessBuilder.Redirect.PIPE))).thenAnswer(new Answer<Process>() {
+      @Override
+      public Process answer(InvocationOnMock invocation) throws Throwable {
+        // another process took the port before the first worker could listen on it
+        return exitedWorker();
+      }
+    }).thenAnswer(working);
+    pool = new PhantomJsWorkerPool(builder, options, 1, 10);
+
+    assertEquals(0, pool.execute(script("a.js"), OutputSinks.discard()));
+
+    verify(builder, times(2)).start(any(PhantomJsOptions.class), eq(ProcessBuilder.Redirect.PIPE));
+  }
+
+  @Test
+  public void shouldFailWhenWorkerDoesNotStart() throws Exception {
+    when(builder.start(any(PhantomJsOptions.class), eq(ProcessBuilder.Redirect.PIPE))).thenAnswer(new Answer<Process>() {
+      @Override
+      public Process answer(InvocationOnMock invocation) throws Throwable {
+        return exitedWorker();
+      }
+    });
+    pool = new PhantomJsWorkerPool(builder, options, 1, 10);
+
+    catchException(pool).execute(script("a.js"), OutputSinks.discard());
+
+    assertThat(caughtException(), is(instanceOf(ExecutionException.class)));
+    verify(builder, times(3)).start(any(PhantomJsOptions.class), eq(ProcessBuilder.Redirect.PIPE));
+  }
+
+  private PhantomJsOptions script(String script, String... arguments) {
+    PhantomJsOptions scriptOptions = options.withScript(script);
+    scriptOptions.addArguments(Arrays.asList(arguments));
+    return scriptOptions;
+  }
+
+  private Process exitedWorker() throws IOException {
+    Process process = mock(Process.class);
+    when(process.getInputStream()).thenReturn(new ByteArrayInputStream("Unable to listen\n".getBytes("UTF-8")));
+    return process;
+  }
+
+  private Process startWorker(int port) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+    server.createContext("/", new ControllerHandler(released));
+    server.start();
+    servers.add(server);
+
+    // the pipe stays open like the output of a running worker
+    PipedOutputStream out = new PipedOutputStream();
+    PipedInputStream in = new PipedInputStream(out);
+    out.write("ready\n".getBytes("UTF-8"));
+    out.flush();
+
+    Process process = mock(Process.class);
+    when(process.getInputStream()).thenReturn(in);
+    processes.add(process);
+    return process;
+  }
+
+  /**
+   * Answers like the controller script, echoing the script and its arguments as output.
+   */
+  private static class ControllerHandler implements HttpHandler {
+
+    private final CountDownLatch released;
+
+    private ControllerHandler(CountDownLatch released) {
+      this.released = released;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      String body = IOUtil.toString(exchange.getRequestBody(), "UTF-8");
+      if ("/shutdown".equals(exchange.getRequestURI().getPath())) {
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+        return;
+      }
+      String script = body.split("\n")[0];
+      if (script.endsWith("crash.js")) {
+        exchange.sendResponseHeaders(500, -1);
+        exchange.close();
+        return;
+      }
+      if (script.endsWith("headless.js")) {
+        exchange.sendResponseHeaders(200, -1);
+        exchange.close();
+        return;
+      }
+      if (script.endsWith("hang.js")) {
+        try {
+          released.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        exchange.close();
+        return;
+      }
+      String output = body + "\n";
+      String error = script.endsWith("fail.js") ? "errors of fail.js\n" : "";
+      byte[] content = (output + error).getBytes("UTF-8");
+      exchange.getResponseHeaders().add("X-Exit-Code", script.endsWith("fail.js") ? "1" : "0");
+      exchange.getResponseHeaders().add("X-Output-Length", String.valueOf(output.length()));
+      exchange.sendResponseHeaders(200, content.length);
+      OutputStream out = exchange.getResponseBody();
+      out.write(content);
+      out.close();
+    }
+  }
+}
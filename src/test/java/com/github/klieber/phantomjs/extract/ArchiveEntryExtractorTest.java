@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.extract;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.googlecode.catchexception.CatchException.catchException;
+import static com.googlecode.catchexception.CatchException.caughtException;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(PhantomJSArchive.class)
+public class ArchiveEntryExtractorTest {
+
+  private static final String PROJECT_ROOT = System.getProperty("user.dir");
+
+  private static final String PATH_TO_EXECUTABLE = "bin/phantomjs";
+  private static final String TAR_ARCHIVE = PROJECT_ROOT+"/src/test/config/test-archive.tar.gz";
+  private static final long EXECUTABLE_LENGTH = 19;
+
+  @Mock
+  private PhantomJSArchive phantomJsArchive;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File extractTo;
+
+  private ArchiveEntryExtractor extractor;
+
+  @Before
+  public void before() {
+    extractor = new ArchiveEntryExtractor(phantomJsArchive);
+    extractTo = new File(temporaryFolder.getRoot(), "extracted/phantomjs");
+    when(phantomJsArchive.getPathToExecutable()).thenReturn(PATH_TO_EXECUTABLE);
+  }
+
+  @Test
+  public void shouldExtractFromTarball() throws Exception {
+    when(phantomJsArchive.getExtension()).thenReturn("tar.gz");
+
+    extractor.extract(new File(TAR_ARCHIVE), extractTo);
+
+    assertTrue(extractTo.isFile());
+    assertTrue(extractTo.canExecute());
+  }
+
+  @Test
+  public void shouldExtractFromZip() throws Exception {
+    when(phantomJsArchive.getExtension()).thenReturn("zip");
+
+    extractor.extract(createZip(PATH_TO_EXECUTABLE), extractTo);
+
+    assertEquals("phantomjs", FileUtils.fileRead(extractTo));
+    assertTrue(extractTo.canExecute());
+  }
+
+  @Test
+  public void shouldExtractFromZipWithRelativeEntries() throws Exception {
+    when(phantomJsArchive.getExtension()).thenReturn("zip");
+
+    extractor.extract(createZip("./" + PATH_TO_EXECUTABLE), extractTo);
+
+    assertEquals("phantomjs", FileUtils.fileRead(extractTo));
+  }
+
+  @Test
+  public void shouldFailWhenExecutableIsMissingFromZip() throws Exception {
+    when(phantomJsArchive.getExtension()).thenReturn("zip");
+
+    catchException(extractor).extract(createZip("bin/other"), extractTo);
+
+    assertThat(caughtException(), is(instanceOf(ExtractionException.class)));
+    assertFalse(extractTo.exists());
+  }
+
+  @Test
+  public void shouldFailOnCorruptZip() throws Exception {
+    when(phantomJsArchive.getExtension()).thenReturn("zip");
+    File archive = temporaryFolder.newFile("corrupt.zip");
+    FileUtils.fileWrite(archive, "corrupt");
+
+    catchException(extractor).extract(archive, extractTo);
+
+    assertThat(caughtException(), is(instanceOf(ExtractionException.class)));
+  }
+
+  @Test
+  public void shouldFailOnMissingTarball() throws Exception {
+    when(phantomJsArchive.getExtension()).thenReturn("tar.bz2");
+
+    catchException(extractor).extract(new File(temporaryFolder.getRoot(), "missing.tar.bz2"), extractTo);
+
+    assertThat(caughtException(), is(instanceOf(ExtractionException.class)));
+  }
+
+  @Test
+  public void shouldExtractConcurrently() throws Exception {
+    when(phantomJsArchive.getExtension()).thenReturn("tar.gz");
+    final File archive = new File(TAR_ARCHIVE);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<File>> results = new ArrayList<Future<File>>();
+      for (int i = 0; i < 20; i++) {
+        final File target = new File(temporaryFolder.getRoot(), "concurrent-" + i + "/phantomjs");
+        results.add(executor.submit(new Callable<File>() {
+          @Override
+          public File call() throws Exception {
+            extractor.extract(archive, target);
+            return target;
+          }
+        }));
+      }
+      for (Future<File> result : results) {
+        assertEquals(EXECUTABLE_LENGTH, result.get().length());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private File createZip(String... entries) throws Exception {
+    File archive = temporaryFolder.newFile("archive.zip");
+    ZipArchiveOutputStream out = new ZipArchiveOutputStream(archive);
+    try {
+      out.putArchiveEntry(new ZipArchiveEntry("README"));
+      out.write("readme".getBytes("UTF-8"));
+      out.closeArchiveEntry();
+      for (String entry : entries) {
+        out.putArchiveEntry(new ZipArchiveEntry(entry));
+        out.write("phantomjs".getBytes("UTF-8"));
+        out.closeArchiveEntry();
+      }
+    } finally {
+      out.close();
+    }
+    return archive;
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.extract;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(PhantomJSArchive.class)
+public class ParallelBZip2ExtractorTest {
+
+  private static final String PATH_TO_EXECUTABLE = "bin/phantomjs";
+
+  @Mock
+  private PhantomJSArchive phantomJsArchive;
+
+  @Mock
+  private Extractor delegate;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File extractTo;
+
+  @Before
+  public void before() {
+    extractTo = new File(temporaryFolder.getRoot(), "extracted/phantomjs");
+    when(phantomJsArchive.getPathToExecutable()).thenReturn(PATH_TO_EXECUTABLE);
+    when(phantomJsArchive.getExtension()).thenReturn("tar.bz2");
+  }
+
+  @Test
+  public void shouldExtractUsingSeveralThreads() throws Exception {
+    byte[] content = new byte[250 * 1000];
+    new Random(1).nextBytes(content);
+    File archive = createArchive(content);
+
+    new ParallelBZip2Extractor(phantomJsArchive, delegate, 4).extract(archive, extractTo);
+
+    assertArrayEquals(content, Files.readAllBytes(extractTo.toPath()));
+    assertTrue(extractTo.canExecute());
+    verifyNoMoreInteractions(delegate);
+  }
+
+  @Test
+  public void shouldLeaveArchiveFreeToDeleteAfterExtracting() throws Exception {
+    File archive = createArchive(new byte[10]);
+
+    new ParallelBZip2Extractor(phantomJsArchive, delegate, 4).extract(archive, extractTo);
+
+    assertTrue(archive.delete());
+  }
+
+  @Test
+  public void shouldDelegateOtherArchiveTypes() throws Exception {
+    when(phantomJsArchive.getExtension()).thenReturn("zip");
+    File archive = temporaryFolder.newFile("archive.zip");
+
+    new ParallelBZip2Extractor(phantomJsArchive, delegate, 4).extract(archive, extractTo);
+
+    verify(delegate).extract(archive, extractTo);
+  }
+
+  @Test
+  public void shouldDelegateWhenSingleThreaded() throws Exception {
+    File archive = createArchive(new byte[10]);
+
+    new ParallelBZip2Extractor(phantomJsArchive, delegate, 1).extract(archive, extractTo);
+
+    verify(delegate).extract(archive, extractTo);
+  }
+
+  @Test
+  public void shouldFallBackWhenArchiveCannotBeDecompressed() throws Exception {
+    File archive = temporaryFolder.newFile("archive.tar.bz2");
+    FileUtils.fileWrite(archive, "corrupt");
+
+    new ParallelBZip2Extractor(phantomJsArchive, delegate, 4).extract(archive, extractTo);
+
+    verify(delegate).extract(archive, extractTo);
+  }
+
+  private File createArchive(byte[] content) throws Exception {
+    File archive = temporaryFolder.newFile("archive.tar.bz2");
+    TarArchiveOutputStream out = new TarArchiveOutputStream(
+        new BZip2CompressorOutputStream(new FileOutputStream(archive), BZip2CompressorOutputStream.MIN_BLOCKSIZE));
+    try {
+      TarArchiveEntry entry = new TarArchiveEntry(PATH_TO_EXECUTABLE);
+      entry.setSize(content.length);
+      out.putArchiveEntry(entry);
+      out.write(content);
+      out.closeArchiveEntry();
+    } finally {
+      out.close();
+    }
+    return archive;
+  }
+}
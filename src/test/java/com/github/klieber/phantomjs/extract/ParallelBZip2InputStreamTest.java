@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.extract;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.googlecode.catchexception.CatchException.catchException;
+import static com.googlecode.catchexception.CatchException.caughtException;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class ParallelBZip2InputStreamTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ExecutorService executor;
+
+  @Before
+  public void before() {
+    executor = Executors.newFixedThreadPool(3);
+  }
+
+  @After
+  public void after() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldDecompressEveryBlock() throws Exception {
+    // random data barely compresses so the smallest block size gives several blocks
+    byte[] content = content(350 * 1000);
+
+    assertArrayEquals(content, decompress(compress(content)));
+  }
+
+  @Test
+  public void shouldDecompressEmptyStream() throws Exception {
+    assertEquals(0, decompress(compress(new byte[0])).length);
+  }
+
+  @Test
+  public void shouldDecompressConcatenatedStreams() throws Exception {
+    byte[] first = content(150 * 1000);
+    byte[] second = "second stream".getBytes("UTF-8");
+
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    data.write(compress(first));
+    data.write(compress(second));
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    expected.write(first);
+    expected.write(second);
+
+    assertArrayEquals(expected.toByteArray(), decompress(data.toByteArray()));
+  }
+
+  @Test
+  public void shouldRejectDataThatIsNotBZip2() throws Exception {
+    catchException(this).decompress("not bzip2".getBytes("UTF-8"));
+
+    assertThat(caughtException(), is(instanceOf(IOException.class)));
+  }
+
+  @Test
+  public void shouldRejectTruncatedStream() throws Exception {
+    byte[] data = compress(content(150 * 1000));
+    byte[] truncated = new byte[data.length / 2];
+    System.arraycopy(data, 0, truncated, 0, truncated.length);
+
+    catchException(this).decompress(truncated);
+
+    assertThat(caughtException(), is(instanceOf(IOException.class)));
+  }
+
+  @Test
+  public void shouldRejectCorruptBlock() throws Exception {
+    byte[] data = compress(content(150 * 1000));
+    data[data.length / 2] ^= 0xff;
+
+    catchException(this).decompress(data);
+
+    assertThat(caughtException(), is(instanceOf(IOException.class)));
+  }
+
+  public byte[] decompress(byte[] data) throws IOException {
+    File file = temporaryFolder.newFile();
+    Files.write(file.toPath(), data);
+    FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      InputStream in = new ParallelBZip2InputStream(channel, executor, 2);
+      try {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtil.copy(in, out);
+        return out.toByteArray();
+      } finally {
+        in.close();
+      }
+    } finally {
+      channel.close();
+    }
+  }
+
+  private static byte[] content(int length) {
+    byte[] content = new byte[length];
+    new Random(length).nextBytes(content);
+    return content;
+  }
+
+  private static byte[] compress(byte[] content) throws IOException {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    BZip2CompressorOutputStream out = new BZip2CompressorOutputStream(data, BZip2CompressorOutputStream.MIN_BLOCKSIZE);
+    out.write(content);
+    out.close();
+    return data.toByteArray();
+  }
+}
@@ -21,86 +21,95 @@
 package com.github.klieber.phantomjs.extract;
 
 import com.github.klieber.phantomjs.archive.PhantomJSArchive;
-import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 
 import static com.googlecode.catchexception.CatchException.catchException;
 import static com.googlecode.catchexception.CatchException.caughtException;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
-import static org.mockito.Mockito.*;
+import static org.mockito.Mockito.when;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest(PhantomJSArchive.class)
-public class PhantomJsExtractorTest {
+public class StreamExtractorTest {
 
   private static final String PROJECT_ROOT = System.getProperty("user.dir");
 
   private static final String PATH_TO_EXECUTABLE = "bin/phantomjs";
   private static final String ARCHIVE_PATH = PROJECT_ROOT+"/src/test/config/test-archive.tar.gz";
-  private static final String EXTRACT_TO_PATH = PROJECT_ROOT+"/target/temp/phantomjs";
 
   @Mock
   private PhantomJSArchive phantomJsArchive;
 
-  private File archive;
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
   private File extractTo;
 
-  @Mock
-  private File extractToParent;
-
-  private PhantomJsExtractor extractor;
+  private StreamExtractor extractor;
 
   @Before
   public void before() {
-    extractor = new PhantomJsExtractor(phantomJsArchive);
-    archive = new File(ARCHIVE_PATH);
-    extractTo = new File(EXTRACT_TO_PATH);
-  }
-
-  @After
-  public void after() {
-    if (extractTo != null && extractTo.exists()) {
-      extractTo.delete();
-    }
+    extractor = new StreamExtractor(phantomJsArchive);
+    extractTo = new File(temporaryFolder.getRoot(), "bin/phantomjs");
+    when(phantomJsArchive.getExtension()).thenReturn("tar.gz");
   }
 
   @Test
   public void shouldExtract() throws Exception {
     when(phantomJsArchive.getPathToExecutable()).thenReturn(PATH_TO_EXECUTABLE);
-    extractor.extract(archive, extractTo);
-    assertTrue(extractTo.exists());
+
+    InputStream in = new FileInputStream(ARCHIVE_PATH);
+    try {
+      extractor.extract(in, extractTo);
+    } finally {
+      in.close();
+    }
+
+    assertTrue(extractTo.isFile());
+    assertTrue(extractTo.canExecute());
   }
 
   @Test
-  public void shouldNotExtract() throws Exception {
-    extractTo = mock(File.class);
+  public void shouldFailWhenExecutableIsMissing() throws Exception {
+    when(phantomJsArchive.getPathToExecutable()).thenReturn("phantomjs-1.9.7/bin/phantomjs");
+
+    catchException(extractor).extract(new FileInputStream(ARCHIVE_PATH), extractTo);
 
+    assertThat(caughtException(), is(instanceOf(ExtractionException.class)));
+    assertFalse(extractTo.exists());
+  }
+
+  @Test
+  public void shouldFailOnCorruptArchive() throws Exception {
     when(phantomJsArchive.getPathToExecutable()).thenReturn(PATH_TO_EXECUTABLE);
-    when(extractTo.getParentFile()).thenReturn(extractToParent);
-    when(extractTo.getAbsolutePath()).thenReturn(EXTRACT_TO_PATH);
-    when(extractToParent.mkdirs()).thenReturn(false);
 
-    extractor.extract(archive, extractTo);
+    catchException(extractor).extract(new ByteArrayInputStream(new byte[]{1, 2, 3}), extractTo);
 
-    verify(extractTo, never()).setExecutable(true);
+    assertThat(caughtException(), is(instanceOf(ExtractionException.class)));
   }
 
   @Test
-  public void shouldFailToExtract() throws Exception {
+  public void shouldFailOnUnsupportedArchive() throws Exception {
+    when(phantomJsArchive.getExtension()).thenReturn("rar");
     when(phantomJsArchive.getPathToExecutable()).thenReturn(PATH_TO_EXECUTABLE);
 
-    catchException(extractor).extract(new File(PROJECT_ROOT+"/target/doesnotexist"), extractTo);
+    catchException(extractor).extract(new FileInputStream(ARCHIVE_PATH), extractTo);
 
     assertThat(caughtException(), is(instanceOf(ExtractionException.class)));
   }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.install;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.config.Configuration;
+import com.github.klieber.phantomjs.download.DownloadException;
+import com.github.klieber.phantomjs.download.RepositoryDownloader;
+import com.github.klieber.phantomjs.lock.LockManager;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(PhantomJSArchive.class)
+public class BinaryArtifactInstallerTest {
+
+  private static final String EXTRACT_TO_PATH = "phantomjs-1.9.7-linux/bin/phantomjs";
+  private static final String FALLBACK_PATH = "target/phantomjs";
+
+  @Mock
+  private Configuration config;
+
+  @Mock
+  private PhantomJSArchive phantomJSArchive;
+
+  @Mock
+  private RepositoryDownloader downloader;
+
+  @Mock
+  private Installer fallbackInstaller;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File binary;
+
+  private File extractTo;
+
+  @Before
+  public void before() throws Exception {
+    File outputDirectory = temporaryFolder.newFolder("output");
+    binary = temporaryFolder.newFile("phantomjs-1.9.7-linux-bin.bin");
+    FileUtils.fileWrite(binary, "phantomjs");
+    extractTo = new File(outputDirectory, EXTRACT_TO_PATH);
+
+    when(config.getPhantomJsArchive()).thenReturn(phantomJSArchive);
+    when(config.getOutputDirectory()).thenReturn(outputDirectory);
+    when(phantomJSArchive.getExtractToPath()).thenReturn(EXTRACT_TO_PATH);
+    when(fallbackInstaller.install()).thenReturn(FALLBACK_PATH);
+  }
+
+  @Test
+  public void shouldLinkExecutableBinary() throws Exception {
+    assertTrue(binary.setExecutable(true));
+    when(downloader.downloadBinary(phantomJSArchive)).thenReturn(binary);
+
+    String path = newInstaller(true).install();
+
+    assertEquals(extractTo.getAbsolutePath(), path);
+    assertTrue(Files.isSameFile(binary.toPath(), extractTo.toPath()));
+    assertTrue(extractTo.canExecute());
+    verify(fallbackInstaller, never()).install();
+  }
+
+  @Test
+  public void shouldCopyBinaryThatIsNotExecutableInsteadOfLinking() throws Exception {
+    when(downloader.downloadBinary(phantomJSArchive)).thenReturn(binary);
+
+    newInstaller(true).install();
+
+    assertEquals("phantomjs", FileUtils.fileRead(extractTo));
+    assertFalse(Files.isSameFile(binary.toPath(), extractTo.toPath()));
+    assertTrue(extractTo.canExecute());
+    assertFalse(binary.canExecute());
+  }
+
+  @Test
+  public void shouldCopyBinary() throws Exception {
+    when(downloader.downloadBinary(phantomJSArchive)).thenReturn(binary);
+
+    newInstaller(false).install();
+
+    assertEquals("phantomjs", FileUtils.fileRead(extractTo));
+    assertTrue(extractTo.canExecute());
+  }
+
+  @Test
+  public void shouldFallBackWhenBinaryIsNotAvailable() throws Exception {
+    when(downloader.downloadBinary(phantomJSArchive)).thenThrow(new DownloadException("not found"));
+
+    assertEquals(FALLBACK_PATH, newInstaller(true).install());
+  }
+
+  @Test
+  public void shouldNotResolveWhenAlreadyInstalled() throws Exception {
+    assertTrue(extractTo.getParentFile().mkdirs());
+    assertTrue(extractTo.createNewFile());
+
+    assertEquals(extractTo.getAbsolutePath(), newInstaller(true).install());
+    verifyZeroInteractions(downloader, fallbackInstaller);
+  }
+
+  private BinaryArtifactInstaller newInstaller(boolean link) {
+    return new BinaryArtifactInstaller(config, downloader, fallbackInstaller, link, new LockManager());
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.install;
+
+import com.github.klieber.phantomjs.download.DownloadException;
+import com.github.klieber.phantomjs.extract.ExtractionException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.File;
+
+import static com.googlecode.catchexception.CatchException.catchException;
+import static com.googlecode.catchexception.CatchException.caughtException;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StagingInstallerTest {
+
+  private static final String STAGED_PATH = "/dev/shm/phantomjs";
+  private static final String FALLBACK_PATH = "target/phantomjs";
+
+  @Mock
+  private Installer stagedInstaller;
+
+  @Mock
+  private Installer fallbackInstaller;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File stagingDirectory;
+
+  private File stage;
+
+  private StagingInstaller installer;
+
+  @Before
+  public void before() throws Exception {
+    stagingDirectory = temporaryFolder.newFolder("shm");
+    stage = StagingInstaller.getStage(stagingDirectory, new File("target"));
+    installer = new StagingInstaller(stagingDirectory, stage, stagedInstaller, fallbackInstaller);
+    when(stagedInstaller.install()).thenReturn(STAGED_PATH);
+    when(fallbackInstaller.install()).thenReturn(FALLBACK_PATH);
+  }
+
+  @Test
+  public void shouldInstallIntoStage() throws Exception {
+    assertEquals(STAGED_PATH, installer.install());
+    assertTrue(stage.isDirectory());
+    verify(fallbackInstaller, never()).install();
+  }
+
+  @Test
+  public void shouldFallBackWhenStagingDirectoryIsMissing() throws Exception {
+    File missing = new File(temporaryFolder.getRoot(), "missing");
+    installer = new StagingInstaller(missing, StagingInstaller.getStage(missing, new File("target")), stagedInstaller, fallbackInstaller);
+
+    assertEquals(FALLBACK_PATH, installer.install());
+    verify(stagedInstaller, never()).install();
+  }
+
+  @Test
+  public void shouldFallBackWhenExtractionFails() throws Exception {
+    when(stagedInstaller.install()).thenThrow(new InstallationException("failed", new ExtractionException("full")));
+
+    assertEquals(FALLBACK_PATH, installer.install());
+    assertFalse(stage.exists());
+  }
+
+  @Test
+  public void shouldNotFallBackWhenDownloadFails() throws Exception {
+    InstallationException failure = new InstallationException("failed", new DownloadException("offline"));
+    when(stagedInstaller.install()).thenThrow(failure);
+
+    catchException(installer).install();
+
+    assertSame(failure, caughtException());
+    verify(fallbackInstaller, never()).install();
+  }
+
+  @Test
+  public void shouldRemoveStaleStages() throws Exception {
+    File stale = StagingInstaller.getStage(stagingDirectory, new File("stale"));
+    File recent = StagingInstaller.getStage(stagingDirectory, new File("recent"));
+    assertTrue(stale.mkdirs());
+    assertTrue(recent.mkdirs());
+    stale.setLastModified(System.currentTimeMillis() - 2 * 24 * 60 * 60 * 1000L);
+
+    installer.install();
+
+    assertFalse(stale.exists());
+    assertTrue(recent.exists());
+  }
+
+  @Test
+  public void shouldUseOneStagePerOutputDirectory() {
+    assertEquals(stage, StagingInstaller.getStage(stagingDirectory, new File("target")));
+    assertNotEquals(stage, StagingInstaller.getStage(stagingDirectory, new File("other/target")));
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.install;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.config.Configuration;
+import com.github.klieber.phantomjs.download.DownloadException;
+import com.github.klieber.phantomjs.download.StreamingDownloader;
+import com.github.klieber.phantomjs.extract.StreamExtractor;
+import com.github.klieber.phantomjs.lock.LockManager;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.googlecode.catchexception.CatchException.catchException;
+import static com.googlecode.catchexception.CatchException.caughtException;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(PhantomJSArchive.class)
+public class StreamingInstallerTest {
+
+  private static final String PROJECT_ROOT = System.getProperty("user.dir");
+
+  private static final String ARCHIVE_PATH = PROJECT_ROOT+"/src/test/config/test-archive.tar.gz";
+  private static final String EXTRACT_TO_PATH = "phantomjs";
+
+  @Mock
+  private PhantomJSArchive phantomJSArchive;
+
+  @Mock
+  private Configuration config;
+
+  @Mock
+  private StreamingDownloader downloader;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File outputDirectory;
+
+  private File phantomJsBinary;
+
+  @Before
+  public void before() {
+    outputDirectory = temporaryFolder.getRoot();
+    phantomJsBinary = new File(outputDirectory, EXTRACT_TO_PATH);
+
+    when(config.getPhantomJsArchive()).thenReturn(phantomJSArchive);
+    when(config.getOutputDirectory()).thenReturn(outputDirectory);
+    when(phantomJSArchive.getExtractToPath()).thenReturn(EXTRACT_TO_PATH);
+    when(phantomJSArchive.getPathToExecutable()).thenReturn("bin/phantomjs");
+    when(phantomJSArchive.getExtension()).thenReturn("tar.gz");
+  }
+
+  @Test
+  public void shouldDownloadAndExtractTogether() throws Exception {
+    doAnswer(new StreamArchive()).when(downloader).download(same(phantomJSArchive), any(OutputStream.class), eq(true));
+
+    StreamingInstaller installer = new StreamingInstaller(config, downloader, new StreamExtractor(phantomJSArchive), true, new LockManager());
+
+    assertEquals(phantomJsBinary.getAbsolutePath(), installer.install());
+    assertTrue(phantomJsBinary.isFile());
+    verify(downloader).download(same(phantomJSArchive), any(OutputStream.class), eq(true));
+  }
+
+  @Test
+  public void shouldReturnPreviouslyInstalledPath() throws Exception {
+    temporaryFolder.newFile(EXTRACT_TO_PATH);
+
+    StreamingInstaller installer = new StreamingInstaller(config, downloader, new StreamExtractor(phantomJSArchive), false, new LockManager());
+
+    assertEquals(phantomJsBinary.getAbsolutePath(), installer.install());
+    verifyNoMoreInteractions(downloader);
+  }
+
+  @Test
+  public void shouldInstallOnceForConcurrentBuildsWithoutCache() throws Exception {
+    doAnswer(new StreamArchive() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        // gives the other build time to reach the lock
+        Thread.sleep(200);
+        return super.answer(invocation);
+      }
+    }).when(downloader).download(same(phantomJSArchive), any(OutputStream.class), eq(false));
+
+    final StreamingInstaller installer = new StreamingInstaller(config, downloader, new StreamExtractor(phantomJSArchive), false, new LockManager());
+    ExecutorService builds = Executors.newFixedThreadPool(2);
+    try {
+      Callable<String> install = new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return installer.install();
+        }
+      };
+      Future<String> first = builds.submit(install);
+      Future<String> second = builds.submit(install);
+
+      assertEquals(phantomJsBinary.getAbsolutePath(), first.get());
+      assertEquals(phantomJsBinary.getAbsolutePath(), second.get());
+    } finally {
+      builds.shutdownNow();
+    }
+    verify(downloader, times(1)).download(same(phantomJSArchive), any(OutputStream.class), eq(false));
+  }
+
+  @Test
+  public void shouldReportDownloadFailure() throws Exception {
+    DownloadException exception = new DownloadException("error");
+    doThrow(exception).when(downloader).download(same(phantomJSArchive), any(OutputStream.class), anyBoolean());
+
+    StreamingInstaller installer = new StreamingInstaller(config, downloader, new StreamExtractor(phantomJSArchive), false, new LockManager());
+
+    catchException(installer).install();
+    assertThat(caughtException(), is(instanceOf(InstallationException.class)));
+  }
+
+  @Test
+  public void shouldKeepInstallWhenCachingFails() throws Exception {
+    doAnswer(new StreamArchive() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        super.answer(invocation);
+        throw new DownloadException("unable to cache");
+      }
+    }).when(downloader).download(same(phantomJSArchive), any(OutputStream.class), eq(true));
+
+    StreamingInstaller installer = new StreamingInstaller(config, downloader, new StreamExtractor(phantomJSArchive), true, new LockManager());
+
+    assertEquals(phantomJsBinary.getAbsolutePath(), installer.install());
+    assertTrue(phantomJsBinary.isFile());
+  }
+
+  private static class StreamArchive implements Answer<Object> {
+
+    @Override
+    public Object answer(InvocationOnMock invocation) throws Throwable {
+      OutputStream out = (OutputStream) invocation.getArguments()[1];
+      InputStream in = new FileInputStream(ARCHIVE_PATH);
+      try {
+        IOUtil.copy(in, out);
+      } finally {
+        in.close();
+      }
+      return null;
+    }
+  }
+}
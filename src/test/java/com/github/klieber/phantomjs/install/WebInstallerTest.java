@@ -26,6 +26,7 @@ import com.github.klieber.phantomjs.download.DownloadException;
 import com.github.klieber.phantomjs.download.Downloader;
 import com.github.klieber.phantomjs.extract.ExtractionException;
 import com.github.klieber.phantomjs.extract.Extractor;
+import com.github.klieber.phantomjs.lock.LockManager;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -83,7 +84,7 @@ public class WebInstallerTest {
 
   @Before
   public void before() throws IOException {
-    webInstaller = new WebInstaller(config,downloader,extractor);
+    webInstaller = new WebInstaller(config,downloader,extractor,new LockManager());
     outputDirectory = temporaryFolder.getRoot();
     phantomJsBinary = new File(outputDirectory, EXTRACT_TO_PATH);
   }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.locate;
+
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LocatorRegistryTest {
+
+  private static final String KEY = "1.9.7|linux-x86_64|URL";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Mock
+  private Locator locator;
+
+  private String location;
+
+  private LocatorRegistry registry;
+
+  @Before
+  public void before() throws Exception {
+    location = temporaryFolder.newFile("phantomjs").getAbsolutePath();
+    registry = new LocatorRegistry();
+  }
+
+  @Test
+  public void shouldShareRegistryWithinSession() {
+    DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
+    assertSame(LocatorRegistry.forSession(session), LocatorRegistry.forSession(session));
+  }
+
+  @Test
+  public void shouldRememberLocation() {
+    when(locator.locate()).thenReturn(location);
+
+    assertEquals(location, registry.locate(KEY, locator));
+    assertEquals(location, registry.locate(KEY, locator));
+
+    verify(locator, times(1)).locate();
+  }
+
+  @Test
+  public void shouldLocateEachKey() {
+    when(locator.locate()).thenReturn(location);
+
+    registry.locate(KEY, locator);
+    registry.locate("other", locator);
+
+    verify(locator, times(2)).locate();
+  }
+
+  @Test
+  public void shouldNotRememberFailures() {
+    when(locator.locate()).thenReturn(null, location);
+
+    assertNull(registry.locate(KEY, locator));
+    assertEquals(location, registry.locate(KEY, locator));
+  }
+
+  @Test
+  public void shouldLocateAgainWhenLocationIsGone() {
+    when(locator.locate()).thenReturn(location);
+
+    registry.locate(KEY, locator);
+    new File(location).delete();
+    registry.locate(KEY, locator);
+
+    verify(locator, times(2)).locate();
+  }
+
+  @Test
+  public void shouldWaitForInstallInProgress() throws Exception {
+    final AtomicInteger calls = new AtomicInteger();
+    final CountDownLatch started = new CountDownLatch(1);
+    final Locator slowLocator = new Locator() {
+      @Override
+      public String locate() {
+        calls.incrementAndGet();
+        started.countDown();
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return location;
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < 4; i++) {
+        results.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() {
+            return registry.locate(KEY, slowLocator);
+          }
+        }));
+      }
+      for (Future<String> result : results) {
+        assertEquals(location, result.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(1, calls.get());
+  }
+}
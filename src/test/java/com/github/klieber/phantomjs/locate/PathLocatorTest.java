@@ -25,12 +25,17 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -72,4 +77,67 @@ public class PathLocatorTest {
     verify(binaryResolver).resolve(PATH_A);
     verify(binaryResolver).resolve(PATH_B);
   }
+
+  @Test
+  public void shouldPreferEarlierPathWhenLocatingConcurrently() throws Exception {
+    final CountDownLatch laterFound = new CountDownLatch(1);
+    when(binaryResolver.resolve(PATH_A)).thenAnswer(new Answer<String>() {
+      @Override
+      public String answer(InvocationOnMock invocation) throws Throwable {
+        // finish after the later path has already found a binary
+        laterFound.await(5, TimeUnit.SECONDS);
+        return LOCATION_A;
+      }
+    });
+    when(binaryResolver.resolve(PATH_B)).thenAnswer(new Answer<String>() {
+      @Override
+      public String answer(InvocationOnMock invocation) throws Throwable {
+        laterFound.countDown();
+        return LOCATION_B;
+      }
+    });
+
+    assertEquals(LOCATION_A, new PathLocator(binaryResolver, Arrays.asList(PATH_A, PATH_B), 2).locate());
+  }
+
+  @Test
+  public void shouldCancelLaterPathsOnceEarlierPathMatches() throws Exception {
+    final CountDownLatch laterStarted = new CountDownLatch(1);
+    final CountDownLatch laterInterrupted = new CountDownLatch(1);
+    when(binaryResolver.resolve(PATH_A)).thenAnswer(new Answer<String>() {
+      @Override
+      public String answer(InvocationOnMock invocation) throws Throwable {
+        laterStarted.await(5, TimeUnit.SECONDS);
+        return LOCATION_A;
+      }
+    });
+    when(binaryResolver.resolve(PATH_B)).thenAnswer(new Answer<String>() {
+      @Override
+      public String answer(InvocationOnMock invocation) throws Throwable {
+        laterStarted.countDown();
+        try {
+          Thread.sleep(10000);
+        } catch (InterruptedException e) {
+          laterInterrupted.countDown();
+        }
+        return LOCATION_B;
+      }
+    });
+
+    assertEquals(LOCATION_A, new PathLocator(binaryResolver, Arrays.asList(PATH_A, PATH_B), 2).locate());
+    assertTrue(laterInterrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void shouldLocateConcurrentlyInLaterPath() {
+    when(binaryResolver.resolve(PATH_B)).thenReturn(LOCATION_B);
+    assertEquals(LOCATION_B, new PathLocator(binaryResolver, Arrays.asList(PATH_A, PATH_B), 2).locate());
+  }
+
+  @Test
+  public void shouldSkipPathThatFailsConcurrently() {
+    when(binaryResolver.resolve(PATH_A)).thenThrow(new IllegalStateException("error"));
+    when(binaryResolver.resolve(PATH_B)).thenReturn(LOCATION_B);
+    assertEquals(LOCATION_B, new PathLocator(binaryResolver, Arrays.asList(PATH_A, PATH_B), 2).locate());
+  }
 }
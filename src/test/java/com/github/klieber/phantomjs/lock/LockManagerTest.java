@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.lock;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LockManagerTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private LockManager lockManager;
+
+  private File file;
+
+  @Before
+  public void before() {
+    lockManager = new LockManager();
+    file = new File(temporaryFolder.getRoot(), "cache/archive.zip");
+  }
+
+  @Test
+  public void shouldCreateLockFile() throws Exception {
+    LockManager.Lock lock = lockManager.lock(file);
+    try {
+      assertTrue(new File(file.getPath() + ".lock").exists());
+    } finally {
+      lock.release();
+    }
+  }
+
+  @Test
+  public void shouldBeReentrant() throws Exception {
+    LockManager.Lock lock = lockManager.lock(file);
+    LockManager.Lock nested = lockManager.lock(file);
+    nested.release();
+    lock.release();
+  }
+
+  @Test
+  public void shouldBlockOtherThreadsUntilReleased() throws Exception {
+    final AtomicBoolean acquired = new AtomicBoolean();
+    final CountDownLatch done = new CountDownLatch(1);
+
+    LockManager.Lock lock = lockManager.lock(file);
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          // a separate instance still shares the lock
+          LockManager.Lock other = new LockManager().lock(file);
+          acquired.set(true);
+          other.release();
+        } catch (Exception e) {
+          // leaves acquired false
+        } finally {
+          done.countDown();
+        }
+      }
+    };
+    thread.start();
+
+    assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+    assertFalse(acquired.get());
+
+    lock.release();
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertTrue(acquired.get());
+  }
+}
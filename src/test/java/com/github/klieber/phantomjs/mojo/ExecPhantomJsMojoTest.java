@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.mojo;
+
+import org.apache.maven.model.FileSet;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class ExecPhantomJsMojoTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ExecPhantomJsMojo mojo;
+  private File directory;
+
+  @Before
+  public void before() throws Exception {
+    directory = temporaryFolder.newFolder("scripts");
+    new File(directory, "a.js").createNewFile();
+    new File(directory, "b.js").createNewFile();
+
+    FileSet scripts = new FileSet();
+    scripts.setDirectory("scripts");
+
+    mojo = new ExecPhantomJsMojo();
+    Whitebox.setInternalState(mojo, "scripts", scripts);
+    Whitebox.setInternalState(mojo, "basedir", temporaryFolder.getRoot());
+  }
+
+  @Test
+  public void shouldReturnScriptsOfFileSet() {
+    assertEquals(Arrays.asList(path("a.js"), path("b.js")), mojo.getScripts());
+  }
+
+  @Test
+  public void shouldRunScriptOnceWhenFileSetMatchesIt() {
+    String script = directory.getPath() + File.separator + "." + File.separator + "a.js";
+    Whitebox.setInternalState(mojo, "script", script);
+
+    assertEquals(Arrays.asList(script, path("b.js")), mojo.getScripts());
+  }
+
+  private String path(String name) {
+    return new File(directory, name).getAbsolutePath();
+  }
+}
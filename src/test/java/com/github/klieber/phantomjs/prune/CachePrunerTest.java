@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.prune;
+
+import com.github.klieber.phantomjs.cache.AccessTimes;
+import com.github.klieber.phantomjs.lock.LockManager;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CachePrunerTest {
+
+  private static final long DAY = 24 * 60 * 60 * 1000;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private long now;
+
+  @Before
+  public void before() {
+    now = System.currentTimeMillis();
+  }
+
+  @Test
+  public void shouldRemoveLeastRecentlyUsedUntilWithinBudget() throws Exception {
+    CacheEntry oldest = entry("oldest.zip", 100, now - 3 * DAY);
+    CacheEntry older = entry("older.zip", 100, now - 2 * DAY);
+    CacheEntry newest = entry("newest.zip", 100, now - DAY);
+
+    List<CacheEntry> pruned = new CachePruner(new LockManager(), 150, 0).prune(Arrays.asList(newest, oldest, older));
+
+    assertEquals(Arrays.asList(oldest, older), pruned);
+    assertFalse(oldest.getFile().exists());
+    assertFalse(older.getFile().exists());
+    assertTrue(newest.getFile().exists());
+  }
+
+  @Test
+  public void shouldRemoveEntriesOlderThanLimit() throws Exception {
+    CacheEntry old = entry("old.zip", 100, now - 10 * DAY);
+    CacheEntry recent = entry("recent.zip", 100, now - DAY);
+
+    List<CacheEntry> pruned = new CachePruner(new LockManager(), 0, 5 * DAY).prune(Arrays.asList(old, recent));
+
+    assertEquals(Collections.singletonList(old), pruned);
+  }
+
+  @Test
+  public void shouldUseRecordedAccessTime() throws Exception {
+    CacheEntry used = entry("used.zip", 100, now - 10 * DAY);
+    File marker = AccessTimes.getMarker(used.getFile());
+    marker.createNewFile();
+    marker.setLastModified(now - DAY);
+
+    List<CacheEntry> pruned = new CachePruner(new LockManager(), 0, 5 * DAY).prune(Collections.singletonList(used));
+
+    assertTrue(pruned.isEmpty());
+  }
+
+  @Test
+  public void shouldRemoveCompanions() throws Exception {
+    CacheEntry entry = entry("archive.zip", 100, now - 10 * DAY);
+    File checksum = entry.getCompanions().get(0);
+    checksum.createNewFile();
+
+    new CachePruner(new LockManager(), 0, 5 * DAY).prune(Collections.singletonList(entry));
+
+    assertFalse(checksum.exists());
+  }
+
+  @Test
+  public void shouldKeepEntriesInUse() throws Exception {
+    CacheEntry entry = entry("archive.zip", 100, now);
+
+    List<CacheEntry> pruned = new CachePruner(new LockManager(), 1, 0).prune(Collections.singletonList(entry));
+
+    assertTrue(pruned.isEmpty());
+    assertTrue(entry.getFile().exists());
+  }
+
+  @Test
+  public void shouldKeepEntriesWithinLimits() throws Exception {
+    CacheEntry entry = entry("archive.zip", 100, now - 10 * DAY);
+
+    assertTrue(new CachePruner(new LockManager(), 1000, 0).prune(Collections.singletonList(entry)).isEmpty());
+    assertTrue(new CachePruner(new LockManager(), 0, 0).prune(Collections.singletonList(entry)).isEmpty());
+  }
+
+  @Test
+  public void shouldSkipEntriesThatCannotBeLocked() throws Exception {
+    CacheEntry entry = entry("archive.zip", 100, now - 10 * DAY);
+    LockManager lockManager = mock(LockManager.class);
+    when(lockManager.lock(any(File.class))).thenThrow(new IOException("error"));
+
+    assertTrue(new CachePruner(lockManager, 0, DAY).prune(Collections.singletonList(entry)).isEmpty());
+    assertTrue(entry.getFile().exists());
+  }
+
+  private CacheEntry entry(String name, int size, long lastModified) throws IOException {
+    File file = temporaryFolder.newFile(name);
+    FileUtils.fileWrite(file, new String(new char[size]));
+    file.setLastModified(lastModified);
+    return new CacheEntry(file, Arrays.asList(new File(file.getPath() + ".sha256"), AccessTimes.getMarker(file)));
+  }
+}
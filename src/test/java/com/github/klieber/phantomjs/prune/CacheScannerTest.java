@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.prune;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CacheScannerTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final CacheScanner scanner = new CacheScanner();
+
+  @Test
+  public void shouldFindArchives() throws Exception {
+    File zip = create("1.9.7/phantomjs-1.9.7-windows.zip");
+    File bz2 = create("1.9.7/phantomjs-1.9.7-linux-x86_64.tar.bz2");
+    create("1.9.7/phantomjs-1.9.7-windows.zip.sha256");
+    create("1.9.7/phantomjs-1.9.7-windows.zip.lock");
+    create("1.9.7/phantomjs-1.9.7.pom");
+
+    List<File> files = getFiles(scanner.scanArchives(temporaryFolder.getRoot()));
+
+    assertEquals(2, files.size());
+    assertTrue(files.contains(zip));
+    assertTrue(files.contains(bz2));
+  }
+
+  @Test
+  public void shouldFindBinaryArtifacts() throws Exception {
+    File binary = create("1.9.7/phantomjs-1.9.7-linux-x86_64-bin.bin");
+    create("1.9.7/phantomjs-1.9.7-linux-x86_64-bin.bin.accessed");
+
+    List<File> files = getFiles(scanner.scanArchives(temporaryFolder.getRoot()));
+
+    assertEquals(1, files.size());
+    assertEquals(binary, files.get(0));
+  }
+
+  @Test
+  public void shouldFindPartialDownloads() throws Exception {
+    File part = create("1.9.7/phantomjs-1.9.7-linux-x86_64.tar.bz2.1f2e3d.part");
+    create("1.9.7/phantomjs-1.9.7-linux-x86_64.tar.bz2.1f2e3d.part.checkpoint");
+
+    List<CacheEntry> entries = scanner.scanArchives(temporaryFolder.getRoot());
+
+    assertEquals(1, entries.size());
+    assertEquals(part, entries.get(0).getFile());
+    assertTrue(entries.get(0).getCompanions().contains(new File(part.getPath() + ".checkpoint")));
+    assertEquals(new File(part.getParentFile(), "phantomjs-1.9.7-linux-x86_64.tar.bz2"), entries.get(0).getLockFile());
+  }
+
+  @Test
+  public void shouldFindBinaries() throws Exception {
+    File binary = create("1.9.7/linux-x86_64/abc/phantomjs");
+    create("1.9.7/linux-x86_64/abc/phantomjs.lock");
+    create("1.9.7/linux-x86_64/abc/phantomjs.accessed");
+    create("1.9.7/linux-x86_64/abc/phantomjs123.tmp");
+
+    List<File> files = getFiles(scanner.scanBinaries(temporaryFolder.getRoot()));
+
+    assertEquals(1, files.size());
+    assertEquals(binary, files.get(0));
+  }
+
+  @Test
+  public void shouldIgnoreMissingDirectory() {
+    assertTrue(scanner.scanArchives(new File(temporaryFolder.getRoot(), "missing")).isEmpty());
+  }
+
+  private File create(String path) throws IOException {
+    File file = new File(temporaryFolder.getRoot(), path);
+    file.getParentFile().mkdirs();
+    file.createNewFile();
+    return file;
+  }
+
+  private List<File> getFiles(List<CacheEntry> entries) {
+    List<File> files = new ArrayList<File>();
+    for (CacheEntry entry : entries) {
+      files.add(entry.getFile());
+    }
+    return files;
+  }
+}
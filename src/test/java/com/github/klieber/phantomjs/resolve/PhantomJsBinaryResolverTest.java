@@ -21,10 +21,13 @@
 package com.github.klieber.phantomjs.resolve;
 
 import com.github.klieber.phantomjs.config.Configuration;
+import org.codehaus.plexus.util.FileUtils;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -34,7 +37,9 @@ import java.io.FileNotFoundException;
 import java.io.PrintWriter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 import static org.mockito.Mockito.when;
 
@@ -50,6 +55,9 @@ public class PhantomJsBinaryResolverTest {
 
   private PhantomJsBinaryResolver resolver;
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Before
   public void before() {
     assumeUnixOs();
@@ -91,6 +99,58 @@ public class PhantomJsBinaryResolverTest {
     assertNull(resolver.resolve(phantomJsHome.getParent()));
   }
 
+  @Test
+  public void testShouldNotRunUnchangedBinaryAgain() throws Exception {
+    File directory = temporaryFolder.newFolder("bin");
+    File runs = new File(directory, "runs");
+    File binary = new File(directory, "phantomjs");
+    PrintWriter writer = new PrintWriter(binary);
+    writer.println("#!/bin/sh");
+    writer.println("echo run >> " + runs.getAbsolutePath());
+    writer.println("echo 1.9.0");
+    writer.close();
+    binary.setExecutable(true);
+
+    when(config.getVersion()).thenReturn("1.9.0");
+    VersionCache versionCache = new VersionCache(temporaryFolder.newFile("versions.properties"));
+    assertEquals(binary.getAbsolutePath(), new PhantomJsBinaryResolver(config, versionCache).resolve(directory.getPath()));
+    assertEquals(binary.getAbsolutePath(), new PhantomJsBinaryResolver(config, versionCache).resolve(directory.getPath()));
+
+    assertEquals(1, FileUtils.fileRead(runs).split("\n").length);
+  }
+
+  @Test
+  public void testShouldReadVersionWithoutRunningBinary() throws Exception {
+    File directory = temporaryFolder.newFolder("scan");
+    File binary = new File(directory, "phantomjs");
+    FileUtils.fileWrite(binary, "#!/bin/sh\necho 1.9.0\nexit 0\nmajor\0minor\0patch\0" + "1.9.7\0");
+    binary.setExecutable(true);
+
+    when(config.getVersion()).thenReturn("1.9.7");
+    when(config.enforceVersion()).thenReturn(true);
+    assertEquals(binary.getAbsolutePath(), resolver.resolve(directory.getPath()));
+  }
+
+  @Test
+  public void testShouldRememberDirectoryWithoutBinary() throws Exception {
+    File directory = temporaryFolder.newFolder("empty");
+    VersionCache versionCache = new VersionCache(null);
+
+    assertNull(new PhantomJsBinaryResolver(config, versionCache).resolve(directory.getPath()));
+
+    assertTrue(versionCache.isEmpty(directory));
+  }
+
+  @Test
+  public void testShouldLeaveSavingVersionCacheToCaller() throws Exception {
+    File directory = temporaryFolder.newFolder("unsaved");
+    File cacheFile = new File(temporaryFolder.getRoot(), "unsaved.properties");
+
+    assertNull(new PhantomJsBinaryResolver(config, new VersionCache(cacheFile)).resolve(directory.getPath()));
+
+    assertFalse(cacheFile.exists());
+  }
+
   private void assumeUnixOs() {
     assumeTrue(System.getProperty("os.name").toLowerCase().contains("nux"));
   }
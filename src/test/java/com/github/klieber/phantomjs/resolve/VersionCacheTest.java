@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.resolve;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class VersionCacheTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File cacheFile;
+
+  private File binary;
+
+  @Before
+  public void before() throws Exception {
+    cacheFile = new File(temporaryFolder.getRoot(), "cache/versions.properties");
+    binary = temporaryFolder.newFile("phantomjs");
+    FileUtils.fileWrite(binary, "binary");
+  }
+
+  @Test
+  public void shouldRememberVersion() {
+    VersionCache cache = new VersionCache(cacheFile);
+    cache.setVersion(binary, "1.9.7");
+    cache.save();
+
+    assertEquals("1.9.7", new VersionCache(cacheFile).getVersion(binary));
+  }
+
+  @Test
+  public void shouldForgetVersionWhenBinaryChanges() throws Exception {
+    VersionCache cache = new VersionCache(null);
+    cache.setVersion(binary, "1.9.7");
+
+    FileUtils.fileWrite(binary, "another binary");
+
+    assertNull(cache.getVersion(binary));
+  }
+
+  @Test
+  public void shouldRememberBrokenBinary() {
+    VersionCache cache = new VersionCache(null);
+    cache.setVersion(binary, VersionCache.NO_VERSION);
+
+    assertEquals(VersionCache.NO_VERSION, cache.getVersion(binary));
+  }
+
+  @Test
+  public void shouldRememberEmptyDirectory() throws Exception {
+    File directory = temporaryFolder.newFolder("bin");
+    directory.setLastModified(1000);
+    VersionCache cache = new VersionCache(cacheFile);
+    cache.setEmpty(directory);
+    cache.save();
+
+    assertTrue(new VersionCache(cacheFile).isEmpty(directory));
+
+    new File(directory, "phantomjs").createNewFile();
+    directory.setLastModified(2000);
+    assertFalse(new VersionCache(cacheFile).isEmpty(directory));
+  }
+
+  @Test
+  public void shouldIgnoreMissingFiles() {
+    VersionCache cache = new VersionCache(null);
+    File missing = new File(temporaryFolder.getRoot(), "missing");
+
+    cache.setVersion(missing, "1.9.7");
+    cache.setEmpty(missing);
+
+    assertNull(cache.getVersion(missing));
+    assertFalse(cache.isEmpty(missing));
+  }
+
+  @Test
+  public void shouldOnlySaveChanges() {
+    new VersionCache(cacheFile).save();
+
+    assertFalse(cacheFile.exists());
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.resolve;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class VersionScannerTest {
+
+  // sha-256 of "abc"
+  private static final String CHECKSUM = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldFindVersionInBinary() throws Exception {
+    File binary = binary("phantom\0version\0major\0minor\0patch\0" + "2.1.1\0libraryPath\0");
+
+    assertEquals("2.1.1", new VersionScanner(new Properties()).scan(binary));
+  }
+
+  @Test
+  public void shouldFindAlignedVersion() throws Exception {
+    File binary = binary("major\0minor\0patch\0\0\0\0" + "1.9.8\0");
+
+    assertEquals("1.9.8", new VersionScanner(new Properties()).scan(binary));
+  }
+
+  @Test
+  public void shouldFindPreReleaseVersion() throws Exception {
+    File binary = binary("major\0minor\0patch\0" + "2.5.0-development\0");
+
+    assertEquals("2.5.0-development", new VersionScanner(new Properties()).scan(binary));
+  }
+
+  @Test
+  public void shouldSkipKeysWithoutVersion() throws Exception {
+    File binary = binary("major\0minor\0patch\0" + "toString\0" + "major\0minor\0patch\0" + "1.9.7\0");
+
+    assertEquals("1.9.7", new VersionScanner(new Properties()).scan(binary));
+  }
+
+  @Test
+  public void shouldReturnNullWithoutKeys() throws Exception {
+    File binary = binary("#!/bin/sh\necho 1.9.0\n");
+
+    assertNull(new VersionScanner(new Properties()).scan(binary));
+  }
+
+  @Test
+  public void shouldNotReadUserAgent() throws Exception {
+    File binary = binary("AppleWebKit/534.34 (KHTML, like Gecko) PhantomJS/1.9.7 Safari/534.34\0");
+
+    assertNull(new VersionScanner(new Properties()).scan(binary));
+  }
+
+  @Test
+  public void shouldUseKnownVersions() throws Exception {
+    File binary = temporaryFolder.newFile("phantomjs");
+    FileUtils.fileWrite(binary, "abc");
+    Properties knownVersions = new Properties();
+    knownVersions.setProperty(CHECKSUM, "1.9.8");
+
+    assertEquals("1.9.8", new VersionScanner(knownVersions).scan(binary));
+  }
+
+  @Test
+  public void shouldReturnNullForMissingFile() {
+    assertNull(VersionScanner.load().scan(new File(temporaryFolder.getRoot(), "missing")));
+  }
+
+  private File binary(String embedded) throws Exception {
+    byte[] noise = new byte[256 * 1024];
+    new Random(42).nextBytes(noise);
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    content.write(noise);
+    content.write(embedded.getBytes("US-ASCII"));
+    content.write(noise);
+
+    File binary = temporaryFolder.newFile("phantomjs");
+    OutputStream out = new FileOutputStream(binary);
+    try {
+      content.writeTo(out);
+    } finally {
+      out.close();
+    }
+    return binary;
+  }
+}
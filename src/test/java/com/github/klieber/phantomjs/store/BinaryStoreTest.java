@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.store;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(PhantomJSArchive.class)
+public class BinaryStoreTest {
+
+  private static final String SHA_256 = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Mock
+  private PhantomJSArchive phantomJSArchive;
+
+  private File directory;
+
+  private File archive;
+
+  private BinaryStore binaryStore;
+
+  @Before
+  public void before() throws Exception {
+    directory = temporaryFolder.newFolder("store");
+    archive = temporaryFolder.newFile("phantomjs.zip");
+    FileUtils.fileWrite(archive, "abc");
+    binaryStore = new BinaryStore(directory);
+
+    when(phantomJSArchive.getVersion()).thenReturn("1.9.7");
+    when(phantomJSArchive.getClassifier()).thenReturn("linux-x86_64");
+    when(phantomJSArchive.getExtractToPath()).thenReturn("phantomjs-1.9.7-linux-x86_64/bin/phantomjs");
+  }
+
+  @Test
+  public void shouldKeyBinaryByVersionClassifierAndChecksum() throws Exception {
+    File expected = new File(directory, "1.9.7/linux-x86_64/" + SHA_256 + "/phantomjs");
+    assertEquals(expected, binaryStore.getBinary(phantomJSArchive, archive));
+  }
+
+  @Test
+  public void shouldUseNewEntryWhenArchiveChanges() throws Exception {
+    File before = binaryStore.getBinary(phantomJSArchive, archive);
+
+    FileUtils.fileWrite(archive, "abcd");
+
+    assertNotEquals(before, binaryStore.getBinary(phantomJSArchive, archive));
+  }
+}
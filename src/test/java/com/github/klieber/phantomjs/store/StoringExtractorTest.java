@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.store;
+
+import com.github.klieber.phantomjs.archive.PhantomJSArchive;
+import com.github.klieber.phantomjs.extract.ExtractionException;
+import com.github.klieber.phantomjs.extract.Extractor;
+import com.github.klieber.phantomjs.lock.LockManager;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.googlecode.catchexception.CatchException.catchException;
+import static com.googlecode.catchexception.CatchException.caughtException;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(PhantomJSArchive.class)
+public class StoringExtractorTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Mock
+  private PhantomJSArchive phantomJSArchive;
+
+  @Mock
+  private Extractor extractor;
+
+  private File archive;
+
+  private BinaryStore binaryStore;
+
+  private StoringExtractor storingExtractor;
+
+  @Before
+  public void before() throws Exception {
+    archive = temporaryFolder.newFile("phantomjs.zip");
+    FileUtils.fileWrite(archive, "archive");
+    binaryStore = new BinaryStore(temporaryFolder.newFolder("store"));
+    storingExtractor = new StoringExtractor(extractor, phantomJSArchive, binaryStore, new LockManager());
+
+    when(phantomJSArchive.getVersion()).thenReturn("1.9.7");
+    when(phantomJSArchive.getClassifier()).thenReturn("linux-x86_64");
+    when(phantomJSArchive.getExtractToPath()).thenReturn("phantomjs-1.9.7-linux-x86_64/bin/phantomjs");
+
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        File extractTo = (File) invocation.getArguments()[1];
+        extractTo.getParentFile().mkdirs();
+        FileUtils.fileWrite(extractTo, "binary");
+        return null;
+      }
+    }).when(extractor).extract(same(archive), any(File.class));
+  }
+
+  @Test
+  public void shouldExtractIntoStoreAndLink() throws Exception {
+    File extractTo = new File(temporaryFolder.getRoot(), "project1/phantomjs");
+
+    storingExtractor.extract(archive, extractTo);
+
+    verify(extractor).extract(archive, binaryStore.getBinary(phantomJSArchive, archive));
+    assertEquals("binary", FileUtils.fileRead(extractTo));
+  }
+
+  @Test
+  public void shouldExtractOnlyOnce() throws Exception {
+    File first = new File(temporaryFolder.getRoot(), "project1/phantomjs");
+    File second = new File(temporaryFolder.getRoot(), "project2/phantomjs");
+
+    storingExtractor.extract(archive, first);
+    storingExtractor.extract(archive, second);
+
+    verify(extractor, times(1)).extract(same(archive), any(File.class));
+    assertEquals("binary", FileUtils.fileRead(second));
+  }
+
+  @Test
+  public void shouldLockStoredBinaryWhenReusingIt() throws Exception {
+    storingExtractor.extract(archive, new File(temporaryFolder.getRoot(), "project1/phantomjs"));
+    LockManager lockManager = spy(new LockManager());
+
+    new StoringExtractor(extractor, phantomJSArchive, binaryStore, lockManager).extract(archive, new File(temporaryFolder.getRoot(), "project2/phantomjs"));
+
+    verify(lockManager).lock(binaryStore.getBinary(phantomJSArchive, archive));
+  }
+
+  @Test
+  public void shouldPassOnExtractionException() throws Exception {
+    ExtractionException exception = new ExtractionException("error");
+    Extractor failing = mock(Extractor.class);
+    doThrow(exception).when(failing).extract(same(archive), any(File.class));
+
+    catchException(new StoringExtractor(failing, phantomJSArchive, binaryStore, new LockManager())).extract(archive, new File(temporaryFolder.getRoot(), "phantomjs"));
+
+    assertEquals(exception, caughtException());
+  }
+
+  @Test
+  public void shouldHandleIOException() throws Exception {
+    LockManager lockManager = mock(LockManager.class);
+    when(lockManager.lock(any(File.class))).thenThrow(new IOException("error"));
+
+    catchException(new StoringExtractor(extractor, phantomJSArchive, binaryStore, lockManager)).extract(archive, new File(temporaryFolder.getRoot(), "phantomjs"));
+
+    assertThat(caughtException(), is(instanceOf(ExtractionException.class)));
+  }
+}
@@ -74,6 +74,17 @@ public class ArtifactBuilderTest {
     );
   }
 
+  @Test
+  public void shouldCreateBinaryArtifact() {
+    Artifact artifact = builder.createBinaryArtifact(phantomJSArchive);
+
+    assertEquals(ArtifactBuilder.GROUP_ID, artifact.getGroupId());
+    assertEquals(ArtifactBuilder.ARTIFACT_ID, artifact.getArtifactId());
+    assertEquals(CLASSIFIER + "-bin", artifact.getClassifier());
+    assertEquals("bin", artifact.getExtension());
+    assertEquals(VERSION, artifact.getVersion());
+  }
+
   private void verifyArtifact(Artifact artifact, String groupId, String artifactId) {
     assertEquals(groupId, artifact.getGroupId());
     assertEquals(artifactId, artifact.getArtifactId());
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.util;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ChecksumsTest {
+
+  private static final String SHA_256 = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldComputeSha256() throws Exception {
+    File file = temporaryFolder.newFile("file");
+    FileUtils.fileWrite(file, "abc");
+
+    assertEquals(SHA_256, Checksums.sha256(file));
+  }
+
+  @Test
+  public void shouldRememberChecksum() throws Exception {
+    File file = temporaryFolder.newFile("file");
+    FileUtils.fileWrite(file, "abc");
+
+    Checksums.rememberSha256(file, "remembered");
+
+    // trusted as long as the file looks unchanged
+    assertEquals("remembered", Checksums.getRememberedSha256(file));
+    assertEquals("remembered", Checksums.cachedSha256(file));
+  }
+
+  @Test
+  public void shouldComputeChecksumAgainWhenFileChanges() throws Exception {
+    File file = temporaryFolder.newFile("file");
+    FileUtils.fileWrite(file, "abcd");
+    Checksums.rememberSha256(file, "remembered");
+
+    FileUtils.fileWrite(file, "abc");
+
+    assertNull(Checksums.getRememberedSha256(file));
+    assertEquals(SHA_256, Checksums.cachedSha256(file));
+    assertEquals(SHA_256, Checksums.getRememberedSha256(file));
+  }
+
+  @Test
+  public void shouldForgetChecksum() throws Exception {
+    File file = temporaryFolder.newFile("file");
+    Checksums.rememberSha256(file, "remembered");
+
+    Checksums.forgetSha256(file);
+
+    assertNull(Checksums.getRememberedSha256(file));
+  }
+
+  @Test
+  public void shouldConvertToHex() {
+    assertEquals("00ff10", Checksums.toHex(new byte[]{0, (byte) 0xff, 0x10}));
+  }
+
+  @Test
+  public void testConstructor() throws Exception {
+    // this is just to satisfy the code coverage report
+    Constructor<Checksums> constructor = Checksums.class.getDeclaredConstructor();
+    constructor.setAccessible(true);
+    constructor.newInstance();
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.util;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FileLinkerTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldLinkFile() throws Exception {
+    File source = temporaryFolder.newFile("source");
+    FileUtils.fileWrite(source, "binary");
+    File target = new File(temporaryFolder.getRoot(), "bin/target");
+
+    FileLinker.link(source, target);
+
+    assertEquals("binary", FileUtils.fileRead(target));
+    assertTrue(source.exists());
+    assertEquals(1, target.getParentFile().list().length);
+  }
+
+  @Test
+  public void shouldReplaceExistingTarget() throws Exception {
+    File source = temporaryFolder.newFile("source");
+    FileUtils.fileWrite(source, "new");
+    File target = temporaryFolder.newFile("target");
+    FileUtils.fileWrite(target, "old");
+
+    FileLinker.link(source, target);
+
+    assertEquals("new", FileUtils.fileRead(target));
+  }
+
+  @Test
+  public void testConstructor() throws Exception {
+    // this is just to satisfy the code coverage report
+    Constructor<FileLinker> constructor = FileLinker.class.getDeclaredConstructor();
+    constructor.setAccessible(true);
+    constructor.newInstance();
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014 Kyle Lieber
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.github.klieber.phantomjs.util;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class FileMoverTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldMoveFile() throws Exception {
+    File source = temporaryFolder.newFile("source");
+    FileUtils.fileWrite(source, "new");
+    File target = new File(temporaryFolder.getRoot(), "target");
+
+    FileMover.move(source, target);
+
+    assertFalse(source.exists());
+    assertEquals("new", FileUtils.fileRead(target));
+  }
+
+  @Test
+  public void shouldReplaceExistingFile() throws Exception {
+    File source = temporaryFolder.newFile("source");
+    FileUtils.fileWrite(source, "new");
+    File target = temporaryFolder.newFile("target");
+    FileUtils.fileWrite(target, "old");
+
+    FileMover.move(source, target);
+
+    assertEquals("new", FileUtils.fileRead(target));
+  }
+
+  @Test
+  public void shouldFailWhenSourceIsMissing() throws Exception {
+    File source = new File(temporaryFolder.getRoot(), "missing");
+
+    try {
+      FileMover.move(source, new File(temporaryFolder.getRoot(), "target"));
+      fail("expected an IOException");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testConstructor() throws Exception {
+    // this is just to satisfy the code coverage report
+    Constructor<FileMover> constructor = FileMover.class.getDeclaredConstructor();
+    constructor.setAccessible(true);
+    constructor.newInstance();
+  }
+}
@@ -51,6 +51,11 @@ public class PredicatesTest {
     assertTrue(Predicates.not(predicate).apply(STRING));
   }
 
+  @Test
+  public void shouldAlwaysBeTrue() {
+    assertTrue(Predicates.<String>alwaysTrue().apply(STRING));
+  }
+
   @Test
   public void testConstructor() throws Exception {
     // this is just to satisfy the code coverage report